@@ -10,6 +10,9 @@ CREATE DATABASE IF NOT EXISTS chat_app CHARACTER SET utf8mb4 COLLATE utf8mb4_uni
 USE chat_app;
 
 -- Drop tables nếu đã tồn tại (để tạo lại từ đầu)
+DROP TABLE IF EXISTS calls;
+DROP TABLE IF EXISTS group_read_cursors;
+DROP TABLE IF EXISTS unread_counters;
 DROP TABLE IF EXISTS group_members;
 DROP TABLE IF EXISTS messages;
 DROP TABLE IF EXISTS friendships;
@@ -29,6 +32,7 @@ CREATE TABLE users (
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     INDEX idx_username (username),
+    INDEX idx_full_name (full_name),
     INDEX idx_email (email)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
@@ -72,10 +76,13 @@ CREATE TABLE messages (
     FOREIGN KEY (sender_id) REFERENCES users(user_id) ON DELETE CASCADE,
     FOREIGN KEY (receiver_id) REFERENCES users(user_id) ON DELETE CASCADE,
     FOREIGN KEY (group_id) REFERENCES groups(group_id) ON DELETE CASCADE,
-    INDEX idx_sender (sender_id),
+    -- Keyset pagination: conversation first, then message_id for "older than" scans
+    INDEX idx_sender_receiver_message (sender_id, receiver_id, message_id),
     INDEX idx_receiver (receiver_id),
-    INDEX idx_group (group_id),
-    INDEX idx_created_at (created_at)
+    INDEX idx_group_message (group_id, message_id),
+    INDEX idx_created_at (created_at),
+    -- Tìm kiếm nội dung tin nhắn
+    FULLTEXT INDEX ft_content (content)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 -- Tạo bảng friendships
@@ -94,6 +101,61 @@ CREATE TABLE friendships (
     INDEX idx_status (status)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+-- Bộ đếm tin chưa đọc theo từng cuộc trò chuyện riêng (conversation_id là user_id người gửi).
+-- Không còn ghi dòng GROUP: số tin chưa đọc của nhóm được đếm từ group_read_cursors
+CREATE TABLE unread_counters (
+    user_id INT NOT NULL,
+    conversation_type ENUM('USER', 'GROUP') NOT NULL,
+    conversation_id INT NOT NULL,
+    unread_count INT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, conversation_type, conversation_id),
+    FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Vị trí đã đọc của từng thành viên trong nhóm (mọi tin có message_id <= last_read_message_id là đã đọc)
+CREATE TABLE group_read_cursors (
+    group_id INT NOT NULL,
+    user_id INT NOT NULL,
+    last_read_message_id INT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (group_id, user_id),
+    FOREIGN KEY (group_id) REFERENCES groups(group_id) ON DELETE CASCADE,
+    FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Thành viên được đặt con trỏ ở tin mới nhất của nhóm khi được thêm vào. Khi thêm bảng này vào database
+-- đã có dữ liệu, hãy tạo con trỏ cho mọi thành viên hiện tại, nếu không toàn bộ lịch sử nhóm bị tính là chưa đọc:
+-- INSERT INTO group_read_cursors (group_id, user_id, last_read_message_id)
+-- SELECT gm.group_id, gm.user_id, COALESCE((SELECT MAX(m.message_id) FROM messages m WHERE m.group_id = gm.group_id), 0)
+-- FROM group_members gm
+-- ON DUPLICATE KEY UPDATE last_read_message_id = last_read_message_id;
+
+-- Lịch sử cuộc gọi, mỗi cuộc gọi một dòng, cập nhật theo trạng thái (id dùng để phân trang)
+CREATE TABLE calls (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    call_id VARCHAR(64) NOT NULL,
+    caller_id INT NOT NULL,
+    receiver_id INT NOT NULL,
+    group_id INT,
+    call_type ENUM('VOICE', 'VIDEO') NOT NULL DEFAULT 'VOICE',
+    status ENUM('PENDING', 'ACCEPTED', 'REJECTED', 'ENDED', 'MISSED') NOT NULL DEFAULT 'PENDING',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    answered_at TIMESTAMP NULL,
+    ended_at TIMESTAMP NULL,
+    UNIQUE KEY uk_call_id (call_id),
+    FOREIGN KEY (caller_id) REFERENCES users(user_id) ON DELETE CASCADE,
+    FOREIGN KEY (receiver_id) REFERENCES users(user_id) ON DELETE CASCADE,
+    FOREIGN KEY (group_id) REFERENCES groups(group_id) ON DELETE SET NULL,
+    -- Phân trang lịch sử theo id ở từng phía cuộc gọi; đếm cuộc gọi nhỡ theo người nhận.
+    -- Cuộc gọi nhóm đến các thành viên khác qua group_members nên cũng được quét theo nhóm
+    INDEX idx_caller_call (caller_id, id),
+    INDEX idx_receiver_call (receiver_id, id),
+    INDEX idx_receiver_status (receiver_id, status),
+    INDEX idx_group_call (group_id, id),
+    INDEX idx_group_status (group_id, status)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
 -- Insert dữ liệu mẫu
 -- Password mặc định: "password" (đã được hash bằng BCrypt)
 INSERT INTO users (username, password, email, full_name, status) VALUES
@@ -103,6 +165,6 @@ INSERT INTO users (username, password, email, full_name, status) VALUES
 
 -- Thông báo thành công
 SELECT 'Database chat_app đã được tạo thành công!' AS message;
-SELECT 'Các bảng đã được tạo: users, groups, messages, group_members, friendships' AS info;
+SELECT 'Các bảng đã được tạo: users, groups, messages, group_members, friendships, unread_counters, group_read_cursors, calls' AS info;
 SELECT 'Dữ liệu mẫu đã được insert: admin, user1, user2 (password: password)' AS users;
 
@@ -78,6 +78,7 @@ public class ClientMain extends Application {
                     logger.error("Failed to update user status on exit", e);
                 }
             }
+            clientRMI.shutdown();
         }
         logger.info("Client application stopped");
     }
@@ -5,9 +5,14 @@ import org.example.danbainoso.shared.ChatService;
 import org.example.danbainoso.shared.VideoClientCallback;
 import org.example.danbainoso.shared.VideoService;
 import org.example.danbainoso.shared.models.BlockStatus;
+import org.example.danbainoso.shared.models.CallHistoryPage;
 import org.example.danbainoso.shared.models.CallRequest;
+import org.example.danbainoso.shared.models.MediaSession;
 import org.example.danbainoso.shared.models.Message;
+import org.example.danbainoso.shared.models.MessageSearchScope;
 import org.example.danbainoso.shared.models.User;
+import org.example.danbainoso.shared.models.UserSearchPage;
+import org.example.danbainoso.shared.models.UserSummary;
 import org.example.danbainoso.shared.models.Friendship;
 import org.example.danbainoso.utils.Config;
 import org.example.danbainoso.utils.LoggerUtil;
@@ -20,6 +25,8 @@ import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 public class ClientRMI {
     private static final Logger logger = LoggerUtil.getLogger(ClientRMI.class);
@@ -30,6 +37,10 @@ public class ClientRMI {
     private VideoClientCallback videoCallback;
     private String clientId;
     private User currentUser;
+    private final ClientTaskExecutor tasks = new ClientTaskExecutor(Config.getClientRmiThreads());
+    // Messages of the signed-in account kept on disk; replaced when another account signs in
+    private volatile LocalMessageStore localStore;
+    private int localStoreUserId;
     
     public ClientRMI() {
         this.clientId = "client_" + System.currentTimeMillis();
@@ -144,10 +155,30 @@ public class ClientRMI {
         return chatService.getPrivateMessages(userId1, userId2, limit, offset);
     }
     
+    public java.util.List<Message> getPrivateMessagesBefore(int userId1, int userId2, int beforeMessageId, int limit) throws RemoteException {
+        return chatService.getPrivateMessagesBefore(userId1, userId2, beforeMessageId, limit);
+    }
+    
     public boolean markMessagesAsRead(int receiverId, int senderId) throws RemoteException {
         return chatService.markMessagesAsRead(receiverId, senderId);
     }
     
+    public boolean markGroupMessagesAsRead(int userId, int groupId) throws RemoteException {
+        return chatService.markGroupMessagesAsRead(userId, groupId);
+    }
+    
+    public int getGroupUnreadCount(int userId, int groupId) throws RemoteException {
+        return chatService.getGroupUnreadCount(userId, groupId);
+    }
+    
+    public java.util.List<org.example.danbainoso.shared.models.GroupReadCursor> getGroupReadCursors(int groupId) throws RemoteException {
+        return chatService.getGroupReadCursors(groupId);
+    }
+    
+    public org.example.danbainoso.shared.models.UnreadCounts getUnreadCounts(int userId) throws RemoteException {
+        return chatService.getUnreadCounts(userId);
+    }
+    
     public boolean editMessage(int messageId, String newContent) throws RemoteException {
         if (currentUser != null) {
             return chatService.editMessage(messageId, currentUser.getUserId(), newContent);
@@ -170,6 +201,25 @@ public class ClientRMI {
         return chatService.getGroupMessages(groupId, limit, offset);
     }
     
+    public java.util.List<Message> getGroupMessagesBefore(int groupId, int beforeMessageId, int limit) throws RemoteException {
+        return chatService.getGroupMessagesBefore(groupId, beforeMessageId, limit);
+    }
+    
+    public java.util.List<Message> getPrivateMessagesAfter(int userId1, int userId2, int afterMessageId, int limit) throws RemoteException {
+        return chatService.getPrivateMessagesAfter(userId1, userId2, afterMessageId, limit);
+    }
+    
+    public java.util.List<Message> getGroupMessagesAfter(int groupId, int afterMessageId, int limit) throws RemoteException {
+        return chatService.getGroupMessagesAfter(groupId, afterMessageId, limit);
+    }
+    
+    public java.util.List<Message> searchMessages(String query, MessageSearchScope scope, int beforeMessageId, int limit) throws RemoteException {
+        if (currentUser == null) {
+            return Collections.emptyList();
+        }
+        return chatService.searchMessages(currentUser.getUserId(), query, scope, beforeMessageId, limit);
+    }
+    
     public java.util.List<org.example.danbainoso.shared.models.Group> getUserGroups(int userId) throws RemoteException {
         return chatService.getUserGroups(userId);
     }
@@ -197,7 +247,7 @@ public class ClientRMI {
     }
     
     public java.util.List<User> getGroupMembers(int groupId) throws RemoteException {
-        return chatService.getGroupMembers(groupId);
+        return toUsers(chatService.getGroupMemberSummaries(groupId));
     }
     
     public boolean addMemberToGroup(int groupId, int userId) throws RemoteException {
@@ -221,14 +271,27 @@ public class ClientRMI {
         return false;
     }
     
-    public java.util.List<User> searchUsers(String keyword) throws RemoteException {
-        return chatService.searchUsers(keyword);
+    public UserSearchPage searchUsers(String query, int cursor, int limit) throws RemoteException {
+        if (currentUser == null) {
+            return new UserSearchPage();
+        }
+        return chatService.searchUsers(currentUser.getUserId(), query, cursor, limit);
     }
 
     public User getUserById(int userId) throws RemoteException {
         return chatService.getUserById(userId);
     }
     
+    public java.util.List<UserSummary> getUsersByIds(java.util.List<Integer> userIds) throws RemoteException {
+        return chatService.getUsersByIds(userIds);
+    }
+    
+    public void setViewedUser(Integer viewedUserId) throws RemoteException {
+        if (currentUser != null) {
+            chatService.setViewedUser(currentUser.getUserId(), viewedUserId);
+        }
+    }
+    
     public boolean updateUserStatus(User.UserStatus status) throws RemoteException {
         if (currentUser != null) {
             return chatService.updateUserStatus(currentUser.getUserId(), status);
@@ -300,13 +363,22 @@ public class ClientRMI {
 
     public List<User> getFriends() throws RemoteException {
         if (currentUser != null) {
-            return chatService.getFriends(currentUser.getUserId());
+            return toUsers(chatService.getFriendSummaries(currentUser.getUserId()));
         }
         return Collections.emptyList();
     }
 
     public List<User> getFriends(int userId) throws RemoteException {
-        return chatService.getFriends(userId);
+        return toUsers(chatService.getFriendSummaries(userId));
+    }
+    
+    // List endpoints ship summaries; the UI works with User, so wrap them locally
+    private List<User> toUsers(List<UserSummary> summaries) {
+        List<User> users = new java.util.ArrayList<>(summaries.size());
+        for (UserSummary summary : summaries) {
+            users.add(summary.toUser());
+        }
+        return users;
     }
     
     // Video Service methods
@@ -335,6 +407,35 @@ public class ClientRMI {
         return false;
     }
     
+    public CallRequest getCallRequest(String callId) throws RemoteException {
+        return videoService.getCallRequest(callId);
+    }
+    
+    public List<Integer> getCallParticipants(String callId) throws RemoteException {
+        return videoService.getCallParticipants(callId);
+    }
+    
+    public MediaSession getMediaSession(String callId) throws RemoteException {
+        if (currentUser != null) {
+            return videoService.getMediaSession(callId, currentUser.getUserId());
+        }
+        return null;
+    }
+    
+    public CallHistoryPage getCallHistory(long cursor, int limit) throws RemoteException {
+        if (currentUser != null) {
+            return videoService.getCallHistory(currentUser.getUserId(), cursor, limit);
+        }
+        return new CallHistoryPage();
+    }
+    
+    public int getMissedCallCount() throws RemoteException {
+        if (currentUser != null) {
+            return videoService.getMissedCallCount(currentUser.getUserId());
+        }
+        return 0;
+    }
+    
     public User getCurrentUser() {
         return currentUser;
     }
@@ -343,6 +444,47 @@ public class ClientRMI {
         this.currentUser = user;
         if (user != null) {
             clientId = "user_" + user.getUserId();
+            openLocalStore(user.getUserId());
+        }
+    }
+    
+    public LocalMessageStore getLocalStore() {
+        return localStore;
+    }
+    
+    private synchronized void openLocalStore(int userId) {
+        if (localStore != null && localStoreUserId == userId) {
+            return;
+        }
+        if (localStore != null) {
+            localStore.close();
+        }
+        localStore = LocalMessageStore.forUser(userId);
+        localStoreUserId = userId;
+    }
+    
+    /**
+     * Run a blocking call off the JavaFX thread; the future completes on the JavaFX thread.
+     */
+    public <T> CompletableFuture<T> async(Callable<T> call) {
+        return tasks.submit(call);
+    }
+    
+    /**
+     * Like {@link #async(Callable)}, but a later call with the same key cancels this one or drops its result.
+     */
+    public <T> CompletableFuture<T> asyncLatest(String key, Callable<T> call) {
+        return tasks.submitLatest(key, call);
+    }
+    
+    public void cancelAsync(String key) {
+        tasks.cancel(key);
+    }
+    
+    public void shutdown() {
+        tasks.shutdown();
+        if (localStore != null) {
+            localStore.close();
         }
     }
     
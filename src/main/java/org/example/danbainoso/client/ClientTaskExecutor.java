@@ -0,0 +1,119 @@
+package org.example.danbainoso.client;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs blocking RMI calls on a small shared pool and completes the returned futures on the JavaFX thread,
+ * so {@code thenAccept}/{@code exceptionally} stages may touch the UI directly.
+ * Calls submitted under a key supersede the previous call with that key: the older call is cancelled if it
+ * has not started, and its result is dropped if it arrives after the newer call was submitted.
+ */
+public class ClientTaskExecutor {
+    private final ExecutorService executor;
+    // The newest call submitted under each key
+    private final ConcurrentHashMap<String, CompletableFuture<?>> latestByKey = new ConcurrentHashMap<>();
+
+    public ClientTaskExecutor(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "rmi-call-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Run a call in the background; the future completes on the JavaFX thread.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> call) {
+        return deliver(call, null);
+    }
+
+    /**
+     * Run a call that replaces any earlier call with the same key, e.g. loading the conversation that was just opened.
+     * A superseded call's future is cancelled instead of completed.
+     */
+    public <T> CompletableFuture<T> submitLatest(String key, Callable<T> call) {
+        return deliver(call, key);
+    }
+
+    /**
+     * Drop whatever call is pending under the key without starting a new one.
+     */
+    public void cancel(String key) {
+        CompletableFuture<?> pending = latestByKey.remove(key);
+        if (pending != null) {
+            pending.cancel(false);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Handler for {@code exceptionally} that unwraps the failure and ignores cancelled calls.
+     */
+    public static <T> Function<Throwable, T> onFailure(Consumer<Throwable> handler) {
+        return error -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (!(cause instanceof CancellationException)) {
+                handler.accept(cause);
+            }
+            return null;
+        };
+    }
+
+    private <T> CompletableFuture<T> deliver(Callable<T> call, String key) {
+        CompletableFuture<T> delivered = new CompletableFuture<>();
+        if (key != null) {
+            CompletableFuture<?> previous = latestByKey.put(key, delivered);
+            if (previous != null) {
+                previous.cancel(false);
+            }
+        }
+        Future<?> task = executor.submit(() -> {
+            if (delivered.isDone()) {
+                return;
+            }
+            T result = null;
+            Throwable failure = null;
+            try {
+                result = call.call();
+            } catch (Throwable e) {
+                failure = e;
+            }
+            T finalResult = result;
+            Throwable finalFailure = failure;
+            Platform.runLater(() -> {
+                // A newer call under the same key may have been submitted while this one was running
+                if (key != null && !latestByKey.remove(key, delivered)) {
+                    delivered.cancel(false);
+                } else if (finalFailure != null) {
+                    delivered.completeExceptionally(finalFailure);
+                } else {
+                    delivered.complete(finalResult);
+                }
+            });
+        });
+        // Cancelling the returned future, directly or by superseding it, skips the call if it has not started
+        delivered.whenComplete((result, error) -> {
+            if (delivered.isCancelled()) {
+                task.cancel(false);
+            }
+        });
+        return delivered;
+    }
+}
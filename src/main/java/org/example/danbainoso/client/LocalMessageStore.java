@@ -0,0 +1,514 @@
+package org.example.danbainoso.client;
+
+import org.example.danbainoso.shared.models.Message;
+import org.example.danbainoso.utils.Config;
+import org.example.danbainoso.utils.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * On-disk copy of the newest messages of recently opened conversations, so a conversation can be shown
+ * before the server answers and its history is still readable when the server is not.
+ * Each conversation is an append-only log of length-prefixed message records; a later record for the same
+ * message ID (an edit, a deletion, a read receipt) supersedes the earlier one. A log is rewritten with only its
+ * newest messages once it holds twice the per-conversation cap, or right after a deletion so deleted text does
+ * not stay on disk. Whole conversations are evicted least recently opened first once the store exceeds its budget.
+ * All file access runs on one background thread, so a load sees every append submitted before it.
+ */
+public class LocalMessageStore {
+    private static final Logger logger = LoggerUtil.getLogger(LocalMessageStore.class);
+    private static final String LOG_SUFFIX = ".log";
+    private static final byte RECORD_VERSION = 1;
+    // Anything longer is a corrupt length prefix, not a message
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private final Path directory;
+    private final int maxMessagesPerConversation;
+    private final long maxBytes;
+    private final ExecutorService io;
+
+    // Conversation key -> log size in bytes, least recently opened first; io thread only
+    private final LinkedHashMap<String, Long> logSizes = new LinkedHashMap<>(16, 0.75f, true);
+    // Records in each log that has been read or written since startup; io thread only
+    private final Map<String, Integer> recordCounts = new HashMap<>();
+    // Message ID -> key of the log holding it, for logs read or written since startup; io thread only
+    private final Map<Integer, String> keyByMessageId = new HashMap<>();
+    // Logs that have been read in full, so every message in them is in keyByMessageId; io thread only
+    private final Set<String> indexedKeys = new HashSet<>();
+    private long totalBytes = 0;
+    private volatile boolean available = false;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public LocalMessageStore(Path directory, int maxMessagesPerConversation, long maxBytes) {
+        this.directory = directory;
+        this.maxMessagesPerConversation = Math.max(1, maxMessagesPerConversation);
+        this.maxBytes = Math.max(0, maxBytes);
+        this.io = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-store");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Store for one account, under the configured cache directory; a budget of 0 MB disables it.
+     */
+    public static LocalMessageStore forUser(int userId) {
+        Path directory = Paths.get(Config.getClientCacheDir(), String.valueOf(userId));
+        long maxBytes = Config.getClientCacheMaxMegabytes() * 1024L * 1024L;
+        LocalMessageStore store = new LocalMessageStore(directory, Config.getClientCacheMaxMessages(), maxBytes);
+        store.open();
+        return store;
+    }
+
+    public static String privateKey(int contactId) {
+        return "user-" + contactId;
+    }
+
+    public static String groupKey(int groupId) {
+        return "group-" + groupId;
+    }
+
+    /**
+     * Scan the existing logs. Loads and appends queue behind this, so callers do not need to wait for it.
+     */
+    public CompletableFuture<Void> open() {
+        return CompletableFuture.runAsync(() -> {
+            if (maxBytes == 0) {
+                logger.info("Local message store disabled");
+                return;
+            }
+            long started = System.nanoTime();
+            try {
+                Files.createDirectories(directory);
+                List<Path> logs = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + LOG_SUFFIX)) {
+                    stream.forEach(logs::add);
+                }
+                // Restore the least recently opened order from the modification times set by load()
+                logs.sort(Comparator.comparing(LocalMessageStore::lastModified));
+                for (Path log : logs) {
+                    long size = Files.size(log);
+                    logSizes.put(keyOf(log), size);
+                    totalBytes += size;
+                }
+                available = true;
+                evictOverBudget(null);
+                logger.info("Local message store opened in {} ms: {} conversations, {} KB",
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), logSizes.size(), totalBytes / 1024);
+            } catch (IOException e) {
+                logger.warn("Local message store unavailable at {}", directory, e);
+            }
+        }, io);
+    }
+
+    /**
+     * The stored messages of a conversation, oldest first; empty when nothing is stored or the store is unavailable.
+     */
+    public CompletableFuture<List<Message>> load(String key) {
+        if (io.isShutdown()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            if (!available || !logSizes.containsKey(key)) {
+                misses.increment();
+                return Collections.<Message>emptyList();
+            }
+            try {
+                List<Message> messages = readLog(key, false);
+                touch(key);
+                if (messages.isEmpty()) {
+                    misses.increment();
+                } else {
+                    hits.increment();
+                }
+                return messages;
+            } catch (IOException e) {
+                logger.warn("Failed to read local messages for {}", key, e);
+                misses.increment();
+                return Collections.<Message>emptyList();
+            }
+        }, io);
+    }
+
+    /**
+     * Append new messages or newer versions of stored ones. Returns immediately; the write happens in the background.
+     */
+    public void append(String key, Collection<Message> messages) {
+        if (messages.isEmpty() || io.isShutdown()) {
+            return;
+        }
+        List<Message> snapshot = new ArrayList<>(messages);
+        io.execute(() -> {
+            if (!available) {
+                return;
+            }
+            try {
+                appendRecords(key, snapshot);
+            } catch (IOException e) {
+                logger.warn("Failed to store messages for {}", key, e);
+            }
+        });
+    }
+
+    /**
+     * Store a newer version of a message, e.g. an edit, in whichever conversation holds it.
+     * A message that is not stored is ignored, so this never adds a message to a conversation.
+     */
+    public void replace(Message message) {
+        applyToStored(message.getMessageId(), stored -> message);
+    }
+
+    /**
+     * Mark a message as deleted in whichever conversation holds it, dropping its text from disk.
+     */
+    public void markDeleted(int messageId) {
+        applyToStored(messageId, stored -> {
+            stored.setDeleted(true);
+            return stored;
+        });
+    }
+
+    /**
+     * Forget a conversation, e.g. when the stored messages can no longer be joined up with the server's.
+     */
+    public void clear(String key) {
+        if (io.isShutdown()) {
+            return;
+        }
+        io.execute(() -> {
+            if (logSizes.containsKey(key)) {
+                delete(key);
+            }
+        });
+    }
+
+    public void close() {
+        io.shutdown();
+        try {
+            io.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Local message store closed: {}", this);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LocalMessageStore{conversations=%d, bytes=%d, hits=%d, misses=%d, appended=%d, compactions=%d, evictions=%d}",
+                logSizes.size(), totalBytes, hits.sum(), misses.sum(), appended.sum(), compactions.sum(), evictions.sum());
+    }
+
+    private void applyToStored(int messageId, UnaryOperator<Message> change) {
+        if (io.isShutdown()) {
+            return;
+        }
+        io.execute(() -> {
+            if (!available) {
+                return;
+            }
+            try {
+                String key = findKey(messageId);
+                if (key == null) {
+                    return;
+                }
+                // The index may still name a log that has since dropped the message
+                for (Message stored : readLog(key, false)) {
+                    if (stored.getMessageId() == messageId) {
+                        appendRecords(key, List.of(change.apply(stored)));
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to update stored message {}", messageId, e);
+            }
+        });
+    }
+
+    // Key of the log holding a message; reads the logs not indexed yet the first time an ID is not found
+    private String findKey(int messageId) throws IOException {
+        String key = keyByMessageId.get(messageId);
+        if (key != null) {
+            return key;
+        }
+        for (String unindexed : new ArrayList<>(logSizes.keySet())) {
+            if (!indexedKeys.contains(unindexed)) {
+                readLog(unindexed, false);
+            }
+        }
+        return keyByMessageId.get(messageId);
+    }
+
+    private void appendRecords(String key, List<Message> messages) throws IOException {
+        boolean hasDeletion = false;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            for (Message message : messages) {
+                writeRecord(out, message);
+                hasDeletion |= message.isDeleted();
+                keyByMessageId.put(message.getMessageId(), key);
+            }
+        }
+        Files.write(logPath(key), buffer.toByteArray(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        appended.add(messages.size());
+        resize(key, logSizes.getOrDefault(key, 0L) + buffer.size());
+        int records = recordCounts.getOrDefault(key, 0) + messages.size();
+        recordCounts.put(key, records);
+        if (hasDeletion || records > maxMessagesPerConversation * 2) {
+            readLog(key, true);
+        }
+        evictOverBudget(key);
+    }
+
+    // Read a log, keeping the latest version of each message; rewrites it when asked to or when it is due
+    private List<Message> readLog(String key, boolean compact) throws IOException {
+        Path log = logPath(key);
+        TreeMap<Integer, Message> latest = new TreeMap<>();
+        int records = 0;
+        boolean damaged = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(log)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException end) {
+                    break;
+                }
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    damaged = true;
+                    break;
+                }
+                byte[] record = new byte[length];
+                try {
+                    in.readFully(record);
+                } catch (EOFException torn) {
+                    // The client stopped in the middle of an append
+                    damaged = true;
+                    break;
+                }
+                Message message = readRecord(record);
+                if (message == null) {
+                    damaged = true;
+                    break;
+                }
+                latest.put(message.getMessageId(), message);
+                records++;
+            }
+        }
+        while (latest.size() > maxMessagesPerConversation) {
+            latest.pollFirstEntry();
+        }
+        List<Message> messages = new ArrayList<>(latest.values());
+        for (Message message : messages) {
+            keyByMessageId.put(message.getMessageId(), key);
+        }
+        indexedKeys.add(key);
+        if (compact || damaged || records > maxMessagesPerConversation * 2) {
+            rewrite(key, messages);
+        } else {
+            recordCounts.put(key, records);
+        }
+        return messages;
+    }
+
+    private void rewrite(String key, List<Message> messages) throws IOException {
+        Path log = logPath(key);
+        Path temp = log.resolveSibling(log.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            for (Message message : messages) {
+                writeRecord(out, message);
+            }
+        }
+        Files.move(temp, log, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        recordCounts.put(key, messages.size());
+        resize(key, Files.size(log));
+        compactions.increment();
+    }
+
+    private void evictOverBudget(String keep) {
+        Iterator<Map.Entry<String, Long>> eldest = logSizes.entrySet().iterator();
+        List<String> victims = new ArrayList<>();
+        long remaining = totalBytes;
+        while (remaining > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (!entry.getKey().equals(keep)) {
+                victims.add(entry.getKey());
+                remaining -= entry.getValue();
+            }
+        }
+        for (String victim : victims) {
+            delete(victim);
+            evictions.increment();
+        }
+    }
+
+    private void delete(String key) {
+        try {
+            Files.deleteIfExists(logPath(key));
+        } catch (IOException e) {
+            logger.warn("Failed to delete local messages for {}", key, e);
+        }
+        Long size = logSizes.remove(key);
+        totalBytes -= size != null ? size : 0;
+        recordCounts.remove(key);
+        indexedKeys.remove(key);
+        keyByMessageId.values().removeIf(key::equals);
+    }
+
+    private void resize(String key, long size) {
+        Long previous = logSizes.put(key, size);
+        totalBytes += size - (previous != null ? previous : 0);
+    }
+
+    // Mark as most recently opened, in memory and on disk for the next startup
+    private void touch(String key) {
+        logSizes.get(key);
+        try {
+            Files.setLastModifiedTime(logPath(key), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            logger.debug("Failed to touch {}", key, e);
+        }
+    }
+
+    private Path logPath(String key) {
+        return directory.resolve(key + LOG_SUFFIX);
+    }
+
+    private static String keyOf(Path log) {
+        String name = log.getFileName().toString();
+        return name.substring(0, name.length() - LOG_SUFFIX.length());
+    }
+
+    private static FileTime lastModified(Path log) {
+        try {
+            return Files.getLastModifiedTime(log);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, Message message) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+        try (DataOutputStream record = new DataOutputStream(buffer)) {
+            record.writeByte(RECORD_VERSION);
+            record.writeInt(message.getMessageId());
+            record.writeInt(message.getSenderId());
+            writeNullableInt(record, message.getReceiverId());
+            writeNullableInt(record, message.getGroupId());
+            // Deleted messages are shown as deleted, so their text is not kept
+            writeString(record, message.isDeleted() ? null : message.getContent());
+            writeString(record, message.getMessageType() != null ? message.getMessageType().name() : null);
+            writeString(record, message.isDeleted() ? null : message.getFileUrl());
+            record.writeByte((message.isRead() ? 1 : 0) | (message.isEdited() ? 2 : 0) | (message.isDeleted() ? 4 : 0));
+            record.writeLong(message.getCreatedAt() != null ? message.getCreatedAt().getTime() : Long.MIN_VALUE);
+            writeString(record, message.getSenderName());
+            writeString(record, message.getSenderAvatar());
+        }
+        out.writeInt(buffer.size());
+        buffer.writeTo(out);
+    }
+
+    private static Message readRecord(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readByte() != RECORD_VERSION) {
+                return null;
+            }
+            Message message = new Message();
+            message.setMessageId(in.readInt());
+            message.setSenderId(in.readInt());
+            message.setReceiverId(readNullableInt(in));
+            message.setGroupId(readNullableInt(in));
+            message.setContent(readString(in));
+            String type = readString(in);
+            if (type != null) {
+                message.setMessageType(Message.MessageType.valueOf(type));
+            }
+            message.setFileUrl(readString(in));
+            int flags = in.readByte();
+            message.setRead((flags & 1) != 0);
+            message.setEdited((flags & 2) != 0);
+            message.setDeleted((flags & 4) != 0);
+            long createdAt = in.readLong();
+            message.setCreatedAt(createdAt != Long.MIN_VALUE ? new Timestamp(createdAt) : null);
+            message.setSenderName(readString(in));
+            message.setSenderAvatar(readString(in));
+            return message;
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeNullableInt(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readNullableInt(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.available()) {
+            throw new EOFException("String runs past the end of the record");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -2,10 +2,19 @@ package org.example.danbainoso.client;
 
 import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
+import org.example.danbainoso.client.media.MediaPipeline;
+import org.example.danbainoso.client.media.MediaSink;
+import org.example.danbainoso.client.media.MediaSource;
+import org.example.danbainoso.client.media.SyntheticAudioSource;
+import org.example.danbainoso.client.media.SyntheticVideoSource;
+import org.example.danbainoso.shared.models.MediaSession;
+import org.example.danbainoso.utils.Config;
 import org.example.danbainoso.utils.LoggerUtil;
 import org.slf4j.Logger;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -13,7 +22,13 @@ import java.nio.file.Paths;
 public class MediaHandler {
     private static final Logger logger = LoggerUtil.getLogger(MediaHandler.class);
     private static final String MEDIA_DIR = "media";
+    private static final double TEST_TONE_HZ = 440;
     private MediaPlayer notificationPlayer;
+    // Media of the call in progress, if any
+    private MediaPipeline callMedia;
+    // Where incoming call media goes; discarded until a view or audio line is plugged in
+    private volatile MediaSink videoSink = frame -> { };
+    private volatile MediaSink audioSink = frame -> { };
     
     public MediaHandler() {
         createMediaDirectory();
@@ -46,6 +61,57 @@ public class MediaHandler {
         }
     }
     
+    /**
+     * Start sending and receiving media for a running call; does nothing if that call's media already runs.
+     * Outgoing media comes from synthetic sources until capture devices are wired in.
+     */
+    public synchronized void startCallMedia(MediaSession session, String relayHost, boolean withVideo) {
+        if (callMedia != null) {
+            if (callMedia.getCallId().equals(session.getCallId())) {
+                return;
+            }
+            callMedia.stop();
+            callMedia = null;
+        }
+        MediaSource videoSource = withVideo
+                ? new SyntheticVideoSource(Config.getClientVideoWidth(), Config.getClientVideoHeight())
+                : null;
+        MediaSource audioSource = new SyntheticAudioSource(MediaPipeline.AUDIO_SAMPLE_RATE,
+                MediaPipeline.AUDIO_FRAME_MILLIS, TEST_TONE_HZ);
+        MediaPipeline pipeline = new MediaPipeline(session, new InetSocketAddress(relayHost, session.getPort()),
+                videoSource, audioSource,
+                frame -> videoSink.render(frame), frame -> audioSink.render(frame),
+                Config.getClientVideoMaxFps(), Config.getClientVideoMaxKbps(), Config.getClientJitterMaxMillis());
+        try {
+            pipeline.start();
+            callMedia = pipeline;
+        } catch (IOException e) {
+            logger.error("Failed to start media of call {}", session.getCallId(), e);
+        }
+    }
+    
+    /**
+     * Stop the media of the given call, or of whatever call is running when callId is null.
+     */
+    public synchronized void stopCallMedia(String callId) {
+        if (callMedia != null && (callId == null || callMedia.getCallId().equals(callId))) {
+            callMedia.stop();
+            callMedia = null;
+        }
+    }
+    
+    public synchronized boolean isCallMediaRunning(String callId) {
+        return callMedia != null && callMedia.getCallId().equals(callId);
+    }
+    
+    public void setVideoSink(MediaSink videoSink) {
+        this.videoSink = videoSink;
+    }
+    
+    public void setAudioSink(MediaSink audioSink) {
+        this.audioSink = audioSink;
+    }
+    
     public String saveMediaFile(byte[] data, String filename) {
         try {
             Path filePath = Paths.get(MEDIA_DIR, filename);
@@ -0,0 +1,70 @@
+package org.example.danbainoso.client.media;
+
+/**
+ * G.711 mu-law: 16-bit PCM samples to 8 bits each, halving the audio bitrate at telephone quality.
+ */
+public class AudioCodec implements MediaCodec {
+    private static final int BIAS = 0x84;
+    private static final int CLIP = 32635;
+    private static final short[] DECODE_TABLE = new short[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int value = ~i & 0xFF;
+            int exponent = (value >> 4) & 0x07;
+            int sample = ((((value & 0x0F) << 3) + BIAS) << exponent) - BIAS;
+            DECODE_TABLE[i] = (short) ((value & 0x80) != 0 ? -sample : sample);
+        }
+    }
+
+    @Override
+    public int maxEncodedSize(int rawCapacity) {
+        return rawCapacity / 2;
+    }
+
+    @Override
+    public boolean encode(MediaFrame raw, MediaFrame encoded) {
+        byte[] in = raw.getData();
+        byte[] out = encoded.getData();
+        int samples = raw.getLength() / 2;
+        if (samples > out.length) {
+            return false;
+        }
+        for (int i = 0; i < samples; i++) {
+            out[i] = encodeSample((short) ((in[2 * i] & 0xFF) | (in[2 * i + 1] << 8)));
+        }
+        encoded.setLength(samples);
+        return true;
+    }
+
+    @Override
+    public boolean decode(MediaFrame encoded, MediaFrame raw) {
+        byte[] in = encoded.getData();
+        byte[] out = raw.getData();
+        int samples = encoded.getLength();
+        if (samples * 2 > out.length) {
+            return false;
+        }
+        for (int i = 0; i < samples; i++) {
+            short sample = DECODE_TABLE[in[i] & 0xFF];
+            out[2 * i] = (byte) sample;
+            out[2 * i + 1] = (byte) (sample >> 8);
+        }
+        raw.setLength(samples * 2);
+        return true;
+    }
+
+    static byte encodeSample(int sample) {
+        int sign = (sample >> 8) & 0x80;
+        if (sign != 0) {
+            sample = -sample;
+        }
+        sample = Math.min(sample, CLIP) + BIAS;
+        int exponent = 7;
+        for (int mask = 0x4000; (sample & mask) == 0 && exponent > 0; mask >>= 1) {
+            exponent--;
+        }
+        int mantissa = (sample >> (exponent + 3)) & 0x0F;
+        return (byte) ~(sign | (exponent << 4) | mantissa);
+    }
+}
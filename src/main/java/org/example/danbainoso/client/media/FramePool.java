@@ -0,0 +1,51 @@
+package org.example.danbainoso.client.media;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Free list of same-sized frames. Acquiring from an empty pool allocates a new frame; releasing into a
+ * full pool lets the frame be collected, so the pool settles at what the pipeline actually keeps in flight.
+ */
+public class FramePool {
+    private final int frameCapacity;
+    private final ArrayBlockingQueue<MediaFrame> free;
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder allocated = new LongAdder();
+
+    public FramePool(int frameCapacity, int maxPooled) {
+        this.frameCapacity = frameCapacity;
+        this.free = new ArrayBlockingQueue<>(Math.max(1, maxPooled));
+    }
+
+    public int getFrameCapacity() {
+        return frameCapacity;
+    }
+
+    public MediaFrame acquire() {
+        acquired.increment();
+        MediaFrame frame = free.poll();
+        if (frame == null) {
+            allocated.increment();
+            return new MediaFrame(frameCapacity);
+        }
+        return frame;
+    }
+
+    public void release(MediaFrame frame) {
+        if (frame != null && frame.getCapacity() == frameCapacity) {
+            frame.reset();
+            free.offer(frame);
+        }
+    }
+
+    public long getAllocatedCount() {
+        return allocated.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FramePool{frameBytes=%d, acquired=%d, allocated=%d, free=%d}",
+                frameCapacity, acquired.sum(), allocated.sum(), free.size());
+    }
+}
@@ -0,0 +1,126 @@
+package org.example.danbainoso.client.media;
+
+import java.util.PriorityQueue;
+
+/**
+ * Holds the received frames of one stream and releases each when its turn comes. The first frame anchors the
+ * sender's media clock to local time; every later frame plays at its timestamp plus a delay that follows the
+ * measured arrival jitter (three times the RFC 3550 estimate, within the configured bounds).
+ * Frames arriving after a newer one was played are dropped, and when playout has fallen more than the
+ * maximum delay behind, the clock is re-anchored instead of playing a backlog.
+ */
+public class JitterBuffer {
+    private final FramePool pool;
+    private final int capacity;
+    private final int minDelayMillis;
+    private final int maxDelayMillis;
+    // Ordered by timestamp; the difference keeps the order across the 32-bit wrap of the media clock
+    private final PriorityQueue<MediaFrame> frames;
+
+    private boolean anchored;
+    private long anchorLocalMillis;
+    private int anchorTimestamp;
+    private boolean played;
+    private int lastPlayedTimestamp;
+
+    private boolean arrived;
+    private long lastArrivalMillis;
+    private int lastArrivalTimestamp;
+    private double jitterMillis;
+
+    private long playedCount;
+    private long lateCount;
+    private long overflowCount;
+    private long resyncCount;
+
+    public JitterBuffer(FramePool pool, int capacity, int minDelayMillis, int maxDelayMillis) {
+        this.pool = pool;
+        this.capacity = Math.max(1, capacity);
+        this.minDelayMillis = Math.max(0, minDelayMillis);
+        this.maxDelayMillis = Math.max(this.minDelayMillis, maxDelayMillis);
+        this.frames = new PriorityQueue<>(this.capacity + 1, (a, b) -> Integer.compare(a.getTimestamp() - b.getTimestamp(), 0));
+    }
+
+    /**
+     * Take ownership of a received frame; it goes back to the pool if it is not played.
+     */
+    public synchronized void offer(MediaFrame frame, long nowMillis) {
+        int timestamp = frame.getTimestamp();
+        if (arrived) {
+            long transitChange = (nowMillis - lastArrivalMillis) - ((long) timestamp - lastArrivalTimestamp);
+            jitterMillis += (Math.abs(transitChange) - jitterMillis) / 16.0;
+        }
+        arrived = true;
+        lastArrivalMillis = nowMillis;
+        lastArrivalTimestamp = timestamp;
+
+        if (played && timestamp - lastPlayedTimestamp <= 0) {
+            lateCount++;
+            pool.release(frame);
+            return;
+        }
+        if (frames.size() >= capacity) {
+            overflowCount++;
+            pool.release(frames.poll());
+        }
+        frames.add(frame);
+    }
+
+    /**
+     * @return the next frame that is due, or null; the caller releases it to the pool when done
+     */
+    public synchronized MediaFrame poll(long nowMillis) {
+        MediaFrame head = frames.peek();
+        if (head == null) {
+            return null;
+        }
+        int delay = getDelayMillis();
+        if (!anchored) {
+            anchor(nowMillis, head.getTimestamp(), delay);
+        }
+        long due = anchorLocalMillis + (head.getTimestamp() - anchorTimestamp) + delay;
+        if (nowMillis < due) {
+            return null;
+        }
+        if (nowMillis - due > maxDelayMillis) {
+            // Fell too far behind (sender paused or clocks drifted): start again from this frame
+            resyncCount++;
+            anchor(nowMillis, head.getTimestamp(), delay);
+        }
+        frames.poll();
+        played = true;
+        lastPlayedTimestamp = head.getTimestamp();
+        playedCount++;
+        return head;
+    }
+
+    public synchronized int getDelayMillis() {
+        return (int) Math.max(minDelayMillis, Math.min(maxDelayMillis, Math.round(jitterMillis * 3)));
+    }
+
+    public synchronized double getJitterMillis() {
+        return jitterMillis;
+    }
+
+    /**
+     * Return every held frame to the pool.
+     */
+    public synchronized void clear() {
+        MediaFrame frame;
+        while ((frame = frames.poll()) != null) {
+            pool.release(frame);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("JitterBuffer{held=%d, played=%d, late=%d, overflow=%d, resyncs=%d, jitterMs=%.1f, delayMs=%d}",
+                frames.size(), playedCount, lateCount, overflowCount, resyncCount, jitterMillis, getDelayMillis());
+    }
+
+    private void anchor(long nowMillis, int timestamp, int delay) {
+        anchored = true;
+        anchorLocalMillis = nowMillis - delay;
+        anchorTimestamp = timestamp;
+    }
+}
@@ -0,0 +1,17 @@
+package org.example.danbainoso.client.media;
+
+/**
+ * Turns raw frames into what goes on the wire and back. Implementations write into the caller's frame
+ * instead of allocating, and report a frame that does not fit by returning false.
+ */
+public interface MediaCodec {
+
+    /**
+     * Largest encoded size of a raw frame of the given size.
+     */
+    int maxEncodedSize(int rawCapacity);
+
+    boolean encode(MediaFrame raw, MediaFrame encoded);
+
+    boolean decode(MediaFrame encoded, MediaFrame raw);
+}
@@ -0,0 +1,94 @@
+package org.example.danbainoso.client.media;
+
+/**
+ * A reusable buffer holding one audio or video frame, raw or encoded. Frames come from a {@link FramePool}
+ * and go back to it once used, so the pipeline does not allocate per frame.
+ */
+public final class MediaFrame {
+    private final byte[] data;
+    private int length;
+    private byte type;
+    // Sender's media clock in milliseconds
+    private int timestamp;
+    private int frameNumber;
+    // Sender's media token; 0 for local frames
+    private int sourceToken;
+    // Raw video only
+    private int width;
+    private int height;
+
+    MediaFrame(int capacity) {
+        this.data = new byte[capacity];
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getCapacity() {
+        return data.length;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public void setLength(int length) {
+        this.length = length;
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    public void setType(byte type) {
+        this.type = type;
+    }
+
+    public int getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(int timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public int getFrameNumber() {
+        return frameNumber;
+    }
+
+    public void setFrameNumber(int frameNumber) {
+        this.frameNumber = frameNumber;
+    }
+
+    public int getSourceToken() {
+        return sourceToken;
+    }
+
+    public void setSourceToken(int sourceToken) {
+        this.sourceToken = sourceToken;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    void reset() {
+        length = 0;
+        type = 0;
+        timestamp = 0;
+        frameNumber = 0;
+        sourceToken = 0;
+        width = 0;
+        height = 0;
+    }
+}
@@ -0,0 +1,591 @@
+package org.example.danbainoso.client.media;
+
+import org.example.danbainoso.shared.MediaPacket;
+import org.example.danbainoso.shared.models.MediaSession;
+import org.example.danbainoso.utils.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Media of one call between this client and the server's media relay.
+ * Sending: a capture thread reads the sources, encodes each frame and splits it into datagrams.
+ * Receiving: a receive thread reassembles frames per remote stream into jitter buffers, and a playout thread
+ * decodes due frames into the sinks, sends loss reports back and keeps the relay binding alive.
+ * Frames and socket buffers are pooled and reused, so steady-state media does not allocate per frame.
+ * Video quality and frame rate follow the loss that the other participants report.
+ */
+public class MediaPipeline {
+    private static final Logger logger = LoggerUtil.getLogger(MediaPipeline.class);
+
+    public static final int AUDIO_SAMPLE_RATE = 8000;
+    public static final int AUDIO_FRAME_MILLIS = 20;
+
+    // Each media datagram carries frame number (2 bytes), fragment index and fragment count after the header
+    private static final int FRAGMENT_HEADER_SIZE = 4;
+    private static final int FRAGMENT_PAYLOAD = MediaPacket.MAX_PAYLOAD - FRAGMENT_HEADER_SIZE;
+    private static final int MAX_FRAGMENTS = 255;
+    private static final int MAX_FRAME_SIZE = MAX_FRAGMENTS * FRAGMENT_PAYLOAD;
+    // Largest incoming video frame that can be shown, 640x480 grayscale
+    private static final int MAX_DECODED_VIDEO = 640 * 480;
+    private static final int REPORT_SIZE = 8;
+    private static final long HELLO_INTERVAL_MILLIS = 2000;
+    private static final long REPORT_INTERVAL_MILLIS = 1000;
+    private static final int VIDEO_TICK_MILLIS = 5;
+    private static final int POOL_SIZE = 16;
+    private static final int JITTER_CAPACITY = 32;
+
+    private final MediaSession session;
+    private final InetSocketAddress relay;
+    private final MediaSource videoSource;
+    private final MediaSource audioSource;
+    private final MediaSink videoSink;
+    private final MediaSink audioSink;
+    private final int maxJitterMillis;
+
+    private final VideoCodec videoCodec = new VideoCodec(2);
+    private final AudioCodec audioCodec = new AudioCodec();
+    private final RateController rateController;
+
+    private final FramePool rawVideoPool;
+    private final FramePool encodedVideoPool;
+    private final FramePool rawAudioPool;
+    private final FramePool encodedAudioPool;
+    private final FramePool receivedVideoPool = new FramePool(MAX_FRAME_SIZE, POOL_SIZE * 2);
+    private final FramePool receivedAudioPool = new FramePool(FRAGMENT_PAYLOAD, POOL_SIZE * 2);
+    private final FramePool decodedVideoPool = new FramePool(MAX_DECODED_VIDEO, 4);
+    private final FramePool decodedAudioPool = new FramePool(2 * FRAGMENT_PAYLOAD, 4);
+
+    // One buffer per thread that sends, so sending never allocates
+    private final ByteBuffer captureBuffer = ByteBuffer.allocateDirect(MediaPacket.MAX_PACKET_SIZE);
+    private final ByteBuffer controlBuffer = ByteBuffer.allocateDirect(MediaPacket.MAX_PACKET_SIZE);
+
+    private DatagramChannel channel;
+    private ScheduledExecutorService captureExecutor;
+    private Thread receiveThread;
+    private Thread playoutThread;
+    private volatile boolean running;
+    private long startMillis;
+
+    // Remote streams by (token, type); replaced on change so the playout thread iterates without locking
+    private volatile RemoteStream[] streams = new RemoteStream[0];
+
+    // Capture thread state
+    private int videoSequence;
+    private int audioSequence;
+    private int videoFrameNumber;
+    private int audioFrameNumber;
+    private long nextVideoAtMillis;
+    // Playout thread state
+    private int controlSequence;
+
+    private final LongAdder sentFrames = new LongAdder();
+    private final LongAdder sentPackets = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LongAdder receivedPackets = new LongAdder();
+    private final LongAdder renderedFrames = new LongAdder();
+
+    /**
+     * @param videoSource null for a voice call
+     * @param maxJitterMillis upper bound of the playout delay
+     */
+    public MediaPipeline(MediaSession session, InetSocketAddress relay,
+                         MediaSource videoSource, MediaSource audioSource,
+                         MediaSink videoSink, MediaSink audioSink,
+                         int maxFps, int maxKbps, int maxJitterMillis) {
+        this.session = session;
+        this.relay = relay;
+        this.videoSource = videoSource;
+        this.audioSource = audioSource;
+        this.videoSink = videoSink;
+        this.audioSink = audioSink;
+        this.maxJitterMillis = maxJitterMillis;
+        this.rateController = new RateController(videoCodec, maxFps, maxKbps);
+        int rawVideoSize = videoSource != null ? videoSource.getFrameCapacity() : 0;
+        this.rawVideoPool = new FramePool(rawVideoSize, 2);
+        this.encodedVideoPool = new FramePool(Math.min(MAX_FRAME_SIZE, videoCodec.maxEncodedSize(rawVideoSize)), 2);
+        int rawAudioSize = audioSource != null ? audioSource.getFrameCapacity() : 0;
+        this.rawAudioPool = new FramePool(rawAudioSize, 2);
+        this.encodedAudioPool = new FramePool(audioCodec.maxEncodedSize(rawAudioSize), 2);
+    }
+
+    public String getCallId() {
+        return session.getCallId();
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        channel = DatagramChannel.open();
+        try {
+            channel.connect(relay);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        running = true;
+        startMillis = System.currentTimeMillis();
+        sendControl(MediaPacket.TYPE_HELLO, 0);
+
+        receiveThread = new Thread(this::runReceiver, "media-receive");
+        receiveThread.setDaemon(true);
+        receiveThread.start();
+        playoutThread = new Thread(this::runPlayout, "media-playout");
+        playoutThread.setDaemon(true);
+        playoutThread.start();
+
+        captureExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "media-capture");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (audioSource != null) {
+            captureExecutor.scheduleAtFixedRate(this::captureAudio, 0, AUDIO_FRAME_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        if (videoSource != null) {
+            // Ticks faster than any frame rate; captureVideo skips ticks to follow the adapted frame rate
+            captureExecutor.scheduleAtFixedRate(this::captureVideo, 0, VIDEO_TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Media of call {} started via {}", session.getCallId(), relay);
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        captureExecutor.shutdownNow();
+        try {
+            captureExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            playoutThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            sendControl(MediaPacket.TYPE_BYE, 0);
+        } catch (IOException e) {
+            logger.debug("Failed to say goodbye to media relay", e);
+        }
+        try {
+            // Unblocks the receive thread
+            channel.close();
+            receiveThread.join(1000);
+        } catch (IOException e) {
+            logger.debug("Error closing media channel", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Media of call {} stopped: {}", session.getCallId(), this);
+        for (RemoteStream stream : streams) {
+            stream.close();
+        }
+        streams = new RemoteStream[0];
+        if (videoSource != null) {
+            videoSource.close();
+        }
+        if (audioSource != null) {
+            audioSource.close();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public RateController getRateController() {
+        return rateController;
+    }
+
+    public long getRenderedFrameCount() {
+        return renderedFrames.sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder remote = new StringBuilder();
+        for (RemoteStream stream : streams) {
+            remote.append(", ").append(stream);
+        }
+        return String.format("MediaPipeline{sentFrames=%d, sentPackets=%d, sentKb=%d, droppedFrames=%d, " +
+                        "receivedPackets=%d, renderedFrames=%d, %s, videoPools[raw=%d, encoded=%d, received=%d, decoded=%d]%s}",
+                sentFrames.sum(), sentPackets.sum(), sentBytes.sum() / 1024, droppedFrames.sum(),
+                receivedPackets.sum(), renderedFrames.sum(), rateController,
+                rawVideoPool.getAllocatedCount(), encodedVideoPool.getAllocatedCount(),
+                receivedVideoPool.getAllocatedCount(), decodedVideoPool.getAllocatedCount(), remote);
+    }
+
+    // ---- Sending (capture thread) ----
+
+    private void captureAudio() {
+        capture(audioSource, audioCodec, rawAudioPool, encodedAudioPool, MediaPacket.TYPE_AUDIO);
+    }
+
+    private void captureVideo() {
+        long now = System.currentTimeMillis();
+        if (now < nextVideoAtMillis) {
+            return;
+        }
+        // Keep the cadence, but do not try to catch up on frames skipped while the thread was late
+        nextVideoAtMillis = Math.max(nextVideoAtMillis, now - VIDEO_TICK_MILLIS) + rateController.getFrameIntervalMillis();
+        capture(videoSource, videoCodec, rawVideoPool, encodedVideoPool, MediaPacket.TYPE_VIDEO);
+    }
+
+    private void capture(MediaSource source, MediaCodec codec, FramePool rawPool, FramePool encodedPool, byte type) {
+        MediaFrame raw = rawPool.acquire();
+        MediaFrame encoded = encodedPool.acquire();
+        try {
+            int timestamp = (int) (System.currentTimeMillis() - startMillis);
+            if (!source.read(raw)) {
+                return;
+            }
+            if (!codec.encode(raw, encoded)) {
+                droppedFrames.increment();
+                return;
+            }
+            sendFrame(type, encoded, timestamp);
+        } catch (ClosedChannelException e) {
+            // Stopping
+        } catch (IOException | RuntimeException e) {
+            droppedFrames.increment();
+            logger.debug("Failed to send media frame", e);
+        } finally {
+            rawPool.release(raw);
+            encodedPool.release(encoded);
+        }
+    }
+
+    private void sendFrame(byte type, MediaFrame frame, int timestamp) throws IOException {
+        int length = frame.getLength();
+        int fragments = Math.max(1, (length + FRAGMENT_PAYLOAD - 1) / FRAGMENT_PAYLOAD);
+        if (fragments > MAX_FRAGMENTS) {
+            droppedFrames.increment();
+            return;
+        }
+        boolean video = type == MediaPacket.TYPE_VIDEO;
+        int frameNumber = video ? videoFrameNumber++ : audioFrameNumber++;
+        byte[] data = frame.getData();
+        int bytes = 0;
+        for (int index = 0; index < fragments; index++) {
+            int offset = index * FRAGMENT_PAYLOAD;
+            int size = Math.min(FRAGMENT_PAYLOAD, length - offset);
+            int sequence = video ? videoSequence++ : audioSequence++;
+            captureBuffer.clear();
+            MediaPacket.writeHeader(captureBuffer, type, sequence, timestamp, session.getToken());
+            captureBuffer.putShort((short) frameNumber);
+            captureBuffer.put((byte) index);
+            captureBuffer.put((byte) fragments);
+            captureBuffer.put(data, offset, size);
+            captureBuffer.flip();
+            bytes += channel.write(captureBuffer);
+            sentPackets.increment();
+        }
+        sentFrames.increment();
+        sentBytes.add(bytes);
+        if (video) {
+            rateController.onSent(bytes, System.currentTimeMillis());
+        }
+    }
+
+    // Used by start, then the playout thread, then stop, never two at once; a payload is already in place
+    private void sendControl(byte type, int payloadSize) throws IOException {
+        controlBuffer.limit(MediaPacket.HEADER_SIZE + payloadSize).position(0);
+        MediaPacket.writeHeader(controlBuffer, type, controlSequence++,
+                (int) (System.currentTimeMillis() - startMillis), session.getToken());
+        controlBuffer.position(0);
+        channel.write(controlBuffer);
+    }
+
+    // ---- Receiving (receive thread) ----
+
+    private void runReceiver() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        while (running) {
+            try {
+                buffer.clear();
+                int length = channel.read(buffer);
+                if (length <= 0 || !MediaPacket.isValid(buffer, length)) {
+                    continue;
+                }
+                receivedPackets.increment();
+                handlePacket(buffer, length);
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                // E.g. ICMP port unreachable while the relay restarts; keep listening
+                logger.debug("Media receive failed: {}", e.getMessage());
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error receiving media", e);
+            }
+        }
+    }
+
+    private void handlePacket(ByteBuffer buffer, int length) {
+        int token = MediaPacket.token(buffer);
+        if (token == session.getToken()) {
+            return;
+        }
+        byte type = MediaPacket.type(buffer);
+        long now = System.currentTimeMillis();
+        switch (type) {
+            case MediaPacket.TYPE_AUDIO:
+            case MediaPacket.TYPE_VIDEO:
+                if (length >= MediaPacket.HEADER_SIZE + FRAGMENT_HEADER_SIZE) {
+                    streamFor(token, type).onPacket(buffer, length, now);
+                }
+                break;
+            case MediaPacket.TYPE_REPORT:
+                handleReport(buffer, length);
+                break;
+            case MediaPacket.TYPE_BYE:
+                removeStreams(token);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void handleReport(ByteBuffer buffer, int length) {
+        if (length < MediaPacket.HEADER_SIZE + REPORT_SIZE) {
+            return;
+        }
+        int offset = MediaPacket.HEADER_SIZE;
+        // Reports go to everyone in the call; only the ones about our own video matter here
+        if (buffer.getInt(offset) == session.getToken() && buffer.get(offset + 4) == MediaPacket.TYPE_VIDEO) {
+            rateController.onLossReport((buffer.get(offset + 5) & 0xFF) / 256.0);
+        }
+    }
+
+    private RemoteStream streamFor(int token, byte type) {
+        for (RemoteStream stream : streams) {
+            if (stream.token == token && stream.type == type) {
+                return stream;
+            }
+        }
+        RemoteStream stream = new RemoteStream(token, type);
+        RemoteStream[] current = streams;
+        RemoteStream[] updated = new RemoteStream[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = stream;
+        streams = updated;
+        return stream;
+    }
+
+    private void removeStreams(int token) {
+        RemoteStream[] current = streams;
+        int kept = 0;
+        RemoteStream[] updated = new RemoteStream[current.length];
+        for (RemoteStream stream : current) {
+            if (stream.token == token) {
+                stream.close();
+            } else {
+                updated[kept++] = stream;
+            }
+        }
+        RemoteStream[] remaining = new RemoteStream[kept];
+        System.arraycopy(updated, 0, remaining, 0, kept);
+        streams = remaining;
+    }
+
+    // ---- Playout (playout thread) ----
+
+    private void runPlayout() {
+        long nextHelloAt = System.currentTimeMillis() + HELLO_INTERVAL_MILLIS;
+        long nextReportAt = System.currentTimeMillis() + REPORT_INTERVAL_MILLIS;
+        while (running) {
+            long now = System.currentTimeMillis();
+            try {
+                for (RemoteStream stream : streams) {
+                    stream.playDue(now);
+                }
+                if (now >= nextReportAt) {
+                    nextReportAt = now + REPORT_INTERVAL_MILLIS;
+                    for (RemoteStream stream : streams) {
+                        stream.sendReport();
+                    }
+                }
+                if (now >= nextHelloAt) {
+                    nextHelloAt = now + HELLO_INTERVAL_MILLIS;
+                    sendControl(MediaPacket.TYPE_HELLO, 0);
+                }
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                logger.debug("Media control send failed: {}", e.getMessage());
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error in media playout", e);
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(2));
+        }
+    }
+
+    /**
+     * One stream (audio or video) of one remote participant.
+     */
+    private final class RemoteStream {
+        private final int token;
+        private final byte type;
+        private final FramePool receivedPool;
+        private final FramePool decodedPool;
+        private final MediaCodec codec;
+        private final MediaSink sink;
+        private final JitterBuffer jitterBuffer;
+
+        // Reassembly, receive thread only
+        private MediaFrame assembling;
+        private int assemblingNumber;
+        private int fragmentsExpected;
+        private int fragmentsReceived;
+        private int lastFragmentSize;
+        private final long[] fragmentMask = new long[4];
+        private boolean completedAny;
+        private int lastCompletedNumber;
+        private long incompleteFrames;
+
+        // Sequence tracking for loss reports, shared with the playout thread
+        private boolean sequenceStarted;
+        private long highestSequence;
+        private long highestAtLastReport;
+        private long receivedSinceReport;
+
+        private RemoteStream(int token, byte type) {
+            this.token = token;
+            this.type = type;
+            boolean video = type == MediaPacket.TYPE_VIDEO;
+            this.receivedPool = video ? receivedVideoPool : receivedAudioPool;
+            this.decodedPool = video ? decodedVideoPool : decodedAudioPool;
+            this.codec = video ? videoCodec : audioCodec;
+            this.sink = video ? videoSink : audioSink;
+            this.jitterBuffer = new JitterBuffer(receivedPool, JITTER_CAPACITY,
+                    video ? 0 : AUDIO_FRAME_MILLIS, maxJitterMillis);
+        }
+
+        private void onPacket(ByteBuffer buffer, int length, long now) {
+            recordSequence(MediaPacket.sequence(buffer));
+            int offset = MediaPacket.HEADER_SIZE;
+            int frameNumber = buffer.getShort(offset) & 0xFFFF;
+            int index = buffer.get(offset + 2) & 0xFF;
+            int count = buffer.get(offset + 3) & 0xFF;
+            int size = length - offset - FRAGMENT_HEADER_SIZE;
+            if (count == 0 || index >= count || size > FRAGMENT_PAYLOAD
+                    || (long) count * FRAGMENT_PAYLOAD > receivedPool.getFrameCapacity()) {
+                return;
+            }
+            if (assembling == null || frameNumber != assemblingNumber) {
+                if ((completedAny && (short) (frameNumber - lastCompletedNumber) <= 0)
+                        || (assembling != null && (short) (frameNumber - assemblingNumber) < 0)) {
+                    // Straggler of a frame that was already completed or given up on
+                    return;
+                }
+                if (assembling != null) {
+                    incompleteFrames++;
+                    receivedPool.release(assembling);
+                }
+                assembling = receivedPool.acquire();
+                assemblingNumber = frameNumber;
+                fragmentsExpected = count;
+                fragmentsReceived = 0;
+                fragmentMask[0] = fragmentMask[1] = fragmentMask[2] = fragmentMask[3] = 0;
+                assembling.setType(type);
+                assembling.setSourceToken(token);
+                assembling.setFrameNumber(frameNumber);
+                assembling.setTimestamp(MediaPacket.timestamp(buffer));
+            }
+            long bit = 1L << (index & 63);
+            if (count != fragmentsExpected || (fragmentMask[index >>> 6] & bit) != 0) {
+                return;
+            }
+            fragmentMask[index >>> 6] |= bit;
+            buffer.get(offset + FRAGMENT_HEADER_SIZE, assembling.getData(), index * FRAGMENT_PAYLOAD, size);
+            if (index == count - 1) {
+                lastFragmentSize = size;
+            }
+            if (++fragmentsReceived == fragmentsExpected) {
+                assembling.setLength((fragmentsExpected - 1) * FRAGMENT_PAYLOAD + lastFragmentSize);
+                jitterBuffer.offer(assembling, now);
+                assembling = null;
+                completedAny = true;
+                lastCompletedNumber = frameNumber;
+            }
+        }
+
+        private synchronized void recordSequence(int sequence) {
+            receivedSinceReport++;
+            if (!sequenceStarted) {
+                sequenceStarted = true;
+                highestSequence = sequence;
+                highestAtLastReport = sequence - 1;
+                return;
+            }
+            int delta = (sequence - (int) (highestSequence & 0xFFFF)) & 0xFFFF;
+            if (delta != 0 && delta < 0x8000) {
+                highestSequence += delta;
+            }
+        }
+
+        private void playDue(long now) {
+            MediaFrame frame;
+            while ((frame = jitterBuffer.poll(now)) != null) {
+                MediaFrame decoded = decodedPool.acquire();
+                try {
+                    if (codec.decode(frame, decoded)) {
+                        decoded.setType(type);
+                        decoded.setSourceToken(token);
+                        decoded.setTimestamp(frame.getTimestamp());
+                        sink.render(decoded);
+                        renderedFrames.increment();
+                    }
+                } finally {
+                    receivedPool.release(frame);
+                    decodedPool.release(decoded);
+                }
+            }
+        }
+
+        private void sendReport() throws IOException {
+            long expected;
+            long received;
+            synchronized (this) {
+                expected = highestSequence - highestAtLastReport;
+                received = receivedSinceReport;
+                highestAtLastReport = highestSequence;
+                receivedSinceReport = 0;
+            }
+            if (expected <= 0) {
+                return;
+            }
+            int lossFraction = (int) Math.min(255, Math.max(0, (expected - received) * 256 / expected));
+            controlBuffer.clear();
+            controlBuffer.position(MediaPacket.HEADER_SIZE);
+            controlBuffer.putInt(token);
+            controlBuffer.put(type);
+            controlBuffer.put((byte) lossFraction);
+            controlBuffer.putShort((short) Math.min(0xFFFF, Math.round(jitterBuffer.getJitterMillis())));
+            sendControl(MediaPacket.TYPE_REPORT, REPORT_SIZE);
+        }
+
+        private void close() {
+            jitterBuffer.clear();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s#%d{incomplete=%d, %s}",
+                    type == MediaPacket.TYPE_VIDEO ? "video" : "audio", token, incompleteFrames, jitterBuffer);
+        }
+    }
+}
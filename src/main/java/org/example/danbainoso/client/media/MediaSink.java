@@ -0,0 +1,11 @@
+package org.example.danbainoso.client.media;
+
+/**
+ * Where decoded incoming frames go, e.g. a video view or an audio line. Called from the playout thread;
+ * the frame goes back to its pool afterwards, so a sink that keeps the data must copy it.
+ */
+@FunctionalInterface
+public interface MediaSink {
+
+    void render(MediaFrame frame);
+}
@@ -0,0 +1,23 @@
+package org.example.danbainoso.client.media;
+
+/**
+ * Where outgoing frames come from: a camera, a microphone, or a synthetic generator for headless runs.
+ * Called from the capture thread only.
+ */
+public interface MediaSource {
+
+    /**
+     * Raw frame size this source needs, in bytes.
+     */
+    int getFrameCapacity();
+
+    /**
+     * Fill the frame with the next captured frame (data, length and, for video, size).
+     *
+     * @return false when nothing was captured this time
+     */
+    boolean read(MediaFrame frame);
+
+    default void close() {
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.danbainoso.client.media;
+
+/**
+ * Adapts outgoing video to the loss the other side reports. The target bitrate backs off in proportion to
+ * the loss when it exceeds 10% and creeps up by 5% while loss stays under 2%. Once a second the bitrate
+ * actually sent is compared to the target: over it, quality is lowered first and the frame rate after that;
+ * well under it, the frame rate is restored first and then quality.
+ */
+public class RateController {
+    private static final double HIGH_LOSS = 0.10;
+    private static final double LOW_LOSS = 0.02;
+    private static final int MIN_FPS = 5;
+    private static final long WINDOW_MILLIS = 1000;
+
+    private final VideoCodec codec;
+    private final int minKbps;
+    private final int maxKbps;
+    private final int maxFps;
+
+    private double targetKbps;
+    private int fps;
+    private long windowStartMillis;
+    private long windowBytes;
+    private double sentKbps;
+    private double lastLoss;
+
+    public RateController(VideoCodec codec, int maxFps, int maxKbps) {
+        this.codec = codec;
+        this.maxFps = Math.max(MIN_FPS, maxFps);
+        this.maxKbps = Math.max(64, maxKbps);
+        this.minKbps = Math.max(32, this.maxKbps / 20);
+        this.targetKbps = this.maxKbps;
+        this.fps = this.maxFps;
+    }
+
+    /**
+     * A receiver reported the fraction of our video packets it lost over its last interval.
+     */
+    public synchronized void onLossReport(double lossFraction) {
+        lastLoss = lossFraction;
+        if (lossFraction > HIGH_LOSS) {
+            targetKbps = Math.max(minKbps, targetKbps * (1 - 0.5 * lossFraction));
+        } else if (lossFraction < LOW_LOSS) {
+            targetKbps = Math.min(maxKbps, targetKbps * 1.05);
+        }
+    }
+
+    /**
+     * Account for video bytes sent and adjust quality and frame rate at the end of each window.
+     */
+    public synchronized void onSent(int bytes, long nowMillis) {
+        if (windowStartMillis == 0) {
+            windowStartMillis = nowMillis;
+        }
+        windowBytes += bytes;
+        long elapsed = nowMillis - windowStartMillis;
+        if (elapsed < WINDOW_MILLIS) {
+            return;
+        }
+        sentKbps = windowBytes * 8.0 / elapsed;
+        windowStartMillis = nowMillis;
+        windowBytes = 0;
+        if (sentKbps > targetKbps * 1.1) {
+            if (codec.getShift() < VideoCodec.MAX_SHIFT) {
+                codec.setShift(codec.getShift() + 1);
+            } else if (fps > MIN_FPS) {
+                fps = Math.max(MIN_FPS, fps * 2 / 3);
+            }
+        } else if (sentKbps < targetKbps * 0.7) {
+            if (fps < maxFps) {
+                fps = Math.min(maxFps, fps * 3 / 2 + 1);
+            } else if (codec.getShift() > 0) {
+                codec.setShift(codec.getShift() - 1);
+            }
+        }
+    }
+
+    public synchronized int getFrameIntervalMillis() {
+        return 1000 / fps;
+    }
+
+    public synchronized int getFps() {
+        return fps;
+    }
+
+    public synchronized double getTargetKbps() {
+        return targetKbps;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("RateController{targetKbps=%.0f, sentKbps=%.0f, fps=%d, shift=%d, lastLoss=%.1f%%}",
+                targetKbps, sentKbps, fps, codec.getShift(), lastLoss * 100);
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.danbainoso.client.media;
+
+/**
+ * Generates a steady tone as 16-bit little-endian mono PCM, one frame per call,
+ * so a call can be exercised without a microphone.
+ */
+public class SyntheticAudioSource implements MediaSource {
+    private final int samplesPerFrame;
+    private final double phaseStep;
+    private double phase;
+
+    public SyntheticAudioSource(int sampleRate, int frameMillis, double toneHz) {
+        this.samplesPerFrame = sampleRate * frameMillis / 1000;
+        this.phaseStep = 2 * Math.PI * toneHz / sampleRate;
+    }
+
+    @Override
+    public int getFrameCapacity() {
+        return samplesPerFrame * 2;
+    }
+
+    @Override
+    public boolean read(MediaFrame frame) {
+        byte[] data = frame.getData();
+        for (int i = 0; i < samplesPerFrame; i++) {
+            int sample = (int) (Math.sin(phase) * 8000);
+            data[2 * i] = (byte) sample;
+            data[2 * i + 1] = (byte) (sample >> 8);
+            phase += phaseStep;
+        }
+        // Keep the phase small so precision does not drift over a long call
+        phase %= 2 * Math.PI;
+        frame.setLength(samplesPerFrame * 2);
+        return true;
+    }
+}
@@ -0,0 +1,49 @@
+package org.example.danbainoso.client.media;
+
+import java.util.Arrays;
+
+/**
+ * Generates 8-bit grayscale test frames: a slowly moving gradient with a bouncing square,
+ * so a call can be exercised without a camera.
+ */
+public class SyntheticVideoSource implements MediaSource {
+    private static final int BOX_SIZE = 32;
+
+    private final int width;
+    private final int height;
+    private int frameCount;
+
+    public SyntheticVideoSource(int width, int height) {
+        this.width = Math.max(BOX_SIZE, width);
+        this.height = Math.max(BOX_SIZE, height);
+    }
+
+    @Override
+    public int getFrameCapacity() {
+        return width * height;
+    }
+
+    @Override
+    public boolean read(MediaFrame frame) {
+        byte[] pixels = frame.getData();
+        int shift = frameCount;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int base = (y + shift) >> 2;
+            for (int x = 0; x < width; x++) {
+                pixels[row + x] = (byte) (base + (x >> 2));
+            }
+        }
+        int span = 2 * (width - BOX_SIZE);
+        int boxX = frameCount * 4 % span;
+        boxX = boxX < width - BOX_SIZE ? boxX : span - boxX;
+        int boxY = (height - BOX_SIZE) / 2;
+        for (int y = boxY; y < boxY + BOX_SIZE; y++) {
+            Arrays.fill(pixels, y * width + boxX, y * width + boxX + BOX_SIZE, (byte) 0xFF);
+        }
+        frame.setSize(width, height);
+        frame.setLength(width * height);
+        frameCount++;
+        return true;
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.danbainoso.client.media;
+
+/**
+ * Minimal intra-only codec for 8-bit grayscale frames: pixels are quantized by a shift and stored as
+ * (value, run length) pairs. Every frame stands alone, so a lost frame never damages the following ones.
+ * The shift is the quality knob used for rate adaptation: 0 is lossless, each step halves the levels.
+ * Stands in for a real video codec, which this project does not ship.
+ */
+public class VideoCodec implements MediaCodec {
+    public static final int MAX_SHIFT = 6;
+    private static final int HEADER_SIZE = 5;
+
+    private volatile int shift;
+
+    public VideoCodec(int shift) {
+        setShift(shift);
+    }
+
+    public int getShift() {
+        return shift;
+    }
+
+    public void setShift(int shift) {
+        this.shift = Math.max(0, Math.min(MAX_SHIFT, shift));
+    }
+
+    @Override
+    public int maxEncodedSize(int rawCapacity) {
+        return HEADER_SIZE + 2 * rawCapacity;
+    }
+
+    @Override
+    public boolean encode(MediaFrame raw, MediaFrame encoded) {
+        int currentShift = shift;
+        byte[] in = raw.getData();
+        byte[] out = encoded.getData();
+        int length = raw.getLength();
+        if (out.length < HEADER_SIZE) {
+            return false;
+        }
+        out[0] = (byte) (raw.getWidth() >> 8);
+        out[1] = (byte) raw.getWidth();
+        out[2] = (byte) (raw.getHeight() >> 8);
+        out[3] = (byte) raw.getHeight();
+        out[4] = (byte) currentShift;
+        int position = HEADER_SIZE;
+        int i = 0;
+        while (i < length) {
+            int value = (in[i] & 0xFF) >>> currentShift;
+            int run = 1;
+            while (run < 256 && i + run < length && ((in[i + run] & 0xFF) >>> currentShift) == value) {
+                run++;
+            }
+            if (position + 2 > out.length) {
+                return false;
+            }
+            out[position++] = (byte) value;
+            out[position++] = (byte) (run - 1);
+            i += run;
+        }
+        encoded.setLength(position);
+        return true;
+    }
+
+    @Override
+    public boolean decode(MediaFrame encoded, MediaFrame raw) {
+        byte[] in = encoded.getData();
+        int length = encoded.getLength();
+        if (length < HEADER_SIZE) {
+            return false;
+        }
+        int width = ((in[0] & 0xFF) << 8) | (in[1] & 0xFF);
+        int height = ((in[2] & 0xFF) << 8) | (in[3] & 0xFF);
+        int frameShift = in[4] & 0xFF;
+        int pixels = width * height;
+        byte[] out = raw.getData();
+        if (pixels > out.length || frameShift > MAX_SHIFT) {
+            return false;
+        }
+        // Put each level in the middle of the range it stands for
+        int half = (1 << frameShift) >> 1;
+        int position = 0;
+        for (int i = HEADER_SIZE; i + 1 < length; i += 2) {
+            byte value = (byte) (((in[i] & 0xFF) << frameShift) | half);
+            int run = (in[i + 1] & 0xFF) + 1;
+            if (position + run > pixels) {
+                return false;
+            }
+            for (int end = position + run; position < end; position++) {
+                out[position] = value;
+            }
+        }
+        if (position != pixels) {
+            return false;
+        }
+        raw.setSize(width, height);
+        raw.setLength(pixels);
+        return true;
+    }
+}
@@ -1,5 +1,6 @@
 package org.example.danbainoso.client.ui;
 
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -11,8 +12,11 @@ import javafx.scene.control.*;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import org.example.danbainoso.client.ClientMain;
 import org.example.danbainoso.client.ClientRMI;
+import org.example.danbainoso.client.ClientTaskExecutor;
+import org.example.danbainoso.client.LocalMessageStore;
 import org.example.danbainoso.client.MediaHandler;
 import org.example.danbainoso.shared.ChatClientCallback;
 import org.example.danbainoso.shared.VideoClientCallback;
@@ -20,8 +24,11 @@ import org.example.danbainoso.shared.models.BlockStatus;
 import org.example.danbainoso.shared.models.CallRequest;
 import org.example.danbainoso.shared.models.Friendship;
 import org.example.danbainoso.shared.models.Group;
+import org.example.danbainoso.shared.models.MediaSession;
 import org.example.danbainoso.shared.models.Message;
 import org.example.danbainoso.shared.models.User;
+import org.example.danbainoso.shared.models.UserSummary;
+import org.example.danbainoso.utils.Config;
 import org.example.danbainoso.utils.LoggerUtil;
 import org.slf4j.Logger;
 
@@ -41,6 +48,11 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
     private static final DateTimeFormatter TODAY_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
     private static final DateTimeFormatter DEFAULT_FORMATTER = DateTimeFormatter.ofPattern("dd/MM HH:mm");
     private static final String DEFAULT_MESSAGE_PROMPT = "Nhập tin nhắn...";
+    private static final int SEARCH_PAGE_SIZE = 20;
+    private static final String CONTACTS_TASK = "contacts";
+    
+    @FXML
+    private TextField contactSearchField;
     
     @FXML
     private ListView<String> contactsList;
@@ -94,10 +106,7 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
     private Label currentChatLabel;
     
     @FXML
-    private VBox messagesContainer;
-    
-    @FXML
-    private ScrollPane messagesScrollPane;
+    private ListView<ConversationItem> messagesList;
     
     private ClientRMI clientRMI;
     private User currentUser;
@@ -107,9 +116,14 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
     private ConversationLoader conversationLoader;
     private BlockStatus currentBlockStatus = BlockStatus.NONE;
     private boolean currentUserIsGroupAdmin = false;
-    private final Label blockedInfoLabel = new Label();
     private final List<Group> cachedGroups = new ArrayList<>();
     private final List<User> cachedContacts = new ArrayList<>();
+    // Search paging state, touched only on the FX thread
+    private final PauseTransition searchDebounce = new PauseTransition(Duration.millis(250));
+    private int contactSearchCursor = -1;
+    // The query contactSearchCursor belongs to; the field may already hold a newer one waiting on the debounce
+    private String contactSearchQuery = "";
+    private boolean contactSearchLoading = false;
     
     @FXML
     public void initialize() {
@@ -117,8 +131,7 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
         mediaHandler = new MediaHandler();
         conversationLoader = new ConversationLoader(
                 clientRMI,
-                messagesContainer,
-                messagesScrollPane,
+                messagesList,
                 () -> currentUser,
                 () -> selectedContact,
                 () -> selectedGroup,
@@ -138,6 +151,10 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
         // Setup tab switching with ToggleButtons
         setupTabSwitching();
         
+        // Search users as the query changes; an empty query shows the friend list
+        searchDebounce.setOnFinished(e -> loadContacts());
+        contactSearchField.textProperty().addListener((obs, oldText, newText) -> searchDebounce.playFromStart());
+        
         // Setup event handlers
         contactsList.setOnMouseClicked(e -> {
             int index = contactsList.getSelectionModel().getSelectedIndex();
@@ -170,8 +187,6 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
         leaveGroupButton.setManaged(false);
         leaveGroupButton.setOnAction(e -> handleLeaveGroupShortcut());
         logoutButton.setOnAction(e -> handleLogout());
-        blockedInfoLabel.getStyleClass().add("system-message");
-        blockedInfoLabel.setWrapText(true);
         
         updateGroupActionButtons();
         // Data will be loaded after setCurrentUser() is called
@@ -226,27 +241,56 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
         if (currentUser == null) {
             return;
         }
-        new Thread(() -> {
-            try {
-                List<User> users = clientRMI.searchUsers("");
-                Platform.runLater(() -> {
-                    cachedContacts.clear();
-                    for (User user : users) {
-                        if (user.getUserId() != currentUser.getUserId()) {
-                            cachedContacts.add(user);
-                        }
-                    }
-                    contactsList.getItems().clear();
-                    contactsList.getItems().addAll(
-                            cachedContacts.stream()
-                                    .map(u -> u.getUsername() + " (" + u.getStatus() + ")")
-                                    .collect(Collectors.toList())
-                    );
-                });
-            } catch (Exception e) {
-                logger.error("Failed to load contacts", e);
+        String query = contactSearchField.getText() == null ? "" : contactSearchField.getText().trim();
+        contactSearchCursor = -1;
+        contactSearchLoading = false;
+        if (query.isEmpty()) {
+            // Supersedes any search still in flight
+            clientRMI.asyncLatest(CONTACTS_TASK, () -> clientRMI.getFriends())
+                    .thenAccept(friends -> showContacts(friends, false))
+                    .exceptionally(ClientTaskExecutor.onFailure(e -> logger.error("Failed to load contacts", e)));
+        } else {
+            searchContacts(query, 0);
+        }
+    }
+    
+    private void loadMoreContacts() {
+        if (contactSearchCursor < 0 || contactSearchLoading) {
+            return;
+        }
+        searchContacts(contactSearchQuery, contactSearchCursor);
+    }
+    
+    private void searchContacts(String query, int cursor) {
+        contactSearchLoading = true;
+        clientRMI.asyncLatest(CONTACTS_TASK, () -> clientRMI.searchUsers(query, cursor, SEARCH_PAGE_SIZE))
+                .thenAccept(page -> {
+                    contactSearchLoading = false;
+                    contactSearchCursor = page.getNextCursor();
+                    contactSearchQuery = query;
+                    showContacts(page.getUsers().stream().map(UserSummary::toUser).collect(Collectors.toList()), cursor > 0);
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to search users", e);
+                    contactSearchLoading = false;
+                }));
+    }
+    
+    private void showContacts(List<User> users, boolean append) {
+        if (!append) {
+            cachedContacts.clear();
+            contactsList.getItems().clear();
+        }
+        for (User user : users) {
+            if (user.getUserId() != currentUser.getUserId()) {
+                cachedContacts.add(user);
+                contactsList.getItems().add(formatContactListItem(user));
             }
-        }).start();
+        }
+    }
+    
+    private String formatContactListItem(User user) {
+        return user.getUsername() + " (" + user.getStatus() + ")";
     }
     
     private void loadGroups() {
@@ -260,10 +304,9 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
             }
             return;
         }
-        new Thread(() -> {
-            try {
-                List<Group> groups = clientRMI.getUserGroups(currentUser.getUserId());
-                Platform.runLater(() -> {
+        int userId = currentUser.getUserId();
+        clientRMI.async(() -> clientRMI.getUserGroups(userId))
+                .thenAccept(groups -> {
                     cachedGroups.clear();
                     cachedGroups.addAll(groups);
                     groupsList.getItems().setAll(
@@ -275,11 +318,8 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
                     if (onFinish != null) {
                         onFinish.run();
                     }
-                });
-            } catch (Exception e) {
-                logger.error("Failed to load groups", e);
-            }
-        }).start();
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> logger.error("Failed to load groups", e)));
     }
     
     private void loadContactByIndex(int contactIndex) {
@@ -308,6 +348,7 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
         
         // Update status label
         updateStatusLabel(user);
+        updateViewedUser(user.getUserId());
         
         checkFriendshipStatus(user);
         prepareContactConversation(user);
@@ -330,28 +371,34 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
         }
     }
     
+    /**
+     * Tell the server whose presence we are looking at so status changes reach us even for non-friends
+     */
+    private void updateViewedUser(Integer viewedUserId) {
+        if (currentUser == null) {
+            return;
+        }
+        // Only the last viewed user matters when switching quickly
+        clientRMI.asyncLatest("viewed-user", () -> {
+                    clientRMI.setViewedUser(viewedUserId);
+                    return null;
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> logger.error("Failed to update viewed user", e)));
+    }
+    
     private void checkFriendshipStatus(User contact) {
         if (currentUser == null || contact == null || contact.getUserId() == currentUser.getUserId()) {
             setAddFriendVisibility(false);
             return;
         }
         
-        new Thread(() -> {
-            try {
-                List<User> friends = clientRMI.getFriends();
-                boolean isFriend = friends.stream()
-                    .anyMatch(f -> f.getUserId() == contact.getUserId());
-                
-                Platform.runLater(() -> {
-                    setAddFriendVisibility(!isFriend);
-                });
-            } catch (Exception e) {
-                logger.error("Failed to check friendship status", e);
-                Platform.runLater(() -> {
+        clientRMI.asyncLatest("friendship-status", () -> clientRMI.getFriends().stream()
+                        .anyMatch(f -> f.getUserId() == contact.getUserId()))
+                .thenAccept(isFriend -> setAddFriendVisibility(!isFriend))
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to check friendship status", e);
                     setAddFriendVisibility(true);
-                });
-            }
-        }).start();
+                }));
     }
     
     private void sendFriendRequest() {
@@ -359,24 +406,20 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
             return;
         }
         
-        new Thread(() -> {
-            try {
-                boolean success = clientRMI.sendFriendRequest(selectedContact.getUserId());
-                Platform.runLater(() -> {
+        User target = selectedContact;
+        clientRMI.async(() -> clientRMI.sendFriendRequest(target.getUserId()))
+                .thenAccept(success -> {
                     if (success) {
-                        showAlert("Đã gửi lời mời kết bạn đến " + selectedContact.getUsername());
+                        showAlert("Đã gửi lời mời kết bạn đến " + target.getUsername());
                         addFriendButton.setVisible(false);
                     } else {
                         showAlert("Không thể gửi lời mời kết bạn. Có thể đã gửi trước đó.");
                     }
-                });
-            } catch (Exception e) {
-                logger.error("Failed to send friend request", e);
-                Platform.runLater(() -> {
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to send friend request", e);
                     showAlert("Lỗi khi gửi lời mời kết bạn.");
-                });
-            }
-        }).start();
+                }));
     }
     
     private void openFriendshipWindow() {
@@ -422,16 +465,12 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
             updateBlockButtonVisibility(false);
             enableMessaging();
             currentChatLabel.setText("Nhóm: " + group.getGroupName());
+            updateViewedUser(null);
             
             // Update status label for group
             if (statusLabel != null) {
-                try {
-                    List<User> members = clientRMI.getGroupMembers(group.getGroupId());
-                    statusLabel.setText(members.size() + " thành viên");
-                    statusLabel.setStyle("-fx-text-fill: #95a5a6;");
-                } catch (Exception e) {
-                    statusLabel.setText("");
-                }
+                statusLabel.setText(group.getMemberCount() + " thành viên");
+                statusLabel.setStyle("-fx-text-fill: #95a5a6;");
             }
             
             conversationLoader.loadConversation(null, selectedGroup);
@@ -501,28 +540,28 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
             return;
         }
         final int targetId = contact.getUserId();
-        new Thread(() -> {
-            BlockStatus status = BlockStatus.NONE;
-            try {
-                status = clientRMI.getBlockStatus(targetId);
-            } catch (Exception e) {
-                logger.error("Failed to check block status", e);
-            }
-            BlockStatus finalStatus = status;
-            Platform.runLater(() -> {
-                if (selectedContact == null || selectedContact.getUserId() != targetId) {
-                    return;
-                }
-                currentBlockStatus = finalStatus;
-                updateBlockButtonState();
-                if (finalStatus == BlockStatus.NONE) {
-                    enableMessaging();
-                    conversationLoader.loadConversation(selectedContact, null);
-                } else {
-                    showBlockedState(finalStatus);
-                }
-            });
-        }).start();
+        // Opening another contact supersedes this check
+        clientRMI.asyncLatest("block-status", () -> {
+                    try {
+                        return clientRMI.getBlockStatus(targetId);
+                    } catch (RemoteException e) {
+                        logger.error("Failed to check block status", e);
+                        return BlockStatus.NONE;
+                    }
+                })
+                .thenAccept(status -> {
+                    if (selectedContact == null || selectedContact.getUserId() != targetId) {
+                        return;
+                    }
+                    currentBlockStatus = status;
+                    updateBlockButtonState();
+                    if (status == BlockStatus.NONE) {
+                        enableMessaging();
+                        conversationLoader.loadConversation(selectedContact, null);
+                    } else {
+                        showBlockedState(status);
+                    }
+                });
     }
 
     private void toggleBlockStatus() {
@@ -534,18 +573,11 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
         }
         blockButton.setDisable(true);
         final int targetId = selectedContact.getUserId();
-        new Thread(() -> {
-            try {
-                boolean success;
-                if (currentBlockStatus == BlockStatus.BLOCKED_BY_ME) {
-                    success = clientRMI.unblockUser(targetId);
-                } else {
-                    success = clientRMI.blockUser(targetId);
-                }
-                boolean finalSuccess = success;
-                Platform.runLater(() -> {
+        final boolean unblock = currentBlockStatus == BlockStatus.BLOCKED_BY_ME;
+        clientRMI.async(() -> unblock ? clientRMI.unblockUser(targetId) : clientRMI.blockUser(targetId))
+                .thenAccept(success -> {
                     blockButton.setDisable(false);
-                    if (!finalSuccess) {
+                    if (!success) {
                         showAlert("Không thể cập nhật trạng thái chặn.");
                         return;
                     }
@@ -561,15 +593,12 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
                         enableMessaging();
                         conversationLoader.loadConversation(selectedContact, null);
                     }
-                });
-            } catch (Exception e) {
-                logger.error("Failed to toggle block state", e);
-                Platform.runLater(() -> {
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to toggle block state", e);
                     blockButton.setDisable(false);
                     showAlert("Lỗi khi cập nhật trạng thái chặn.");
-                });
-            }
-        }).start();
+                }));
     }
 
     private void showBlockedState(BlockStatus status) {
@@ -592,7 +621,7 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
         messageField.setDisable(false);
         sendButton.setDisable(false);
         messageField.setPromptText(DEFAULT_MESSAGE_PROMPT);
-        messagesContainer.getChildren().remove(blockedInfoLabel);
+        conversationLoader.clearNotice();
     }
 
     private void updateBlockButtonVisibility(boolean visible) {
@@ -622,9 +651,7 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
     }
 
     private void showPlaceholderMessage(String message) {
-        messagesContainer.getChildren().clear();
-        blockedInfoLabel.setText(message);
-        messagesContainer.getChildren().add(blockedInfoLabel);
+        conversationLoader.showNotice(message);
     }
 
     private void fetchGroupRoleForSelectedGroup() {
@@ -636,23 +663,23 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
         final int currentGroupId = selectedGroup.getGroupId();
         currentUserIsGroupAdmin = false;
         refreshGroupSettingsButtonState();
-        new Thread(() -> {
-            Group.GroupRole role = null;
-            try {
-                role = clientRMI.getGroupRole(currentGroupId);
-            } catch (Exception e) {
-                logger.error("Failed to fetch group role", e);
-            }
-            Group.GroupRole finalRole = role;
-            Platform.runLater(() -> {
-                if (selectedGroup == null || selectedGroup.getGroupId() != currentGroupId) {
-                    return;
-                }
-                currentUserIsGroupAdmin = finalRole == Group.GroupRole.ADMIN;
-                refreshGroupSettingsButtonState();
-                updateGroupActionButtons();
-            });
-        }).start();
+        // Opening another group supersedes this lookup
+        clientRMI.asyncLatest("group-role", () -> {
+                    try {
+                        return clientRMI.getGroupRole(currentGroupId);
+                    } catch (RemoteException e) {
+                        logger.error("Failed to fetch group role", e);
+                        return null;
+                    }
+                })
+                .thenAccept(role -> {
+                    if (selectedGroup == null || selectedGroup.getGroupId() != currentGroupId) {
+                        return;
+                    }
+                    currentUserIsGroupAdmin = role == Group.GroupRole.ADMIN;
+                    refreshGroupSettingsButtonState();
+                    updateGroupActionButtons();
+                });
     }
 
     private void refreshGroupSettingsButtonState() {
@@ -725,7 +752,6 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
     private void handleGroupDeleted(int groupId) {
         if (selectedGroup != null && selectedGroup.getGroupId() == groupId) {
             selectedGroup = null;
-            messagesContainer.getChildren().clear();
             showPlaceholderMessage("Nhóm đã bị xóa. Chọn cuộc trò chuyện khác.");
             currentChatLabel.setText("Chọn một cuộc trò chuyện");
             messageField.clear();
@@ -758,10 +784,9 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
         }
         leaveGroupButton.setDisable(true);
         int groupId = selectedGroup.getGroupId();
-        new Thread(() -> {
-            try {
-                boolean left = clientRMI.removeMemberFromGroup(groupId, currentUser.getUserId());
-                Platform.runLater(() -> {
+        int userId = currentUser.getUserId();
+        clientRMI.async(() -> clientRMI.removeMemberFromGroup(groupId, userId))
+                .thenAccept(left -> {
                     leaveGroupButton.setDisable(false);
                     if (left) {
                         showAlert("Bạn đã rời nhóm.");
@@ -769,15 +794,12 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
                     } else {
                         showAlert("Không thể rời nhóm lúc này. Hãy thử lại.");
                     }
-                });
-            } catch (Exception e) {
-                logger.error("Failed to leave group", e);
-                Platform.runLater(() -> {
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to leave group", e);
                     leaveGroupButton.setDisable(false);
                     showAlert("Lỗi khi rời nhóm: " + e.getMessage());
-                });
-            }
-        }).start();
+                }));
     }
     
     private void openCreateGroupWindow() {
@@ -821,8 +843,14 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
     @Override
     public void onUserStatusChanged(int userId, User.UserStatus status) throws RemoteException {
         Platform.runLater(() -> {
-            // Update the contacts list to reflect new status
-            loadContacts();
+            // Update the listed contact in place instead of reloading the list
+            for (int i = 0; i < cachedContacts.size(); i++) {
+                User contact = cachedContacts.get(i);
+                if (contact.getUserId() == userId) {
+                    contact.setStatus(status);
+                    contactsList.getItems().set(i, formatContactListItem(contact));
+                }
+            }
             
             // If the user whose status changed is the currently selected contact, update status label
             if (selectedContact != null && selectedContact.getUserId() == userId) {
@@ -859,35 +887,43 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
     
     @Override
     public void onMessageUpdated(Message message) throws RemoteException {
-        // handleMessageUpdated đã tự check và reload nếu cần
+        // Lưu bản sửa vào bộ nhớ cục bộ của mọi cuộc trò chuyện, không chỉ cuộc đang mở
+        LocalMessageStore store = clientRMI.getLocalStore();
+        if (store != null) {
+            store.replace(message);
+        }
+        // handleMessageUpdated tự kiểm tra và chỉ cập nhật dòng của tin nhắn đó
         conversationLoader.handleMessageUpdated(message);
     }
     
     @Override
     public void onMessageDeleted(int messageId) throws RemoteException {
+        LocalMessageStore store = clientRMI.getLocalStore();
+        if (store != null) {
+            store.markDeleted(messageId);
+        }
         conversationLoader.handleMessageDeleted(messageId);
     }
     
     @Override
     public void onFriendRequestReceived(Friendship friendship) throws RemoteException {
-        new Thread(() -> {
-            String senderName = "Người dùng " + friendship.getUser1Id();
-            try {
-                User sender = clientRMI.getUserById(friendship.getUser1Id());
-                if (sender != null && sender.getUsername() != null) {
-                    senderName = sender.getUsername();
-                }
-            } catch (RemoteException e) {
-                logger.error("Failed to fetch sender info", e);
-            }
-            
-            String finalSenderName = senderName;
-            Platform.runLater(() -> {
-                showAlert("Bạn có lời mời kết bạn từ " + finalSenderName);
-                // Reload contacts to show updated status
-                loadContacts();
-            });
-        }).start();
+        clientRMI.async(() -> {
+                    String senderName = "Người dùng " + friendship.getUser1Id();
+                    try {
+                        User sender = clientRMI.getUserById(friendship.getUser1Id());
+                        if (sender != null && sender.getUsername() != null) {
+                            senderName = sender.getUsername();
+                        }
+                    } catch (RemoteException e) {
+                        logger.error("Failed to fetch sender info", e);
+                    }
+                    return senderName;
+                })
+                .thenAccept(senderName -> {
+                    showAlert("Bạn có lời mời kết bạn từ " + senderName);
+                    // Reload contacts to show updated status
+                    loadContacts();
+                });
     }
     
     // VideoClientCallback implementation
@@ -906,7 +942,9 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
             alert.showAndWait().ifPresent(type -> {
                 try {
                     if (type == acceptButton) {
-                        clientRMI.acceptCall(callRequest.getCallId());
+                        if (clientRMI.acceptCall(callRequest.getCallId())) {
+                            startCallMedia(callRequest.getCallId());
+                        }
                     } else {
                         clientRMI.rejectCall(callRequest.getCallId());
                     }
@@ -921,11 +959,13 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
     public void onCallAccepted(String callId) throws RemoteException {
         Platform.runLater(() -> {
             displaySystemMessage("Cuộc gọi đã được chấp nhận");
+            startCallMedia(callId);
         });
     }
     
     @Override
     public void onCallRejected(String callId) throws RemoteException {
+        mediaHandler.stopCallMedia(callId);
         Platform.runLater(() -> {
             displaySystemMessage("Cuộc gọi đã bị từ chối");
         });
@@ -933,11 +973,54 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
     
     @Override
     public void onCallEnded(String callId) throws RemoteException {
+        mediaHandler.stopCallMedia(callId);
         Platform.runLater(() -> {
             displaySystemMessage("Cuộc gọi đã kết thúc");
         });
     }
     
+    @Override
+    public void onParticipantJoined(String callId, int userId) throws RemoteException {
+        Platform.runLater(() -> {
+            displaySystemMessage("Người dùng #" + userId + " đã tham gia cuộc gọi nhóm");
+            // Người khởi tạo cuộc gọi nhóm không bấm chấp nhận; media bắt đầu khi có người đầu tiên tham gia
+            if (currentUser != null && !mediaHandler.isCallMediaRunning(callId)) {
+                int currentUserId = currentUser.getUserId();
+                clientRMI.async(() -> clientRMI.getCallParticipants(callId))
+                        .thenAccept(participants -> {
+                            if (participants.contains(currentUserId)) {
+                                startCallMedia(callId);
+                            }
+                        })
+                        .exceptionally(ClientTaskExecutor.onFailure(e -> logger.error("Failed to load call participants", e)));
+            }
+        });
+    }
+    
+    @Override
+    public void onParticipantLeft(String callId, int userId) throws RemoteException {
+        Platform.runLater(() -> {
+            displaySystemMessage("Người dùng #" + userId + " đã rời cuộc gọi nhóm");
+        });
+    }
+    
+    // Ask the server for this call's media ticket and start sending and receiving through the relay
+    private void startCallMedia(String callId) {
+        if (mediaHandler.isCallMediaRunning(callId)) {
+            return;
+        }
+        clientRMI.async(() -> {
+                    MediaSession session = clientRMI.getMediaSession(callId);
+                    if (session != null) {
+                        CallRequest call = clientRMI.getCallRequest(callId);
+                        boolean withVideo = call != null && call.getCallType() == CallRequest.CallType.VIDEO;
+                        mediaHandler.startCallMedia(session, Config.getClientRmiRegistry(), withVideo);
+                    }
+                    return session;
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> logger.error("Failed to start call media", e)));
+    }
+    
     private void displaySystemMessage(String message) {
         conversationLoader.displaySystemMessage(message);
     }
@@ -1033,6 +1116,8 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
                     Thread.sleep(200);
                 }
                 
+                mediaHandler.stopCallMedia(null);
+                
                 // Now unregister callbacks
                 clientRMI.unregisterCallbacks();
                 logger.info("Callbacks unregistered for user {}", currentUser != null ? currentUser.getUsername() : "unknown");
@@ -1167,6 +1252,11 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
                     if (index >= 0 && index < cachedContacts.size()) {
                         User user = cachedContacts.get(index);
                         
+                        // Fetch the next search page once the last row is shown
+                        if (index == cachedContacts.size() - 1) {
+                            loadMoreContacts();
+                        }
+                        
                         // Set avatar (first letter of username)
                         String initial = user.getUsername().substring(0, 1).toUpperCase();
                         avatarLabel.setText(initial);
@@ -1264,13 +1354,8 @@ public class ChatController implements ChatClientCallback, VideoClientCallback {
                         // Set name
                         nameLabel.setText(group.getGroupName());
                         
-                        // Set members count (we'll fetch this)
-                        try {
-                            List<User> members = clientRMI.getGroupMembers(group.getGroupId());
-                            membersLabel.setText(members.size() + " thành viên");
-                        } catch (Exception e) {
-                            membersLabel.setText("Nhóm");
-                        }
+                        // Member count comes with the group list; never call the server while rendering a cell
+                        membersLabel.setText(group.getMemberCount() + " thành viên");
                     } else {
                         // Fallback for simple string display
                         avatarLabel.setText("👥");
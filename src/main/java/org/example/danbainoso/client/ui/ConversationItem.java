@@ -0,0 +1,59 @@
+package org.example.danbainoso.client.ui;
+
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import org.example.danbainoso.shared.models.Message;
+
+/**
+ * One row of the conversation list: a message, a system notice, or the "load more" row at the top.
+ * A message row's message can be replaced in place; the cell showing it re-renders without the list being rebuilt.
+ */
+public final class ConversationItem {
+
+    public enum Kind {
+        MESSAGE, SYSTEM, LOAD_MORE
+    }
+
+    private final Kind kind;
+    private final ReadOnlyObjectWrapper<Message> message;
+    private final String text;
+
+    private ConversationItem(Kind kind, Message message, String text) {
+        this.kind = kind;
+        this.message = new ReadOnlyObjectWrapper<>(message);
+        this.text = text;
+    }
+
+    public static ConversationItem message(Message message) {
+        return new ConversationItem(Kind.MESSAGE, message, null);
+    }
+
+    public static ConversationItem system(String text) {
+        return new ConversationItem(Kind.SYSTEM, null, text);
+    }
+
+    public static ConversationItem loadMore() {
+        return new ConversationItem(Kind.LOAD_MORE, null, null);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Message getMessage() {
+        return message.get();
+    }
+
+    // Only called on the JavaFX thread
+    void setMessage(Message updated) {
+        message.set(updated);
+    }
+
+    public ReadOnlyObjectProperty<Message> messageProperty() {
+        return message.getReadOnlyProperty();
+    }
+
+    public String getText() {
+        return text;
+    }
+}
@@ -1,37 +1,49 @@
 package org.example.danbainoso.client.ui;
 
 import javafx.application.Platform;
-import javafx.geometry.Pos;
-import javafx.scene.Node;
-import javafx.scene.control.Button;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.collections.ObservableList;
 import javafx.scene.control.Label;
-import javafx.scene.control.ScrollPane;
-import javafx.scene.layout.VBox;
+import javafx.scene.control.ListView;
 import org.example.danbainoso.client.ClientRMI;
+import org.example.danbainoso.client.ClientTaskExecutor;
+import org.example.danbainoso.client.LocalMessageStore;
 import org.example.danbainoso.shared.models.Group;
 import org.example.danbainoso.shared.models.Message;
 import org.example.danbainoso.shared.models.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.rmi.RemoteException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
  * Manages conversation pagination, rendering, and updates.
+ * Messages are rows of a virtualized {@link ListView}: only the visible rows have cells, and cells are reused
+ * while scrolling, so a long conversation costs one row object per message rather than one node tree.
+ * A conversation opens from the {@link LocalMessageStore} when it has a copy, then asks the server only for
+ * the messages newer than the newest stored one.
  */
 public class ConversationLoader {
     private static final Logger logger = LoggerFactory.getLogger(ConversationLoader.class);
+    private static final String CONVERSATION_TASK = "conversation";
+    private static final String RELOAD_TASK = "conversation-reload";
+    private static final String SYNC_TASK = "conversation-sync";
 
     private final ClientRMI clientRMI;
-    private final VBox messagesContainer;
-    private final ScrollPane messagesScrollPane;
+    private final ListView<ConversationItem> messagesList;
+    private final ObservableList<ConversationItem> items;
     private final Supplier<User> currentUserSupplier;
     private final Supplier<User> selectedContactSupplier;
     private final Supplier<Group> selectedGroupSupplier;
@@ -40,18 +52,25 @@ public class ConversationLoader {
     private final Consumer<String> alertConsumer;
     private final int pageSize;
 
-    private final Button loadMoreButton;
+    private final ConversationItem loadMoreRow = ConversationItem.loadMore();
     private final Label emptyStateLabel;
-    private final List<Message> currentMessages = new ArrayList<>();
+    private final Label noticeLabel;
+    // Message ID -> its row, so updates patch one row and existence checks are O(1); FX thread only
+    private final Map<Integer, ConversationItem> rowsById = new HashMap<>();
 
-    private int currentOffset = 0;
-    private boolean isLoading = false;
+    // ID of the oldest loaded message; older pages are fetched before it (0 = nothing loaded yet)
+    private int oldestMessageId = 0;
+    private final BooleanProperty loading = new SimpleBooleanProperty(false);
     private boolean hasMore = true;
     private int conversationVersion = 0;
+    // Whether this version has fetched the newest messages from the server; until then the store may be behind,
+    // and appending live messages would put a gap before them that the delta sync never fills
+    private boolean storeInSync = false;
+    // When the current conversation was opened, for the open-latency log lines
+    private long openedAtNanos = 0;
 
     public ConversationLoader(ClientRMI clientRMI,
-                              VBox messagesContainer,
-                              ScrollPane messagesScrollPane,
+                              ListView<ConversationItem> messagesList,
                               Supplier<User> currentUserSupplier,
                               Supplier<User> selectedContactSupplier,
                               Supplier<Group> selectedGroupSupplier,
@@ -60,8 +79,8 @@ public class ConversationLoader {
                               Consumer<String> alertConsumer,
                               int pageSize) {
         this.clientRMI = Objects.requireNonNull(clientRMI);
-        this.messagesContainer = Objects.requireNonNull(messagesContainer);
-        this.messagesScrollPane = Objects.requireNonNull(messagesScrollPane);
+        this.messagesList = Objects.requireNonNull(messagesList);
+        this.items = messagesList.getItems();
         this.currentUserSupplier = Objects.requireNonNull(currentUserSupplier);
         this.selectedContactSupplier = Objects.requireNonNull(selectedContactSupplier);
         this.selectedGroupSupplier = Objects.requireNonNull(selectedGroupSupplier);
@@ -70,12 +89,21 @@ public class ConversationLoader {
         this.alertConsumer = Objects.requireNonNull(alertConsumer);
         this.pageSize = pageSize;
 
-        this.loadMoreButton = new Button("Tải thêm");
-        this.loadMoreButton.getStyleClass().add("load-more-button");
-        this.loadMoreButton.setOnAction(e -> loadMoreMessages(conversationVersion));
-
         this.emptyStateLabel = new Label("Chưa có tin nhắn");
         this.emptyStateLabel.getStyleClass().add("empty-message");
+        this.noticeLabel = new Label();
+        this.noticeLabel.getStyleClass().add("system-message");
+        this.noticeLabel.setWrapText(true);
+
+        messagesList.setCellFactory(MessageViewFactory.cellFactory(
+                currentUserSupplier,
+                timestampFormatter,
+                messageActionHandler,
+                loading,
+                () -> loadMoreMessages(conversationVersion)
+        ));
+        messagesList.setPlaceholder(emptyStateLabel);
+        messagesList.setFocusTraversable(false);
     }
 
     public void loadConversation(User contact, Group group) {
@@ -86,24 +114,50 @@ public class ConversationLoader {
                 contact != null ? contact.getUsername() : "null", 
                 group != null ? group.getGroupName() : "null");
 
+        // Reload của cuộc trò chuyện cũ không còn cần nữa
+        clientRMI.cancelAsync(RELOAD_TASK);
+        clientRMI.cancelAsync(SYNC_TASK);
+        openedAtNanos = System.nanoTime();
+        
         // Reset state NGAY LẬP TỨC trước khi load
-        currentMessages.clear();
-        currentOffset = 0;
-        isLoading = false;
+        oldestMessageId = 0;
+        loading.set(false);
         hasMore = true;
+        storeInSync = false;
         
         Platform.runLater(() -> {
-            messagesContainer.getChildren().clear();
-            updateLoadMoreButtonVisibility();
-            showEmptyState(true);
+            clearRows();
+            messagesList.setPlaceholder(emptyStateLabel);
         });
         
-        // Load messages ngay lập tức với offset=0 để lấy tin mới nhất
-        loadMoreMessages(versionSnapshot);
+        // Hiện tin nhắn đã lưu trên máy trước, sau đó chỉ lấy phần tin mới từ server
+        LocalMessageStore store = clientRMI.getLocalStore();
+        String storeKey = storeKey();
+        if (store == null || storeKey == null) {
+            // Load messages ngay lập tức với cursor=0 để lấy tin mới nhất
+            loadMoreMessages(versionSnapshot);
+            return;
+        }
+        loading.set(true);
+        store.load(storeKey).thenAcceptAsync(stored -> {
+            if (!isCurrentVersion(versionSnapshot)) {
+                return;
+            }
+            loading.set(false);
+            if (stored.isEmpty()) {
+                loadMoreMessages(versionSnapshot);
+                return;
+            }
+            oldestMessageId = stored.get(0).getMessageId();
+            rebuildMessageList(stored);
+            scrollToBottom();
+            logger.info("Opened {} from local store in {} ms ({} messages)", storeKey, elapsedMillis(), stored.size());
+            syncNewMessages(versionSnapshot, stored.get(stored.size() - 1).getMessageId());
+        }, Platform::runLater);
     }
 
     public void loadMoreMessages(int versionSnapshot) {
-        if (isLoading || !isCurrentVersion(versionSnapshot)) {
+        if (loading.get() || !isCurrentVersion(versionSnapshot)) {
             return;
         }
         User currentUser = currentUserSupplier.get();
@@ -114,80 +168,58 @@ public class ConversationLoader {
             return;
         }
 
-        isLoading = true;
-        Platform.runLater(() -> {
-            loadMoreButton.setText("Đang tải...");
-            loadMoreButton.setDisable(true);
-            updateLoadMoreButtonVisibility();
-        });
+        loading.set(true);
 
-        final int requestOffset = currentOffset;
-        final boolean initialFetch = requestOffset == 0;
+        final int requestCursor = oldestMessageId;
+        final boolean initialFetch = requestCursor == 0;
         
-        new Thread(() -> {
-            try {
-                logger.debug("Fetching messages: offset={}, limit={}", requestOffset, pageSize);
-                List<Message> fetched = fetchMessages(requestOffset, pageSize);
-                logger.debug("Fetched {} messages", fetched.size());
-                
-                Platform.runLater(() -> {
+        logger.debug("Fetching messages: before={}, limit={}", requestCursor, pageSize);
+        // Opening another conversation supersedes this fetch
+        clientRMI.asyncLatest(CONVERSATION_TASK, fetchMessages(requestCursor, pageSize))
+                .thenAccept(fetched -> {
+                    logger.debug("Fetched {} messages", fetched.size());
                     if (!isCurrentVersion(versionSnapshot)) {
                         logger.debug("Version mismatch, ignoring fetch result");
                         return;
                     }
-                    
+                
                     if (fetched.size() < pageSize) {
                         hasMore = false;
                     }
-                    currentOffset += fetched.size();
-                    
+                    if (!fetched.isEmpty()) {
+                        oldestMessageId = fetched.get(0).getMessageId();
+                    }
+                
                     if (initialFetch) {
+                        storeInSync = true;
                         // Load lần đầu: add vào cuối để tin mới nhất ở cuối
                         // Messages từ DB đã được reverse trong MessageDAO để có chronological order (cũ → mới)
                         // Vậy khi add vào cuối, tin mới nhất sẽ ở cuối danh sách
-                        currentMessages.addAll(fetched);
-                        logger.debug("Initial fetch: {} messages loaded", currentMessages.size());
-                        
-                        if (currentMessages.isEmpty()) {
-                            showEmptyState(true);
-                        } else {
-                            showEmptyState(false);
-                            rebuildMessageList();
-                            // Scroll xuống cuối sau khi render xong - áp dụng cho cả private và group
-                            scrollToBottomDelayed();
-                        }
-                        // Chỉ mark as read cho private chat, không áp dụng cho group
-                        if (selectedContactSupplier.get() != null) {
-                            markPrivateChatAsRead();
-                        }
+                        rebuildMessageList(fetched);
+                        // Scroll xuống cuối sau khi render xong - áp dụng cho cả private và group
+                        scrollToBottom();
+                        markConversationAsRead();
+                        logger.info("Opened {} from server in {} ms ({} messages)", storeKey(), elapsedMillis(), fetched.size());
                     } else {
                         // Load thêm tin cũ: add vào đầu
                         // Messages từ DB đã được reverse, nên tin cũ nhất trong batch sẽ ở đầu list
-                        currentMessages.addAll(0, fetched);
                         addMessagesAtTop(fetched);
-                        logger.debug("Load more: {} messages added, total={}", fetched.size(), currentMessages.size());
+                        logger.debug("Load more: {} messages added, total={}", fetched.size(), rowsById.size());
                         // Không scroll khi load tin cũ, giữ nguyên vị trí scroll hiện tại
                     }
+                    remember(fetched);
 
-                    isLoading = false;
-                    loadMoreButton.setText("Tải thêm");
-                    loadMoreButton.setDisable(false);
-                    updateLoadMoreButtonVisibility();
-                });
-            } catch (Exception e) {
-                logger.error("Failed to load more messages", e);
-                Platform.runLater(() -> {
+                    loading.set(false);
+                    updateLoadMoreRow();
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to load more messages", e);
                     if (!isCurrentVersion(versionSnapshot)) {
                         return;
                     }
-                    isLoading = false;
-                    loadMoreButton.setText("Tải thêm");
-                    loadMoreButton.setDisable(false);
-                    updateLoadMoreButtonVisibility();
+                    loading.set(false);
                     alertConsumer.accept("Không thể tải thêm tin nhắn.");
-                });
-            }
-        }).start();
+                }));
     }
 
     public void handleIncomingMessage(Message message) {
@@ -195,226 +227,347 @@ public class ConversationLoader {
             if (!isCurrentConversationMessage(message)) {
                 return;
             }
-            // Nếu message đã tồn tại, reload toàn bộ để đảm bảo sync
-            if (messageExists(message.getMessageId())) {
-                logger.debug("Message {} already exists, reloading", message.getMessageId());
-                reloadCurrentMessages();
+            // Nếu message đã tồn tại, chỉ cập nhật lại dòng đó
+            ConversationItem existing = rowsById.get(message.getMessageId());
+            if (existing != null) {
+                logger.debug("Message {} already exists, patching", message.getMessageId());
+                existing.setMessage(message);
+                remember(List.of(message));
                 return;
             }
 
             logger.debug("Adding new message {} to conversation", message.getMessageId());
             // Thêm message mới vào cuối list và UI
-            currentMessages.add(message);
-            // Không cập nhật currentOffset vì offset chỉ dùng cho pagination (load tin cũ)
-            showEmptyState(false);
-            if (hasMore && !messagesContainer.getChildren().contains(loadMoreButton)) {
-                updateLoadMoreButtonVisibility();
-            }
-            messagesContainer.getChildren().add(MessageViewFactory.createMessageNode(
-                    message,
-                    currentUserSupplier.get(),
-                    timestampFormatter,
-                    messageActionHandler
-            ));
-            scrollToBottomDelayed();
+            // Không cập nhật oldestMessageId vì cursor chỉ dùng cho pagination (load tin cũ)
+            items.add(rowFor(message));
+            updateLoadMoreRow();
+            scrollToBottom();
+            remember(List.of(message));
 
             User selectedContact = selectedContactSupplier.get();
             if (selectedContact != null && message.getSenderId() == selectedContact.getUserId()) {
                 markPrivateChatAsRead();
+            } else if (message.isGroupMessage() && message.getSenderId() != currentUserSupplier.get().getUserId()) {
+                markGroupChatAsRead();
             }
         });
     }
 
     public void handleMessagesMarkedAsRead(int readerId, int senderId) {
-        User currentUser = currentUserSupplier.get();
-        User selectedContact = selectedContactSupplier.get();
-        if (currentUser == null || selectedContact == null) {
-            return;
-        }
-        if (currentUser.getUserId() == senderId && selectedContact.getUserId() == readerId) {
-            reloadCurrentMessages();
-        }
+        Platform.runLater(() -> {
+            User currentUser = currentUserSupplier.get();
+            User selectedContact = selectedContactSupplier.get();
+            if (currentUser == null || selectedContact == null) {
+                return;
+            }
+            if (currentUser.getUserId() != senderId || selectedContact.getUserId() != readerId) {
+                return;
+            }
+            // Tick every loaded message we sent that is still unread; only the visible cells re-render
+            List<Message> patched = new ArrayList<>();
+            for (ConversationItem row : rowsById.values()) {
+                Message message = row.getMessage();
+                if (message.getSenderId() == senderId && !message.isRead()) {
+                    Message read = copyOf(message);
+                    read.setRead(true);
+                    row.setMessage(read);
+                    patched.add(read);
+                }
+            }
+            remember(patched);
+            logger.debug("Marked {} messages as read by {}", patched.size(), readerId);
+        });
     }
 
     public void handleMessageUpdated(Message message) {
-        if (isCurrentConversationMessage(message)) {
-            reloadCurrentMessages();
-        }
+        Platform.runLater(() -> {
+            if (!isCurrentConversationMessage(message)) {
+                return;
+            }
+            ConversationItem row = rowsById.get(message.getMessageId());
+            if (row != null) {
+                row.setMessage(message);
+            }
+        });
     }
 
     public void handleMessageDeleted(int messageId) {
-        if (messageExists(messageId)) {
-            reloadCurrentMessages();
-        }
+        Platform.runLater(() -> {
+            if (!messageExists(messageId)) {
+                return;
+            }
+            ConversationItem row = rowsById.get(messageId);
+            // Messages are soft-deleted: the row stays and shows the deleted placeholder
+            Message deleted = copyOf(row.getMessage());
+            deleted.setDeleted(true);
+            row.setMessage(deleted);
+        });
     }
 
     public void displaySystemMessage(String message) {
         Platform.runLater(() -> {
-            showEmptyState(false);
-            messagesContainer.getChildren().add(buildSystemMessageNode(message));
+            items.add(ConversationItem.system(message));
             scrollToBottom();
         });
     }
 
-    private List<Message> fetchMessages(int offset, int limit) throws RemoteException {
+    /**
+     * Replace the conversation with a notice, e.g. while it is loading or when the contact is blocked.
+     * Pending loads of the previous conversation are dropped.
+     */
+    public void showNotice(String text) {
+        conversationVersion++;
+        clientRMI.cancelAsync(CONVERSATION_TASK);
+        clientRMI.cancelAsync(RELOAD_TASK);
+        clientRMI.cancelAsync(SYNC_TASK);
+        oldestMessageId = 0;
+        loading.set(false);
+        hasMore = true;
+        clearRows();
+        noticeLabel.setText(text);
+        messagesList.setPlaceholder(noticeLabel);
+    }
+
+    public void clearNotice() {
+        messagesList.setPlaceholder(emptyStateLabel);
+    }
+
+    // Resolve the conversation on the FX thread; the returned call only does the remote fetch
+    private Callable<List<Message>> fetchMessages(int beforeMessageId, int limit) {
+        User currentUser = currentUserSupplier.get();
+        User contact = selectedContactSupplier.get();
+        Group group = selectedGroupSupplier.get();
+        if (currentUser == null) {
+            return ArrayList::new;
+        }
+        if (contact != null) {
+            int userId = currentUser.getUserId();
+            int contactId = contact.getUserId();
+            return () -> clientRMI.getPrivateMessagesBefore(userId, contactId, beforeMessageId, limit);
+        } else if (group != null) {
+            int groupId = group.getGroupId();
+            return () -> clientRMI.getGroupMessagesBefore(groupId, beforeMessageId, limit);
+        }
+        return ArrayList::new;
+    }
+
+    // Same as fetchMessages, for the messages newer than afterMessageId
+    private Callable<List<Message>> fetchMessagesAfter(int afterMessageId, int limit) {
         User currentUser = currentUserSupplier.get();
         User contact = selectedContactSupplier.get();
         Group group = selectedGroupSupplier.get();
         if (currentUser == null) {
-            return new ArrayList<>();
+            return ArrayList::new;
         }
         if (contact != null) {
-            return clientRMI.getPrivateMessages(currentUser.getUserId(), contact.getUserId(), limit, offset);
+            int userId = currentUser.getUserId();
+            int contactId = contact.getUserId();
+            return () -> clientRMI.getPrivateMessagesAfter(userId, contactId, afterMessageId, limit);
         } else if (group != null) {
-            return clientRMI.getGroupMessages(group.getGroupId(), limit, offset);
+            int groupId = group.getGroupId();
+            return () -> clientRMI.getGroupMessagesAfter(groupId, afterMessageId, limit);
         }
-        return new ArrayList<>();
+        return ArrayList::new;
+    }
+
+    /**
+     * Bring a conversation opened from the local store up to date with the messages sent since it was stored.
+     * When more than a page arrived the stored copy is dropped and the newest page is loaded instead.
+     * Live messages are only stored once this has succeeded, so the store never skips past messages it has not seen.
+     * Edits and deletions made while this client was offline are not part of the delta.
+     */
+    private void syncNewMessages(int versionSnapshot, int newestStoredId) {
+        String storeKey = storeKey();
+        clientRMI.asyncLatest(SYNC_TASK, fetchMessagesAfter(newestStoredId, pageSize + 1))
+                .thenAccept(fresh -> {
+                    if (!isCurrentVersion(versionSnapshot)) {
+                        return;
+                    }
+                    if (fresh.size() > pageSize) {
+                        logger.debug("{} is more than a page behind, reloading from server", storeKey);
+                        LocalMessageStore store = clientRMI.getLocalStore();
+                        if (store != null) {
+                            store.clear(storeKey);
+                        }
+                        clientRMI.cancelAsync(CONVERSATION_TASK);
+                        oldestMessageId = 0;
+                        hasMore = true;
+                        loading.set(false);
+                        loadMoreMessages(versionSnapshot);
+                        return;
+                    }
+                    int added = appendInOrder(fresh);
+                    // Live messages shown while the sync was running were not stored; they follow the delta
+                    storeInSync = true;
+                    List<Message> unstored = new ArrayList<>();
+                    for (ConversationItem row : rowsById.values()) {
+                        if (row.getMessage().getMessageId() > newestStoredId) {
+                            unstored.add(row.getMessage());
+                        }
+                    }
+                    unstored.sort(Comparator.comparingInt(Message::getMessageId));
+                    remember(unstored);
+                    if (added > 0) {
+                        scrollToBottom();
+                    }
+                    markConversationAsRead();
+                    logger.info("Synced {} in {} ms ({} new messages)", storeKey, elapsedMillis(), added);
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e ->
+                        logger.warn("Could not sync {}, showing stored messages", storeKey, e)));
+    }
+
+    // Add messages that are not shown yet; live messages may already have arrived after them
+    private int appendInOrder(List<Message> messages) {
+        List<Message> missing = new ArrayList<>();
+        for (Message message : messages) {
+            if (!messageExists(message.getMessageId())) {
+                missing.add(message);
+            }
+        }
+        if (missing.isEmpty()) {
+            return 0;
+        }
+        int newestShown = 0;
+        for (int i = items.size() - 1; i >= 0; i--) {
+            if (items.get(i).getKind() == ConversationItem.Kind.MESSAGE) {
+                newestShown = items.get(i).getMessage().getMessageId();
+                break;
+            }
+        }
+        if (missing.get(0).getMessageId() > newestShown) {
+            for (Message message : missing) {
+                items.add(rowFor(message));
+            }
+        } else {
+            List<Message> merged = new ArrayList<>(rowsById.size() + missing.size());
+            for (ConversationItem row : rowsById.values()) {
+                merged.add(row.getMessage());
+            }
+            merged.addAll(missing);
+            merged.sort(Comparator.comparingInt(Message::getMessageId));
+            rebuildMessageList(merged);
+        }
+        updateLoadMoreRow();
+        return missing.size();
     }
 
     private void reloadCurrentMessages() {
         final int versionSnapshot = conversationVersion;
-        final int currentSize = currentMessages.size();
-        new Thread(() -> {
-            try {
-                // Load lại từ đầu với limit đủ lớn để đảm bảo có đủ tin mới
-                final int reloadLimit = currentSize > 0 ? currentSize + 10 : Math.max(pageSize, 20);
-                logger.debug("Reloading messages with limit={}", reloadLimit);
-                List<Message> refreshed = fetchMessages(0, reloadLimit);
-                Platform.runLater(() -> {
+        final int currentSize = rowsById.size();
+        // Load lại từ đầu với limit đủ lớn để đảm bảo có đủ tin mới
+        final int reloadLimit = currentSize > 0 ? currentSize + 10 : Math.max(pageSize, 20);
+        logger.debug("Reloading messages with limit={}", reloadLimit);
+        // A burst of updates only needs the last reload
+        clientRMI.asyncLatest(RELOAD_TASK, fetchMessages(0, reloadLimit))
+                .thenAccept(refreshed -> {
                     if (!isCurrentVersion(versionSnapshot)) {
                         return;
                     }
                     logger.debug("Reloaded {} messages", refreshed.size());
-                    currentMessages.clear();
-                    currentMessages.addAll(refreshed);
-                    currentOffset = refreshed.size();
+                    remember(refreshed);
+                    if (patchLoadedMessages(refreshed)) {
+                        return;
+                    }
+                    oldestMessageId = refreshed.isEmpty() ? 0 : refreshed.get(0).getMessageId();
                     // Kiểm tra xem có còn tin cũ hơn không
                     hasMore = refreshed.size() >= reloadLimit;
-                    rebuildMessageList();
-                    scrollToBottomDelayed();
+                    rebuildMessageList(refreshed);
+                    scrollToBottom();
                     if (selectedContactSupplier.get() != null) {
                         markPrivateChatAsRead();
                     }
-                });
-            } catch (Exception e) {
-                logger.error("Failed to reload messages", e);
-            }
-        }).start();
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> logger.error("Failed to reload messages", e)));
     }
 
     public void refreshCurrentConversation() {
         reloadCurrentMessages();
     }
 
-    private void rebuildMessageList() {
-        messagesContainer.getChildren().clear();
-        if (currentMessages.isEmpty()) {
-            showEmptyState(true);
-            return;
+    private void rebuildMessageList(List<Message> messages) {
+        rowsById.clear();
+        List<ConversationItem> rows = new ArrayList<>(messages.size() + 1);
+        // Render tất cả messages theo thứ tự chronological (cũ → mới)
+        // messages đã được sắp xếp: tin cũ nhất ở index 0, tin mới nhất ở cuối
+        for (Message message : messages) {
+            rows.add(rowFor(message));
         }
+        // Thêm dòng "Tải thêm" ở đầu nếu còn tin cũ hơn
+        if (hasMore && !rows.isEmpty()) {
+            rows.add(0, loadMoreRow);
+        }
+        // Only the visible rows get cells; the list reuses them when the items change
+        items.setAll(rows);
+        logger.debug("Rebuilt message list: {} messages", messages.size());
+        // Không scroll ở đây, để caller quyết định khi nào scroll
+    }
 
-        showEmptyState(false);
-        
-        // Thêm load more button ở đầu nếu còn tin cũ hơn
-        if (hasMore) {
-            messagesContainer.getChildren().add(loadMoreButton);
+    /**
+     * Apply a reload to the rows already on screen when it holds the same messages, so edits, deletions and
+     * read receipts only re-render the affected cells and keep the scroll position.
+     *
+     * @return false when the reload added or dropped messages and the list has to be rebuilt
+     */
+    private boolean patchLoadedMessages(List<Message> refreshed) {
+        List<ConversationItem> messageRows = new ArrayList<>(rowsById.size());
+        for (ConversationItem item : items) {
+            if (item.getKind() == ConversationItem.Kind.MESSAGE) {
+                messageRows.add(item);
+            }
         }
-        
-        // Render tất cả messages theo thứ tự chronological (cũ → mới)
-        // currentMessages đã được sắp xếp: tin cũ nhất ở index 0, tin mới nhất ở cuối
-        // Render theo đúng thứ tự: tin cũ ở trên, tin mới ở dưới
-        for (Message message : currentMessages) {
-            Node node = MessageViewFactory.createMessageNode(
-                    message,
-                    currentUserSupplier.get(),
-                    timestampFormatter,
-                    messageActionHandler
-            );
-            messagesContainer.getChildren().add(node);
+        int offset = refreshed.size() - messageRows.size();
+        if (offset < 0 || messageRows.isEmpty()) {
+            return false;
         }
-        
-        logger.debug("Rebuilt message list: {} messages rendered", currentMessages.size());
-        // Không scroll ở đây, để caller quyết định khi nào scroll
+        // The reload may reach further back than what is loaded; only the newest part has to line up
+        List<Message> loaded = refreshed.subList(offset, refreshed.size());
+        for (int i = 0; i < loaded.size(); i++) {
+            if (loaded.get(i).getMessageId() != messageRows.get(i).getMessage().getMessageId()) {
+                return false;
+            }
+        }
+        for (int i = 0; i < loaded.size(); i++) {
+            messageRows.get(i).setMessage(loaded.get(i));
+        }
+        logger.debug("Patched {} loaded messages in place", loaded.size());
+        return true;
     }
 
     private void addMessagesAtTop(List<Message> messages) {
         if (messages.isEmpty()) {
             return;
         }
-        
-        // Đảm bảo load more button ở đầu
-        if (hasMore && !messagesContainer.getChildren().contains(loadMoreButton)) {
-            messagesContainer.getChildren().add(0, loadMoreButton);
-        }
-        
-        // Insert messages ngay sau load more button
-        // messages đã được sắp xếp (cũ → mới), insert theo đúng thứ tự
-        int insertIndex = hasMore ? 1 : 0;
+        // messages đã được sắp xếp (cũ → mới), chèn ngay sau dòng "Tải thêm"
+        List<ConversationItem> rows = new ArrayList<>(messages.size());
         for (Message message : messages) {
-            Node node = MessageViewFactory.createMessageNode(
-                    message,
-                    currentUserSupplier.get(),
-                    timestampFormatter,
-                    messageActionHandler
-            );
-            messagesContainer.getChildren().add(insertIndex++, node);
+            rows.add(rowFor(message));
         }
-        
+        items.addAll(hasLoadMoreRow() ? 1 : 0, rows);
+        updateLoadMoreRow();
+        // Keep the message that was at the top in view instead of jumping to the oldest one
+        messagesList.scrollTo((hasLoadMoreRow() ? 1 : 0) + rows.size());
         logger.debug("Added {} messages at top", messages.size());
     }
 
-    private void updateLoadMoreButtonVisibility() {
-        if (hasMore) {
-            if (!messagesContainer.getChildren().contains(loadMoreButton)) {
-                messagesContainer.getChildren().add(0, loadMoreButton);
-            }
-        } else {
-            messagesContainer.getChildren().remove(loadMoreButton);
+    private void updateLoadMoreRow() {
+        boolean shown = hasLoadMoreRow();
+        if (hasMore && !shown && !rowsById.isEmpty()) {
+            items.add(0, loadMoreRow);
+        } else if (!hasMore && shown) {
+            items.remove(0);
         }
     }
 
-    private void showEmptyState(boolean visible) {
-        if (visible) {
-            if (!messagesContainer.getChildren().contains(emptyStateLabel)) {
-                messagesContainer.getChildren().add(emptyStateLabel);
-            }
-            emptyStateLabel.setVisible(true);
-            emptyStateLabel.setManaged(true);
-        } else {
-            emptyStateLabel.setVisible(false);
-            emptyStateLabel.setManaged(false);
-            messagesContainer.getChildren().remove(emptyStateLabel);
-        }
+    private boolean hasLoadMoreRow() {
+        return !items.isEmpty() && items.get(0) == loadMoreRow;
     }
 
     private void scrollToBottom() {
         Platform.runLater(() -> {
-            messagesScrollPane.setVvalue(1.0);
-        });
-    }
-    
-    private void scrollToBottomDelayed() {
-        // Scroll nhiều lần để đảm bảo scroll xuống cuối sau khi layout xong
-        Platform.runLater(() -> {
-            messagesScrollPane.setVvalue(1.0);
-            Platform.runLater(() -> {
-                messagesScrollPane.setVvalue(1.0);
-                Platform.runLater(() -> {
-                    messagesScrollPane.setVvalue(1.0);
-                    // Đợi thêm một chút để layout hoàn tất
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(100); // Tăng delay lên 100ms
-                            Platform.runLater(() -> {
-                                messagesScrollPane.setVvalue(1.0);
-                                logger.debug("Scrolled to bottom, vvalue={}", messagesScrollPane.getVvalue());
-                            });
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        }
-                    }).start();
-                });
-            });
+            if (!items.isEmpty()) {
+                messagesList.scrollTo(items.size() - 1);
+            }
         });
     }
 
@@ -447,7 +600,64 @@ public class ConversationLoader {
     }
 
     private boolean messageExists(int messageId) {
-        return currentMessages.stream().anyMatch(msg -> msg.getMessageId() == messageId);
+        return rowsById.containsKey(messageId);
+    }
+
+    private ConversationItem rowFor(Message message) {
+        ConversationItem row = ConversationItem.message(message);
+        rowsById.put(message.getMessageId(), row);
+        return row;
+    }
+
+    private void clearRows() {
+        rowsById.clear();
+        items.clear();
+    }
+
+    // Rows hold immutable snapshots: a patch swaps in a changed copy so the row's listeners fire
+    private static Message copyOf(Message message) {
+        Message copy = new Message(message.getSenderId(), message.getReceiverId(), message.getGroupId(), message.getContent());
+        copy.setMessageId(message.getMessageId());
+        copy.setMessageType(message.getMessageType());
+        copy.setFileUrl(message.getFileUrl());
+        copy.setRead(message.isRead());
+        copy.setEdited(message.isEdited());
+        copy.setDeleted(message.isDeleted());
+        copy.setCreatedAt(message.getCreatedAt());
+        copy.setSenderName(message.getSenderName());
+        copy.setSenderAvatar(message.getSenderAvatar());
+        return copy;
+    }
+
+    private void markConversationAsRead() {
+        if (selectedContactSupplier.get() != null) {
+            markPrivateChatAsRead();
+        } else if (selectedGroupSupplier.get() != null) {
+            markGroupChatAsRead();
+        }
+    }
+
+    // Key of the open conversation in the local store, or null when none is open
+    private String storeKey() {
+        User contact = selectedContactSupplier.get();
+        if (contact != null) {
+            return LocalMessageStore.privateKey(contact.getUserId());
+        }
+        Group group = selectedGroupSupplier.get();
+        return group != null ? LocalMessageStore.groupKey(group.getGroupId()) : null;
+    }
+
+    // Keep what the server sent on disk for the next time this conversation opens, once the store is in sync
+    private void remember(List<Message> messages) {
+        LocalMessageStore store = clientRMI.getLocalStore();
+        String key = storeKey();
+        if (storeInSync && store != null && key != null) {
+            store.append(key, messages);
+        }
+    }
+
+    private long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - openedAtNanos);
     }
 
     private void markPrivateChatAsRead() {
@@ -456,22 +666,22 @@ public class ConversationLoader {
         if (currentUser == null || selectedContact == null) {
             return;
         }
-        new Thread(() -> {
-            try {
-                clientRMI.markMessagesAsRead(currentUser.getUserId(), selectedContact.getUserId());
-            } catch (Exception e) {
-                logger.error("Failed to mark messages as read", e);
-            }
-        }).start();
+        int userId = currentUser.getUserId();
+        int contactId = selectedContact.getUserId();
+        // Keyed per conversation so a newer read marker replaces a queued one without dropping other chats
+        clientRMI.asyncLatest("mark-read-user-" + contactId, () -> clientRMI.markMessagesAsRead(userId, contactId))
+                .exceptionally(ClientTaskExecutor.onFailure(e -> logger.error("Failed to mark messages as read", e)));
     }
 
-    private Node buildSystemMessageNode(String message) {
-        Label label = new Label(message);
-        label.getStyleClass().add("system-message");
-        VBox wrapper = new VBox(label);
-        wrapper.getStyleClass().add("message-wrapper");
-        wrapper.setAlignment(Pos.CENTER);
-        return wrapper;
+    private void markGroupChatAsRead() {
+        User currentUser = currentUserSupplier.get();
+        Group selectedGroup = selectedGroupSupplier.get();
+        if (currentUser == null || selectedGroup == null) {
+            return;
+        }
+        int userId = currentUser.getUserId();
+        int groupId = selectedGroup.getGroupId();
+        clientRMI.asyncLatest("mark-read-group-" + groupId, () -> clientRMI.markGroupMessagesAsRead(userId, groupId))
+                .exceptionally(ClientTaskExecutor.onFailure(e -> logger.error("Failed to mark group messages as read", e)));
     }
 }
-
@@ -1,18 +1,21 @@
 package org.example.danbainoso.client.ui;
 
-import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
 import org.example.danbainoso.client.ClientMain;
 import org.example.danbainoso.client.ClientRMI;
+import org.example.danbainoso.client.ClientTaskExecutor;
 import org.example.danbainoso.shared.models.Friendship;
 import org.example.danbainoso.shared.models.User;
+import org.example.danbainoso.shared.models.UserSummary;
 import org.example.danbainoso.utils.LoggerUtil;
 import org.slf4j.Logger;
 
-import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class FriendshipController {
     private static final Logger logger = LoggerUtil.getLogger(FriendshipController.class);
@@ -93,10 +96,8 @@ public class FriendshipController {
     }
     
     private void loadFriends() {
-        new Thread(() -> {
-            try {
-                List<User> friends = clientRMI.getFriends();
-                Platform.runLater(() -> {
+        clientRMI.asyncLatest("friends", () -> clientRMI.getFriends())
+                .thenAccept(friends -> {
                     friendsList.getItems().clear();
                     if (friends.isEmpty()) {
                         friendsList.getItems().add("Chưa có bạn bè");
@@ -105,106 +106,116 @@ public class FriendshipController {
                             friendsList.getItems().add(friend.getUsername() + " (" + friend.getStatus() + ")");
                         }
                     }
-                });
-            } catch (Exception e) {
-                logger.error("Failed to load friends", e);
-                Platform.runLater(() -> {
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to load friends", e);
                     showAlert("Không thể tải danh sách bạn bè.");
-                });
-            }
-        }).start();
+                }));
     }
     
     private void loadFriendRequests() {
-        new Thread(() -> {
-            try {
-                List<Friendship> requests = clientRMI.getFriendRequests();
-                Platform.runLater(() -> {
+        clientRMI.asyncLatest("friend-requests", () -> {
+                    List<Friendship> requests = clientRMI.getFriendRequests();
+                    // Resolve every sender in one call instead of one lookup per request
+                    List<Integer> senderIds = new ArrayList<>();
+                    for (Friendship request : requests) {
+                        senderIds.add(request.getUser1Id());
+                    }
+                    Map<Integer, UserSummary> senders = new HashMap<>();
+                    if (!senderIds.isEmpty()) {
+                        for (UserSummary sender : clientRMI.getUsersByIds(senderIds)) {
+                            senders.put(sender.getUserId(), sender);
+                        }
+                    }
+                    List<String> items = new ArrayList<>();
+                    for (Friendship request : requests) {
+                        UserSummary sender = senders.get(request.getUser1Id());
+                        String senderName = sender != null ? sender.getUsername() : "Người dùng " + request.getUser1Id();
+                        items.add(senderName + " (ID: " + request.getFriendshipId() + ")");
+                    }
+                    return items;
+                })
+                .thenAccept(items -> {
                     friendRequestsList.getItems().clear();
-                    if (requests.isEmpty()) {
+                    if (items.isEmpty()) {
                         friendRequestsList.getItems().add("Không có lời mời kết bạn");
                     } else {
-                        for (Friendship request : requests) {
-                            int senderId = request.getUser1Id();
-                            try {
-                                User sender = clientRMI.getUserById(senderId);
-                                if (sender != null) {
-                                    friendRequestsList.getItems().add(sender.getUsername() + " (ID: " + request.getFriendshipId() + ")");
-                                } else {
-                                    friendRequestsList.getItems().add("Người dùng " + senderId + " (ID: " + request.getFriendshipId() + ")");
-                                }
-                            } catch (RemoteException e) {
-                                friendRequestsList.getItems().add("Người dùng " + senderId + " (ID: " + request.getFriendshipId() + ")");
-                            }
-                        }
+                        friendRequestsList.getItems().addAll(items);
                     }
-                });
-            } catch (Exception e) {
-                logger.error("Failed to load friend requests", e);
-                Platform.runLater(() -> {
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to load friend requests", e);
                     showAlert("Không thể tải lời mời kết bạn.");
-                });
-            }
-        }).start();
+                }));
     }
     
     private void acceptFriendRequest(String item) {
-        try {
-            int friendshipId = extractFriendshipId(item);
-            if (friendshipId > 0) {
-                boolean success = clientRMI.acceptFriendRequest(friendshipId);
-                if (success) {
-                    showAlert("Đã chấp nhận lời mời kết bạn.");
-                    loadFriends();
-                    loadFriendRequests();
-                } else {
-                    showAlert("Không thể chấp nhận lời mời kết bạn.");
-                }
-            }
-        } catch (Exception e) {
-            logger.error("Failed to accept friend request", e);
-            showAlert("Lỗi khi chấp nhận lời mời kết bạn.");
+        int friendshipId = extractFriendshipId(item);
+        if (friendshipId <= 0) {
+            return;
         }
+        clientRMI.async(() -> clientRMI.acceptFriendRequest(friendshipId))
+                .thenAccept(success -> {
+                    if (success) {
+                        showAlert("Đã chấp nhận lời mời kết bạn.");
+                        loadFriends();
+                        loadFriendRequests();
+                    } else {
+                        showAlert("Không thể chấp nhận lời mời kết bạn.");
+                    }
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to accept friend request", e);
+                    showAlert("Lỗi khi chấp nhận lời mời kết bạn.");
+                }));
     }
     
     private void rejectFriendRequest(String item) {
-        try {
-            int friendshipId = extractFriendshipId(item);
-            if (friendshipId > 0) {
-                boolean success = clientRMI.rejectFriendRequest(friendshipId);
-                if (success) {
-                    showAlert("Đã từ chối lời mời kết bạn.");
-                    loadFriendRequests();
-                } else {
-                    showAlert("Không thể từ chối lời mời kết bạn.");
-                }
-            }
-        } catch (Exception e) {
-            logger.error("Failed to reject friend request", e);
-            showAlert("Lỗi khi từ chối lời mời kết bạn.");
+        int friendshipId = extractFriendshipId(item);
+        if (friendshipId <= 0) {
+            return;
         }
+        clientRMI.async(() -> clientRMI.rejectFriendRequest(friendshipId))
+                .thenAccept(success -> {
+                    if (success) {
+                        showAlert("Đã từ chối lời mời kết bạn.");
+                        loadFriendRequests();
+                    } else {
+                        showAlert("Không thể từ chối lời mời kết bạn.");
+                    }
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to reject friend request", e);
+                    showAlert("Lỗi khi từ chối lời mời kết bạn.");
+                }));
     }
     
     private void removeFriend(String item) {
-        try {
-            String username = item.split(" ")[0];
-            List<User> friends = clientRMI.getFriends();
-            for (User friend : friends) {
-                if (friend.getUsername().equals(username)) {
-                    boolean success = clientRMI.removeFriend(friend.getUserId());
+        String username = item.split(" ")[0];
+        clientRMI.async(() -> {
+                    for (User friend : clientRMI.getFriends()) {
+                        if (friend.getUsername().equals(username)) {
+                            return clientRMI.removeFriend(friend.getUserId()) ? Boolean.TRUE : Boolean.FALSE;
+                        }
+                    }
+                    // Not a friend (any more); nothing to report
+                    return null;
+                })
+                .thenAccept(success -> {
+                    if (success == null) {
+                        return;
+                    }
                     if (success) {
                         showAlert("Đã xóa bạn: " + username);
                         loadFriends();
                     } else {
                         showAlert("Không thể xóa bạn.");
                     }
-                    return;
-                }
-            }
-        } catch (Exception e) {
-            logger.error("Failed to remove friend", e);
-            showAlert("Lỗi khi xóa bạn.");
-        }
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to remove friend", e);
+                    showAlert("Lỗi khi xóa bạn.");
+                }));
     }
     
     private int extractFriendshipId(String item) {
@@ -1,6 +1,5 @@
 package org.example.danbainoso.client.ui;
 
-import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -18,12 +17,12 @@ import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 import org.example.danbainoso.client.ClientMain;
 import org.example.danbainoso.client.ClientRMI;
+import org.example.danbainoso.client.ClientTaskExecutor;
 import org.example.danbainoso.shared.models.Group;
 import org.example.danbainoso.shared.models.User;
 import org.example.danbainoso.utils.LoggerUtil;
 import org.slf4j.Logger;
 
-import java.rmi.RemoteException;
 import java.util.function.Consumer;
 import java.util.List;
 import java.util.Optional;
@@ -154,21 +153,19 @@ public class GroupSettingsController {
         if (currentGroup == null) {
             return;
         }
-        new Thread(() -> {
-            try {
-                Group refreshed = clientRMI.getGroupById(currentGroup.getGroupId());
-                Platform.runLater(() -> {
+        int groupId = currentGroup.getGroupId();
+        clientRMI.asyncLatest("group-settings-info", () -> clientRMI.getGroupById(groupId))
+                .thenAccept(refreshed -> {
                     if (refreshed != null) {
                         currentGroup = refreshed;
                         populateFromGroup(refreshed);
                         loadMembers();
                     }
-                });
-            } catch (RemoteException e) {
-                logger.error("Failed to load group details", e);
-                Platform.runLater(() -> showAlert("Không thể tải thông tin nhóm."));
-            }
-        }).start();
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to load group details", e);
+                    showAlert("Không thể tải thông tin nhóm.");
+                }));
     }
 
     private void loadMembers() {
@@ -179,21 +176,19 @@ public class GroupSettingsController {
             refreshLeaveButtonState();
             return;
         }
-        new Thread(() -> {
-            try {
-                List<User> members = clientRMI.getGroupMembers(currentGroup.getGroupId());
-                Platform.runLater(() -> {
+        int groupId = currentGroup.getGroupId();
+        clientRMI.asyncLatest("group-settings-members", () -> clientRMI.getGroupMembers(groupId))
+                .thenAccept(members -> {
                     memberItems.setAll(members);
                     memberCountLabel.setText(String.valueOf(members.size()));
                     membersList.refresh();
                     refreshLeaveButtonState();
                     refreshDeleteButtonState();
-                });
-            } catch (RemoteException e) {
-                logger.error("Failed to load members", e);
-                Platform.runLater(() -> showAlert("Không thể tải danh sách thành viên."));
-            }
-        }).start();
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to load members", e);
+                    showAlert("Không thể tải danh sách thành viên.");
+                }));
     }
 
     @FXML
@@ -216,10 +211,8 @@ public class GroupSettingsController {
         updatePayload.setAvatarUrl(currentGroup.getAvatarUrl());
 
         saveButton.setDisable(true);
-        new Thread(() -> {
-            try {
-                boolean success = clientRMI.updateGroupDetails(updatePayload);
-                Platform.runLater(() -> {
+        clientRMI.async(() -> clientRMI.updateGroupDetails(updatePayload))
+                .thenAccept(success -> {
                     saveButton.setDisable(false);
                     if (success) {
                         currentGroup.setGroupName(name);
@@ -231,15 +224,12 @@ public class GroupSettingsController {
                     } else {
                         showAlert("Không thể cập nhật thông tin nhóm. Kiểm tra quyền của bạn.");
                     }
-                });
-            } catch (RemoteException e) {
-                logger.error("Failed to update group", e);
-                Platform.runLater(() -> {
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to update group", e);
                     saveButton.setDisable(false);
                     showAlert("Lỗi khi cập nhật thông tin nhóm.");
-                });
-            }
-        }).start();
+                }));
     }
 
     @FXML
@@ -256,28 +246,26 @@ public class GroupSettingsController {
             return;
         }
         addMemberButton.setDisable(true);
-        new Thread(() -> {
-            try {
-                List<User> friends = clientRMI.getFriends();
-                List<User> members = clientRMI.getGroupMembers(currentGroup.getGroupId());
-                Set<Integer> memberIds = members.stream()
-                        .map(User::getUserId)
-                        .collect(Collectors.toSet());
-                List<User> candidates = friends.stream()
-                        .filter(friend -> !memberIds.contains(friend.getUserId()))
-                        .collect(Collectors.toList());
-                Platform.runLater(() -> {
+        int groupId = currentGroup.getGroupId();
+        clientRMI.async(() -> {
+                    List<User> friends = clientRMI.getFriends();
+                    List<User> members = clientRMI.getGroupMembers(groupId);
+                    Set<Integer> memberIds = members.stream()
+                            .map(User::getUserId)
+                            .collect(Collectors.toSet());
+                    return friends.stream()
+                            .filter(friend -> !memberIds.contains(friend.getUserId()))
+                            .collect(Collectors.toList());
+                })
+                .thenAccept(candidates -> {
                     addMemberButton.setDisable(false);
                     showAddMemberDialog(candidates);
-                });
-            } catch (RemoteException e) {
-                logger.error("Failed to prepare add-member list", e);
-                Platform.runLater(() -> {
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to prepare add-member list", e);
                     addMemberButton.setDisable(false);
                     showAlert("Không thể tải danh sách bạn bè.");
-                });
-            }
-        }).start();
+                }));
     }
 
     private void showAddMemberDialog(List<User> candidates) {
@@ -308,22 +296,20 @@ public class GroupSettingsController {
         if (currentGroup == null) {
             return;
         }
-        new Thread(() -> {
-            try {
-                boolean added = clientRMI.addMemberToGroup(currentGroup.getGroupId(), user.getUserId());
-                Platform.runLater(() -> {
+        int groupId = currentGroup.getGroupId();
+        clientRMI.async(() -> clientRMI.addMemberToGroup(groupId, user.getUserId()))
+                .thenAccept(added -> {
                     if (added) {
                         showAlert("Đã thêm " + user.getUsername() + " vào nhóm.");
                         loadMembers();
                     } else {
                         showAlert("Không thể thêm thành viên. Kiểm tra quyền hoặc trạng thái.");
                     }
-                });
-            } catch (RemoteException e) {
-                logger.error("Failed to add member", e);
-                Platform.runLater(() -> showAlert("Lỗi khi thêm thành viên."));
-            }
-        }).start();
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to add member", e);
+                    showAlert("Lỗi khi thêm thành viên.");
+                }));
     }
 
     private ContextMenu buildMemberContextMenu(User user) {
@@ -350,22 +336,20 @@ public class GroupSettingsController {
         if (currentGroup == null) {
             return;
         }
-        new Thread(() -> {
-            try {
-                boolean removed = clientRMI.removeMemberFromGroup(currentGroup.getGroupId(), member.getUserId());
-                Platform.runLater(() -> {
+        int groupId = currentGroup.getGroupId();
+        clientRMI.async(() -> clientRMI.removeMemberFromGroup(groupId, member.getUserId()))
+                .thenAccept(removed -> {
                     if (removed) {
                         showAlert("Đã xóa " + member.getUsername() + " khỏi nhóm.");
                         loadMembers();
                     } else {
                         showAlert("Không thể xóa thành viên. Kiểm tra quyền của bạn.");
                     }
-                });
-            } catch (RemoteException e) {
-                logger.error("Failed to remove member", e);
-                Platform.runLater(() -> showAlert("Lỗi khi xóa thành viên."));
-            }
-        }).start();
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to remove member", e);
+                    showAlert("Lỗi khi xóa thành viên.");
+                }));
     }
 
     private String formatUserDisplay(User user) {
@@ -395,10 +379,9 @@ public class GroupSettingsController {
             return;
         }
         deleteGroupButton.setDisable(true);
-        new Thread(() -> {
-            try {
-                boolean deleted = clientRMI.deleteGroup(currentGroup.getGroupId());
-                Platform.runLater(() -> {
+        int groupId = currentGroup.getGroupId();
+        clientRMI.async(() -> clientRMI.deleteGroup(groupId))
+                .thenAccept(deleted -> {
                     deleteGroupButton.setDisable(false);
                     if (deleted) {
                         showAlert("Đã xóa nhóm.");
@@ -409,15 +392,12 @@ public class GroupSettingsController {
                     } else {
                         showAlert("Không thể xóa nhóm. Hãy chắc chắn rằng chỉ còn 1 thành viên.");
                     }
-                });
-            } catch (RemoteException e) {
-                logger.error("Failed to delete group", e);
-                Platform.runLater(() -> {
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to delete group", e);
                     deleteGroupButton.setDisable(false);
                     showAlert("Lỗi khi xóa nhóm.");
-                });
-            }
-        }).start();
+                }));
     }
 
     @FXML
@@ -438,10 +418,10 @@ public class GroupSettingsController {
             return;
         }
         leaveGroupButton.setDisable(true);
-        new Thread(() -> {
-            try {
-                boolean left = clientRMI.removeMemberFromGroup(currentGroup.getGroupId(), currentUser.getUserId());
-                Platform.runLater(() -> {
+        int groupId = currentGroup.getGroupId();
+        int userId = currentUser.getUserId();
+        clientRMI.async(() -> clientRMI.removeMemberFromGroup(groupId, userId))
+                .thenAccept(left -> {
                     leaveGroupButton.setDisable(false);
                     if (left) {
                         showAlert("Bạn đã rời nhóm.");
@@ -452,15 +432,12 @@ public class GroupSettingsController {
                     } else {
                         showAlert("Không thể rời nhóm lúc này. Hãy thử lại.");
                     }
-                });
-            } catch (RemoteException e) {
-                logger.error("Failed to leave group", e);
-                Platform.runLater(() -> {
+                })
+                .exceptionally(ClientTaskExecutor.onFailure(e -> {
+                    logger.error("Failed to leave group", e);
                     leaveGroupButton.setDisable(false);
                     showAlert("Lỗi khi rời nhóm.");
-                });
-            }
-        }).start();
+                }));
     }
 
     private void refreshLeaveButtonState() {
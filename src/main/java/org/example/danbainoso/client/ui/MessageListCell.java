@@ -0,0 +1,153 @@
+package org.example.danbainoso.client.ui;
+
+import javafx.beans.binding.Bindings;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableBooleanValue;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.MenuItem;
+import javafx.scene.layout.VBox;
+import org.example.danbainoso.shared.models.Message;
+import org.example.danbainoso.shared.models.User;
+
+import java.sql.Timestamp;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cell of the conversation list. Each cell builds its nodes once and only swaps their text and styles
+ * as the list scrolls, and re-renders in place when the message of the row it shows is replaced.
+ */
+class MessageListCell extends ListCell<ConversationItem> {
+    private final Supplier<User> currentUserSupplier;
+    private final Function<Timestamp, String> timestampFormatter;
+
+    private final Label senderLabel = new Label();
+    private final Label contentLabel = new Label();
+    private final Label timestampLabel = new Label();
+    private final VBox bubble = new VBox();
+    private final ContextMenu ownMessageMenu = new ContextMenu();
+
+    private final Label systemLabel = new Label();
+    private final Button loadMoreButton = new Button();
+
+    private final ChangeListener<Message> messageListener = (obs, previous, updated) -> {
+        if (updated != null) {
+            showMessage(updated);
+        }
+    };
+    // Row whose message this cell is listening to
+    private ConversationItem observedItem;
+
+    MessageListCell(Supplier<User> currentUserSupplier,
+                    Function<Timestamp, String> timestampFormatter,
+                    MessageViewFactory.MessageActionHandler actions,
+                    ObservableBooleanValue loading,
+                    Runnable onLoadMore) {
+        this.currentUserSupplier = currentUserSupplier;
+        this.timestampFormatter = timestampFormatter;
+
+        getStyleClass().add("message-cell");
+        setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+        // Take the list's width instead of asking for a horizontal scroll bar
+        setPrefWidth(0);
+
+        senderLabel.getStyleClass().add("message-sender");
+        contentLabel.setWrapText(true);
+        contentLabel.setMaxWidth(400);
+        contentLabel.getStyleClass().add("message-text");
+        timestampLabel.getStyleClass().add("message-timestamp");
+        bubble.setSpacing(4);
+        bubble.setMaxWidth(420);
+        bubble.getStyleClass().add("message-bubble");
+        bubble.getChildren().addAll(senderLabel, contentLabel, timestampLabel);
+
+        MenuItem editItem = new MenuItem("Sửa");
+        MenuItem deleteItem = new MenuItem("Xóa");
+        // Act on whatever message the cell shows when the menu is used, not the one it showed when built
+        editItem.setOnAction(e -> {
+            Message message = currentMessage();
+            if (message != null) {
+                MessageViewFactory.handleEdit(actions, message);
+            }
+        });
+        deleteItem.setOnAction(e -> {
+            Message message = currentMessage();
+            if (message != null) {
+                MessageViewFactory.handleDelete(actions, message);
+            }
+        });
+        ownMessageMenu.getItems().addAll(editItem, deleteItem);
+
+        systemLabel.getStyleClass().add("system-message");
+        systemLabel.setWrapText(true);
+
+        loadMoreButton.getStyleClass().add("load-more-button");
+        loadMoreButton.textProperty().bind(Bindings.when(loading).then("Đang tải...").otherwise("Tải thêm"));
+        loadMoreButton.disableProperty().bind(loading);
+        loadMoreButton.setOnAction(e -> onLoadMore.run());
+    }
+
+    @Override
+    protected void updateItem(ConversationItem item, boolean empty) {
+        super.updateItem(item, empty);
+        if (observedItem != null) {
+            observedItem.messageProperty().removeListener(messageListener);
+            observedItem = null;
+        }
+        setText(null);
+        if (empty || item == null) {
+            setGraphic(null);
+            return;
+        }
+        switch (item.getKind()) {
+            case MESSAGE:
+                observedItem = item;
+                item.messageProperty().addListener(messageListener);
+                showMessage(item.getMessage());
+                break;
+            case SYSTEM:
+                systemLabel.setText(item.getText());
+                setAlignment(Pos.CENTER);
+                setGraphic(systemLabel);
+                break;
+            case LOAD_MORE:
+            default:
+                setAlignment(Pos.CENTER);
+                setGraphic(loadMoreButton);
+                break;
+        }
+    }
+
+    private void showMessage(Message message) {
+        User currentUser = currentUserSupplier.get();
+        boolean isOwnMessage = currentUser != null && message.getSenderId() == currentUser.getUserId();
+
+        senderLabel.setText(MessageViewFactory.senderName(message, isOwnMessage));
+        senderLabel.setVisible(!isOwnMessage);
+        senderLabel.setManaged(!isOwnMessage);
+        contentLabel.setText(MessageViewFactory.contentText(message));
+        timestampLabel.setText(timestampFormatter.apply(message.getCreatedAt())
+                + MessageViewFactory.statusIcon(message, isOwnMessage));
+
+        bubble.getStyleClass().removeAll("message-bubble-own", "message-bubble-other");
+        bubble.getStyleClass().add(isOwnMessage ? "message-bubble-own" : "message-bubble-other");
+        if (isOwnMessage && !message.isDeleted()) {
+            bubble.setOnContextMenuRequested(evt -> ownMessageMenu.show(bubble, evt.getScreenX(), evt.getScreenY()));
+        } else {
+            bubble.setOnContextMenuRequested(null);
+        }
+
+        setAlignment(isOwnMessage ? Pos.CENTER_RIGHT : Pos.CENTER_LEFT);
+        setGraphic(bubble);
+    }
+
+    private Message currentMessage() {
+        ConversationItem item = getItem();
+        return item != null ? item.getMessage() : null;
+    }
+}
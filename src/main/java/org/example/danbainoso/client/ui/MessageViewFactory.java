@@ -1,24 +1,22 @@
 package org.example.danbainoso.client.ui;
 
-import javafx.geometry.Pos;
-import javafx.scene.Node;
+import javafx.beans.value.ObservableBooleanValue;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
-import javafx.scene.control.ContextMenu;
-import javafx.scene.control.Label;
-import javafx.scene.control.MenuItem;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.TextInputDialog;
-import javafx.scene.layout.HBox;
-import javafx.scene.layout.VBox;
+import javafx.util.Callback;
 import org.example.danbainoso.shared.models.Message;
 import org.example.danbainoso.shared.models.User;
 
 import java.rmi.RemoteException;
 import java.sql.Timestamp;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
- * Helper class to build message nodes for the chat view.
+ * Helper class to build message cells for the chat view.
  */
 public class MessageViewFactory {
 
@@ -31,68 +29,41 @@ public class MessageViewFactory {
     private MessageViewFactory() {
     }
 
-    public static Node createMessageNode(Message message,
-                                         User currentUser,
-                                         Function<Timestamp, String> timestampFormatter,
-                                         MessageActionHandler actions) {
-        boolean isOwnMessage = currentUser != null && message.getSenderId() == currentUser.getUserId();
-
-        String senderName = isOwnMessage ? "Bạn" :
-                (message.getSenderName() != null ? message.getSenderName() : "Người dùng");
+    /**
+     * Cell factory for the conversation list; cells are reused as the list scrolls.
+     */
+    public static Callback<ListView<ConversationItem>, ListCell<ConversationItem>> cellFactory(
+            Supplier<User> currentUserSupplier,
+            Function<Timestamp, String> timestampFormatter,
+            MessageActionHandler actions,
+            ObservableBooleanValue loading,
+            Runnable onLoadMore) {
+        return listView -> new MessageListCell(currentUserSupplier, timestampFormatter, actions, loading, onLoadMore);
+    }
 
-        Label senderLabel = null;
-        if (!isOwnMessage) {
-            senderLabel = new Label(senderName);
-            senderLabel.getStyleClass().add("message-sender");
+    static String senderName(Message message, boolean isOwnMessage) {
+        if (isOwnMessage) {
+            return "Bạn";
         }
+        return message.getSenderName() != null ? message.getSenderName() : "Người dùng";
+    }
 
+    static String contentText(Message message) {
         String contentText = message.isDeleted() ? "Tin nhắn đã bị xóa" : message.getContent();
         if (message.isEdited() && !message.isDeleted()) {
             contentText += " (đã chỉnh sửa)";
         }
-        Label contentLabel = new Label(contentText);
-        contentLabel.setWrapText(true);
-        contentLabel.setMaxWidth(400);
-        contentLabel.getStyleClass().add("message-text");
-
-        String statusIcon = "";
-        if (isOwnMessage) {
-            statusIcon = message.isRead() ? " ✓✓" : " ✓";
-        }
-        Label timestampLabel = new Label(timestampFormatter.apply(message.getCreatedAt()) + statusIcon);
-        timestampLabel.getStyleClass().add("message-timestamp");
-
-        VBox bubble = new VBox();
-        bubble.setSpacing(4);
-        bubble.getStyleClass().addAll("message-bubble", isOwnMessage ? "message-bubble-own" : "message-bubble-other");
-        if (senderLabel != null) {
-            bubble.getChildren().add(senderLabel);
-        }
-        bubble.getChildren().addAll(contentLabel, timestampLabel);
-        bubble.setMaxWidth(420);
-
-        HBox wrapper = new HBox(bubble);
-        wrapper.getStyleClass().add("message-wrapper");
-        wrapper.setAlignment(isOwnMessage ? Pos.CENTER_RIGHT : Pos.CENTER_LEFT);
-
-        if (isOwnMessage && !message.isDeleted()) {
-            ContextMenu contextMenu = new ContextMenu();
-            MenuItem editItem = new MenuItem("Sửa");
-            MenuItem deleteItem = new MenuItem("Xóa");
-
-            editItem.setOnAction(e -> handleEdit(actions, message));
-            deleteItem.setOnAction(e -> handleDelete(actions, message));
+        return contentText;
+    }
 
-            contextMenu.getItems().addAll(editItem, deleteItem);
-            bubble.setOnContextMenuRequested(evt -> contextMenu.show(bubble, evt.getScreenX(), evt.getScreenY()));
-        } else {
-            bubble.setOnContextMenuRequested(null);
+    static String statusIcon(Message message, boolean isOwnMessage) {
+        if (!isOwnMessage) {
+            return "";
         }
-
-        return wrapper;
+        return message.isRead() ? " ✓✓" : " ✓";
     }
 
-    private static void handleEdit(MessageActionHandler actions, Message message) {
+    static void handleEdit(MessageActionHandler actions, Message message) {
         TextInputDialog dialog = new TextInputDialog(message.getContent());
         dialog.setTitle("Sửa tin nhắn");
         dialog.setHeaderText(null);
@@ -113,7 +84,7 @@ public class MessageViewFactory {
         });
     }
 
-    private static void handleDelete(MessageActionHandler actions, Message message) {
+    static void handleDelete(MessageActionHandler actions, Message message) {
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
         alert.setTitle("Xóa tin nhắn");
         alert.setHeaderText(null);
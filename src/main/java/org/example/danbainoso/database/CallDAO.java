@@ -0,0 +1,160 @@
+package org.example.danbainoso.database;
+
+import org.example.danbainoso.shared.models.CallHistoryPage;
+import org.example.danbainoso.shared.models.CallRequest;
+import org.example.danbainoso.utils.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CallDAO {
+    private static final Logger logger = LoggerUtil.getLogger(CallDAO.class);
+    
+    // One row per call; later states of the same call overwrite its status and times
+    private static final String UPSERT_SQL = "INSERT INTO calls (call_id, caller_id, receiver_id, group_id, call_type, status, created_at, answered_at, ended_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE status = VALUES(status), answered_at = VALUES(answered_at), ended_at = VALUES(ended_at)";
+    
+    // Save one call state
+    public void saveCall(CallRequest call) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(UPSERT_SQL)) {
+            bindUpsert(pstmt, call);
+            pstmt.executeUpdate();
+        }
+    }
+    
+    // Save call states as one batch in one transaction, in the order given
+    public void saveCalls(List<CallRequest> calls) throws SQLException {
+        if (calls.isEmpty()) {
+            return;
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(UPSERT_SQL)) {
+                for (CallRequest call : calls) {
+                    bindUpsert(pstmt, call);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                conn.commit();
+                logger.debug("Call batch saved: {} rows", calls.size());
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+    
+    private void bindUpsert(PreparedStatement pstmt, CallRequest call) throws SQLException {
+        pstmt.setString(1, call.getCallId());
+        pstmt.setInt(2, call.getCallerId());
+        pstmt.setInt(3, call.getReceiverId());
+        if (call.getGroupId() != null) {
+            pstmt.setInt(4, call.getGroupId());
+        } else {
+            pstmt.setNull(4, Types.INTEGER);
+        }
+        pstmt.setString(5, call.getCallType() != null ? call.getCallType().name() : CallRequest.CallType.VOICE.name());
+        pstmt.setString(6, call.getStatus().name());
+        pstmt.setTimestamp(7, call.getCreatedAt());
+        pstmt.setTimestamp(8, call.getAnsweredAt());
+        pstmt.setTimestamp(9, call.getEndedAt());
+    }
+    
+    // Get a user's calls, newest first, older than the cursor (0 or less for the newest page)
+    public CallHistoryPage getCallHistory(int userId, long beforeId, int limit) throws SQLException {
+        long before = beforeId > 0 ? beforeId : Long.MAX_VALUE;
+        // Each side of the call is a range scan on its (user, id) index, and group calls a scan per group the user
+        // belonged to when the call started; one row past the page tells if there is more
+        String sql = "SELECT c.*, caller.username as caller_name, receiver.username as receiver_name FROM (" +
+                     "(SELECT * FROM calls WHERE caller_id = ? AND id < ? ORDER BY id DESC LIMIT ?) " +
+                     "UNION " +
+                     "(SELECT * FROM calls WHERE receiver_id = ? AND id < ? ORDER BY id DESC LIMIT ?) " +
+                     "UNION " +
+                     "(SELECT gc.* FROM calls gc JOIN group_members gm ON gm.group_id = gc.group_id " +
+                     "WHERE gm.user_id = ? AND gm.joined_at <= gc.created_at AND gc.id < ? ORDER BY gc.id DESC LIMIT ?)" +
+                     ") c " +
+                     "LEFT JOIN users caller ON c.caller_id = caller.user_id " +
+                     "LEFT JOIN users receiver ON c.receiver_id = receiver.user_id " +
+                     "ORDER BY c.id DESC LIMIT ?";
+        
+        List<CallRequest> calls = new ArrayList<>();
+        long lastId = -1;
+        boolean more = false;
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, userId);
+            pstmt.setLong(2, before);
+            pstmt.setInt(3, limit + 1);
+            pstmt.setInt(4, userId);
+            pstmt.setLong(5, before);
+            pstmt.setInt(6, limit + 1);
+            pstmt.setInt(7, userId);
+            pstmt.setLong(8, before);
+            pstmt.setInt(9, limit + 1);
+            pstmt.setInt(10, limit + 1);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (calls.size() == limit) {
+                        more = true;
+                        break;
+                    }
+                    calls.add(mapResultSetToCall(rs));
+                    lastId = rs.getLong("id");
+                }
+            }
+        }
+        return new CallHistoryPage(calls, more ? lastId : -1);
+    }
+    
+    // Count calls the user missed: direct calls to them, and group calls nobody answered in groups they were in.
+    // A group call keeps receiver_id = caller_id after its group is deleted and group_id is nulled, so direct
+    // calls are also told apart by having a receiver other than the caller
+    public int getMissedCallCount(int userId) throws SQLException {
+        String sql = "SELECT (SELECT COUNT(*) FROM calls WHERE receiver_id = ? AND status = 'MISSED' " +
+                     "AND group_id IS NULL AND caller_id <> receiver_id) + " +
+                     "(SELECT COUNT(*) FROM calls c JOIN group_members gm ON gm.group_id = c.group_id " +
+                     "WHERE gm.user_id = ? AND c.status = 'MISSED' AND c.caller_id <> ? AND gm.joined_at <= c.created_at)";
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, userId);
+            pstmt.setInt(3, userId);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        }
+        return 0;
+    }
+    
+    private CallRequest mapResultSetToCall(ResultSet rs) throws SQLException {
+        CallRequest call = new CallRequest();
+        call.setCallId(rs.getString("call_id"));
+        call.setCallerId(rs.getInt("caller_id"));
+        call.setReceiverId(rs.getInt("receiver_id"));
+        int groupId = rs.getInt("group_id");
+        call.setGroupId(rs.wasNull() ? null : groupId);
+        call.setCallType(CallRequest.CallType.valueOf(rs.getString("call_type")));
+        call.setStatus(CallRequest.CallStatus.valueOf(rs.getString("status")));
+        call.setCreatedAt(rs.getTimestamp("created_at"));
+        call.setAnsweredAt(rs.getTimestamp("answered_at"));
+        call.setEndedAt(rs.getTimestamp("ended_at"));
+        call.setCallerName(rs.getString("caller_name"));
+        call.setReceiverName(rs.getString("receiver_name"));
+        return call;
+    }
+}
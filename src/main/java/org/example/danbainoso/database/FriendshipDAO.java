@@ -2,6 +2,8 @@ package org.example.danbainoso.database;
 
 import org.example.danbainoso.shared.models.BlockStatus;
 import org.example.danbainoso.shared.models.Friendship;
+import org.example.danbainoso.shared.models.User;
+import org.example.danbainoso.shared.models.UserSummary;
 import org.example.danbainoso.utils.LoggerUtil;
 import org.slf4j.Logger;
 
@@ -11,6 +13,7 @@ import java.util.List;
 
 public class FriendshipDAO {
     private static final Logger logger = LoggerUtil.getLogger(FriendshipDAO.class);
+    private final UserDAO userDAO = new UserDAO();
 
     public Friendship sendFriendRequest(int userId1, int userId2) throws SQLException {
         String sql = "INSERT INTO friendships (user1_id, user2_id, status) VALUES (?, ?, 'PENDING')";
@@ -104,6 +107,79 @@ public class FriendshipDAO {
         return friends;
     }
 
+    // One branch per side of the friendship so each can use its user index; users is joined once per row
+    public List<User> getFriendUsers(int userId) throws SQLException {
+        String sql = "SELECT u.* FROM friendships f INNER JOIN users u ON u.user_id = f.user2_id " +
+                     "WHERE f.user1_id = ? AND f.status = 'ACCEPTED' " +
+                     "UNION ALL " +
+                     "SELECT u.* FROM friendships f INNER JOIN users u ON u.user_id = f.user1_id " +
+                     "WHERE f.user2_id = ? AND f.status = 'ACCEPTED'";
+        List<User> friends = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, userId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    friends.add(userDAO.mapResultSetToUser(rs));
+                }
+            }
+        }
+
+        return friends;
+    }
+
+    public List<UserSummary> getFriendSummaries(int userId) throws SQLException {
+        String sql = "SELECT u.user_id, u.username, u.full_name, u.avatar_url, u.status " +
+                     "FROM friendships f INNER JOIN users u ON u.user_id = f.user2_id " +
+                     "WHERE f.user1_id = ? AND f.status = 'ACCEPTED' " +
+                     "UNION ALL " +
+                     "SELECT u.user_id, u.username, u.full_name, u.avatar_url, u.status " +
+                     "FROM friendships f INNER JOIN users u ON u.user_id = f.user1_id " +
+                     "WHERE f.user2_id = ? AND f.status = 'ACCEPTED'";
+        List<UserSummary> friends = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, userId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    friends.add(userDAO.mapResultSetToUserSummary(rs));
+                }
+            }
+        }
+
+        return friends;
+    }
+
+    public List<Integer> getFriendIds(int userId) throws SQLException {
+        String sql = "SELECT user2_id AS friend_id FROM friendships WHERE user1_id = ? AND status = 'ACCEPTED' " +
+                     "UNION ALL " +
+                     "SELECT user1_id AS friend_id FROM friendships WHERE user2_id = ? AND status = 'ACCEPTED'";
+        List<Integer> friendIds = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, userId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    friendIds.add(rs.getInt("friend_id"));
+                }
+            }
+        }
+
+        return friendIds;
+    }
+
     public boolean removeFriend(int userId1, int userId2) throws SQLException {
         String sql = "DELETE FROM friendships WHERE status = 'ACCEPTED' AND " +
                      "((user1_id = ? AND user2_id = ?) OR (user1_id = ? AND user2_id = ?))";
@@ -228,6 +304,22 @@ public class FriendshipDAO {
         return status;
     }
 
+    // Every block as {blocker, blocked}; user1_id is always the blocker of a BLOCKED row
+    public List<int[]> getAllBlocks() throws SQLException {
+        String sql = "SELECT user1_id, user2_id FROM friendships WHERE status = 'BLOCKED'";
+        List<int[]> blocks = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            while (rs.next()) {
+                blocks.add(new int[]{rs.getInt("user1_id"), rs.getInt("user2_id")});
+            }
+        }
+        return blocks;
+    }
+
     public Friendship getFriendshipById(int friendshipId) throws SQLException {
         String sql = "SELECT * FROM friendships WHERE friendship_id = ?";
         try (Connection conn = DatabaseConnection.getConnection();
@@ -2,6 +2,7 @@ package org.example.danbainoso.database;
 
 import org.example.danbainoso.shared.models.Group;
 import org.example.danbainoso.shared.models.User;
+import org.example.danbainoso.shared.models.UserSummary;
 import org.example.danbainoso.utils.LoggerUtil;
 import org.slf4j.Logger;
 
@@ -61,7 +62,11 @@ public class GroupDAO {
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
                     Group group = mapResultSetToGroup(rs);
-                    group.setMembers(getGroupMembers(groupId));
+                    List<User> members = new ArrayList<>();
+                    for (UserSummary summary : getGroupMemberSummaries(groupId)) {
+                        members.add(summary.toUser());
+                    }
+                    group.setMembers(members);
                     return group;
                 }
             }
@@ -132,30 +137,49 @@ public class GroupDAO {
     public boolean addMember(int groupId, int userId, String role) throws SQLException {
         String sql = "INSERT INTO group_members (group_id, user_id, role) VALUES (?, ?, ?) " +
                      "ON DUPLICATE KEY UPDATE role = ?";
+        // A new member has read everything sent before they joined; a role change keeps the existing cursor
+        String cursorSql = "INSERT INTO group_read_cursors (group_id, user_id, last_read_message_id) " +
+                           "SELECT ?, ?, COALESCE(MAX(message_id), 0) FROM messages WHERE group_id = ? " +
+                           "ON DUPLICATE KEY UPDATE last_read_message_id = last_read_message_id";
         
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             PreparedStatement cursorStmt = conn.prepareStatement(cursorSql)) {
             
             pstmt.setInt(1, groupId);
             pstmt.setInt(2, userId);
             pstmt.setString(3, role);
             pstmt.setString(4, role);
+            boolean added = pstmt.executeUpdate() > 0;
+            
+            cursorStmt.setInt(1, groupId);
+            cursorStmt.setInt(2, userId);
+            cursorStmt.setInt(3, groupId);
+            cursorStmt.executeUpdate();
             
-            return pstmt.executeUpdate() > 0;
+            return added;
         }
     }
     
     // Remove member from group
     public boolean removeMember(int groupId, int userId) throws SQLException {
         String sql = "DELETE FROM group_members WHERE group_id = ? AND user_id = ?";
+        String cursorSql = "DELETE FROM group_read_cursors WHERE group_id = ? AND user_id = ?";
         
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             PreparedStatement cursorStmt = conn.prepareStatement(cursorSql)) {
             
             pstmt.setInt(1, groupId);
             pstmt.setInt(2, userId);
+            boolean removed = pstmt.executeUpdate() > 0;
+            
+            // A member who rejoins later gets a new cursor at the newest message of that moment
+            cursorStmt.setInt(1, groupId);
+            cursorStmt.setInt(2, userId);
+            cursorStmt.executeUpdate();
             
-            return pstmt.executeUpdate() > 0;
+            return removed;
         }
     }
     
@@ -182,6 +206,72 @@ public class GroupDAO {
         return members;
     }
     
+    // Get group members, summary columns only
+    public List<UserSummary> getGroupMemberSummaries(int groupId) throws SQLException {
+        String sql = "SELECT u.user_id, u.username, u.full_name, u.avatar_url, u.status FROM users u " +
+                     "INNER JOIN group_members gm ON u.user_id = gm.user_id " +
+                     "WHERE gm.group_id = ? " +
+                     "ORDER BY gm.role DESC, u.username";
+        
+        List<UserSummary> members = new ArrayList<>();
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, groupId);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    members.add(userDAO.mapResultSetToUserSummary(rs));
+                }
+            }
+        }
+        return members;
+    }
+    
+    // Get member IDs only (no join on users)
+    public List<Integer> getGroupMemberIds(int groupId) throws SQLException {
+        String sql = "SELECT user_id FROM group_members WHERE group_id = ?";
+        
+        List<Integer> memberIds = new ArrayList<>();
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, groupId);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    memberIds.add(rs.getInt("user_id"));
+                }
+            }
+        }
+        return memberIds;
+    }
+    
+    // Get IDs of everyone sharing at least one group with the user
+    public List<Integer> getCoMemberIds(int userId) throws SQLException {
+        String sql = "SELECT DISTINCT other.user_id FROM group_members mine " +
+                     "INNER JOIN group_members other ON mine.group_id = other.group_id " +
+                     "WHERE mine.user_id = ? AND other.user_id != ?";
+        
+        List<Integer> memberIds = new ArrayList<>();
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, userId);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    memberIds.add(rs.getInt("user_id"));
+                }
+            }
+        }
+        return memberIds;
+    }
+    
     // Get member count
     public int getMemberCount(int groupId) throws SQLException {
         String sql = "SELECT COUNT(*) as count FROM group_members WHERE group_id = ?";
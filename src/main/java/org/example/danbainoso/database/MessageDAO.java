@@ -1,40 +1,30 @@
 package org.example.danbainoso.database;
 
+import org.example.danbainoso.shared.models.GroupReadCursor;
 import org.example.danbainoso.shared.models.Message;
+import org.example.danbainoso.shared.models.MessageSearchScope;
 import org.example.danbainoso.utils.LoggerUtil;
 import org.slf4j.Logger;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MessageDAO {
     private static final Logger logger = LoggerUtil.getLogger(MessageDAO.class);
     
+    private static final String INSERT_SQL = "INSERT INTO messages (sender_id, receiver_id, group_id, content, message_type, file_url, is_read, is_edited, is_deleted, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
     // Create message
     public Message createMessage(Message message) throws SQLException {
-        String sql = "INSERT INTO messages (sender_id, receiver_id, group_id, content, message_type, file_url, is_read, is_edited, is_deleted) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
             
-            pstmt.setInt(1, message.getSenderId());
-            if (message.getReceiverId() != null) {
-                pstmt.setInt(2, message.getReceiverId());
-            } else {
-                pstmt.setNull(2, Types.INTEGER);
-            }
-            if (message.getGroupId() != null) {
-                pstmt.setInt(3, message.getGroupId());
-            } else {
-                pstmt.setNull(3, Types.INTEGER);
-            }
-            pstmt.setString(4, message.getContent());
-            pstmt.setString(5, message.getMessageType().name());
-            pstmt.setString(6, message.getFileUrl());
-            pstmt.setBoolean(7, message.isRead());
-            pstmt.setBoolean(8, message.isEdited());
-            pstmt.setBoolean(9, message.isDeleted());
+            // Timestamp is assigned here so no extra SELECT is needed to read it back
+            bindInsert(pstmt, message);
             
             int affectedRows = pstmt.executeUpdate();
             if (affectedRows == 0) {
@@ -49,14 +39,69 @@ public class MessageDAO {
                 }
             }
             
-            // Get created timestamp
-            message.setCreatedAt(getMessageById(message.getMessageId()).getCreatedAt());
-            
             logger.debug("Message created: {}", message.getMessageId());
             return message;
         }
     }
     
+    // Create several messages in one JDBC batch and one transaction
+    public void createMessages(List<Message> messages) throws SQLException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (Message message : messages) {
+                    bindInsert(pstmt, message);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                
+                try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                    for (Message message : messages) {
+                        if (!generatedKeys.next()) {
+                            throw new SQLException("Creating message batch failed, missing generated ID.");
+                        }
+                        message.setMessageId(generatedKeys.getInt(1));
+                    }
+                }
+                conn.commit();
+                logger.debug("Message batch created: {} rows", messages.size());
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+    
+    private void bindInsert(PreparedStatement pstmt, Message message) throws SQLException {
+        // Server-assigned, whole seconds to match what the TIMESTAMP column stores
+        long now = System.currentTimeMillis();
+        message.setCreatedAt(new Timestamp(now - now % 1000));
+        pstmt.setInt(1, message.getSenderId());
+        if (message.getReceiverId() != null) {
+            pstmt.setInt(2, message.getReceiverId());
+        } else {
+            pstmt.setNull(2, Types.INTEGER);
+        }
+        if (message.getGroupId() != null) {
+            pstmt.setInt(3, message.getGroupId());
+        } else {
+            pstmt.setNull(3, Types.INTEGER);
+        }
+        pstmt.setString(4, message.getContent());
+        pstmt.setString(5, message.getMessageType().name());
+        pstmt.setString(6, message.getFileUrl());
+        pstmt.setBoolean(7, message.isRead());
+        pstmt.setBoolean(8, message.isEdited());
+        pstmt.setBoolean(9, message.isDeleted());
+        pstmt.setTimestamp(10, message.getCreatedAt());
+    }
+    
     // Get message by ID
     public Message getMessageById(int messageId) throws SQLException {
         String sql = "SELECT m.*, u.username as sender_name, u.avatar_url as sender_avatar " +
@@ -154,6 +199,203 @@ public class MessageDAO {
         return reversed;
     }
     
+    // Get private messages older than a message ID (keyset pagination, 0 = newest page)
+    public List<Message> getPrivateMessagesBefore(int userId1, int userId2, int beforeMessageId, int limit) throws SQLException {
+        // One index range scan per direction on (sender_id, receiver_id, message_id), merged and trimmed
+        String sql = "SELECT m.*, u.username as sender_name, u.avatar_url as sender_avatar FROM (" +
+                     "(SELECT * FROM messages WHERE sender_id = ? AND receiver_id = ? AND message_id < ? AND group_id IS NULL " +
+                     "ORDER BY message_id DESC LIMIT ?) " +
+                     "UNION ALL " +
+                     "(SELECT * FROM messages WHERE sender_id = ? AND receiver_id = ? AND message_id < ? AND group_id IS NULL " +
+                     "ORDER BY message_id DESC LIMIT ?)" +
+                     ") m " +
+                     "LEFT JOIN users u ON m.sender_id = u.user_id " +
+                     "ORDER BY m.message_id DESC LIMIT ?";
+        
+        int cursor = beforeMessageId > 0 ? beforeMessageId : Integer.MAX_VALUE;
+        List<Message> messages = new ArrayList<>();
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, userId1);
+            pstmt.setInt(2, userId2);
+            pstmt.setInt(3, cursor);
+            pstmt.setInt(4, limit);
+            pstmt.setInt(5, userId2);
+            pstmt.setInt(6, userId1);
+            pstmt.setInt(7, cursor);
+            pstmt.setInt(8, limit);
+            pstmt.setInt(9, limit);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    messages.add(mapResultSetToMessage(rs));
+                }
+            }
+        }
+        
+        // Reverse to get chronological order
+        Collections.reverse(messages);
+        return messages;
+    }
+    
+    // Get group messages older than a message ID (keyset pagination, 0 = newest page)
+    public List<Message> getGroupMessagesBefore(int groupId, int beforeMessageId, int limit) throws SQLException {
+        String sql = "SELECT m.*, u.username as sender_name, u.avatar_url as sender_avatar " +
+                     "FROM messages m " +
+                     "LEFT JOIN users u ON m.sender_id = u.user_id " +
+                     "WHERE m.group_id = ? AND m.message_id < ? " +
+                     "ORDER BY m.message_id DESC LIMIT ?";
+        
+        List<Message> messages = new ArrayList<>();
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, groupId);
+            pstmt.setInt(2, beforeMessageId > 0 ? beforeMessageId : Integer.MAX_VALUE);
+            pstmt.setInt(3, limit);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    messages.add(mapResultSetToMessage(rs));
+                }
+            }
+        }
+        
+        // Reverse to get chronological order
+        Collections.reverse(messages);
+        return messages;
+    }
+    
+    // Get private messages newer than a message ID, oldest first (delta sync for clients with a local copy)
+    public List<Message> getPrivateMessagesAfter(int userId1, int userId2, int afterMessageId, int limit) throws SQLException {
+        String sql = "SELECT m.*, u.username as sender_name, u.avatar_url as sender_avatar FROM (" +
+                     "(SELECT * FROM messages WHERE sender_id = ? AND receiver_id = ? AND message_id > ? AND group_id IS NULL " +
+                     "ORDER BY message_id ASC LIMIT ?) " +
+                     "UNION ALL " +
+                     "(SELECT * FROM messages WHERE sender_id = ? AND receiver_id = ? AND message_id > ? AND group_id IS NULL " +
+                     "ORDER BY message_id ASC LIMIT ?)" +
+                     ") m " +
+                     "LEFT JOIN users u ON m.sender_id = u.user_id " +
+                     "ORDER BY m.message_id ASC LIMIT ?";
+        
+        List<Message> messages = new ArrayList<>();
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, userId1);
+            pstmt.setInt(2, userId2);
+            pstmt.setInt(3, afterMessageId);
+            pstmt.setInt(4, limit);
+            pstmt.setInt(5, userId2);
+            pstmt.setInt(6, userId1);
+            pstmt.setInt(7, afterMessageId);
+            pstmt.setInt(8, limit);
+            pstmt.setInt(9, limit);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    messages.add(mapResultSetToMessage(rs));
+                }
+            }
+        }
+        return messages;
+    }
+    
+    // Get group messages newer than a message ID, oldest first (delta sync for clients with a local copy)
+    public List<Message> getGroupMessagesAfter(int groupId, int afterMessageId, int limit) throws SQLException {
+        String sql = "SELECT m.*, u.username as sender_name, u.avatar_url as sender_avatar " +
+                     "FROM messages m " +
+                     "LEFT JOIN users u ON m.sender_id = u.user_id " +
+                     "WHERE m.group_id = ? AND m.message_id > ? " +
+                     "ORDER BY m.message_id ASC LIMIT ?";
+        
+        List<Message> messages = new ArrayList<>();
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, groupId);
+            pstmt.setInt(2, afterMessageId);
+            pstmt.setInt(3, limit);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    messages.add(mapResultSetToMessage(rs));
+                }
+            }
+        }
+        return messages;
+    }
+    
+    // Full-text search over messages a user can read, newest first (keyset pagination, 0 = newest page)
+    public List<Message> searchMessages(int userId, String query, MessageSearchScope scope, int beforeMessageId, int limit) throws SQLException {
+        String booleanQuery = toBooleanQuery(query);
+        if (booleanQuery.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        String scopeCondition;
+        switch (scope.getType()) {
+            case PRIVATE:
+                scopeCondition = "m.group_id IS NULL AND ((m.sender_id = ? AND m.receiver_id = ?) OR (m.sender_id = ? AND m.receiver_id = ?)) ";
+                break;
+            case GROUP:
+                scopeCondition = "m.group_id = ? ";
+                break;
+            default:
+                // Own private chats except blocked pairs, plus every group the user belongs to
+                scopeCondition = "((m.group_id IS NULL AND (m.sender_id = ? OR m.receiver_id = ?) " +
+                        "AND NOT EXISTS (SELECT 1 FROM friendships f WHERE f.status = 'BLOCKED' " +
+                        "AND ((f.user1_id = m.sender_id AND f.user2_id = m.receiver_id) OR (f.user1_id = m.receiver_id AND f.user2_id = m.sender_id)))) " +
+                        "OR m.group_id IN (SELECT group_id FROM group_members WHERE user_id = ?)) ";
+                break;
+        }
+        String sql = "SELECT m.*, u.username as sender_name, u.avatar_url as sender_avatar " +
+                     "FROM messages m " +
+                     "LEFT JOIN users u ON m.sender_id = u.user_id " +
+                     "WHERE MATCH(m.content) AGAINST (? IN BOOLEAN MODE) AND m.is_deleted = FALSE AND m.message_id < ? AND " +
+                     scopeCondition +
+                     "ORDER BY m.message_id DESC LIMIT ?";
+        
+        List<Message> messages = new ArrayList<>();
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            int index = 1;
+            pstmt.setString(index++, booleanQuery);
+            pstmt.setInt(index++, beforeMessageId > 0 ? beforeMessageId : Integer.MAX_VALUE);
+            switch (scope.getType()) {
+                case PRIVATE:
+                    pstmt.setInt(index++, userId);
+                    pstmt.setInt(index++, scope.getTargetId());
+                    pstmt.setInt(index++, scope.getTargetId());
+                    pstmt.setInt(index++, userId);
+                    break;
+                case GROUP:
+                    pstmt.setInt(index++, scope.getTargetId());
+                    break;
+                default:
+                    pstmt.setInt(index++, userId);
+                    pstmt.setInt(index++, userId);
+                    pstmt.setInt(index++, userId);
+                    break;
+            }
+            pstmt.setInt(index, limit);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    messages.add(mapResultSetToMessage(rs));
+                }
+            }
+        }
+        return messages;
+    }
+    
     // Mark messages as read
     public int markMessagesAsRead(int receiverId, int senderId) throws SQLException {
         String sql = "UPDATE messages SET is_read = TRUE WHERE receiver_id = ? AND sender_id = ? AND is_read = FALSE";
@@ -170,18 +412,90 @@ public class MessageDAO {
     
     // Mark group messages as read
     public int markGroupMessagesAsRead(int userId, int groupId) throws SQLException {
-        String sql = "UPDATE messages SET is_read = TRUE WHERE group_id = ? AND sender_id != ? AND is_read = FALSE";
+        // Single-row upsert of the member's read cursor; MAX(message_id) is read from the (group_id, message_id) index
+        String sql = "INSERT INTO group_read_cursors (group_id, user_id, last_read_message_id) " +
+                     "SELECT ?, ?, COALESCE(MAX(message_id), 0) FROM messages WHERE group_id = ? " +
+                     "ON DUPLICATE KEY UPDATE last_read_message_id = GREATEST(last_read_message_id, VALUES(last_read_message_id))";
         
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, groupId);
             pstmt.setInt(2, userId);
+            pstmt.setInt(3, groupId);
             
             return pstmt.executeUpdate();
         }
     }
     
+    // Get read cursors of all members of a group
+    public List<GroupReadCursor> getGroupReadCursors(int groupId) throws SQLException {
+        String sql = "SELECT group_id, user_id, last_read_message_id, updated_at FROM group_read_cursors WHERE group_id = ?";
+        
+        List<GroupReadCursor> cursors = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, groupId);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    GroupReadCursor cursor = new GroupReadCursor();
+                    cursor.setGroupId(rs.getInt("group_id"));
+                    cursor.setUserId(rs.getInt("user_id"));
+                    cursor.setLastReadMessageId(rs.getInt("last_read_message_id"));
+                    cursor.setUpdatedAt(rs.getTimestamp("updated_at"));
+                    cursors.add(cursor);
+                }
+            }
+        }
+        return cursors;
+    }
+    
+    // Count group messages after the member's read cursor (range scan on the (group_id, message_id) index)
+    public int getGroupUnreadCount(int userId, int groupId) throws SQLException {
+        String sql = "SELECT COUNT(*) as count FROM messages " +
+                     "WHERE group_id = ? AND sender_id <> ? AND message_id > COALESCE(" +
+                     "(SELECT last_read_message_id FROM group_read_cursors WHERE group_id = ? AND user_id = ?), 0)";
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, groupId);
+            pstmt.setInt(2, userId);
+            pstmt.setInt(3, groupId);
+            pstmt.setInt(4, userId);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt("count");
+                }
+            }
+        }
+        return 0;
+    }
+    
+    // Count unread messages of every group the user has a read cursor in, one range scan per group
+    public Map<Integer, Integer> getGroupUnreadCounts(int userId) throws SQLException {
+        String sql = "SELECT c.group_id, COUNT(m.message_id) as count FROM group_read_cursors c " +
+                     "JOIN messages m ON m.group_id = c.group_id AND m.message_id > c.last_read_message_id AND m.sender_id <> c.user_id " +
+                     "WHERE c.user_id = ? GROUP BY c.group_id";
+        
+        Map<Integer, Integer> counts = new HashMap<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, userId);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getInt("group_id"), rs.getInt("count"));
+                }
+            }
+        }
+        return counts;
+    }
+    
     // Get unread message count for user
     public int getUnreadCount(int userId) throws SQLException {
         String sql = "SELECT COUNT(*) as count FROM messages WHERE receiver_id = ? AND is_read = FALSE";
@@ -225,6 +539,24 @@ public class MessageDAO {
         }
     }
     
+    // Every word of the query must match as a prefix; anything that is not a letter or digit,
+    // including the boolean-mode operators, only separates words
+    private static String toBooleanQuery(String query) {
+        if (query == null) {
+            return "";
+        }
+        StringBuilder booleanQuery = new StringBuilder();
+        for (String word : query.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                if (booleanQuery.length() > 0) {
+                    booleanQuery.append(' ');
+                }
+                booleanQuery.append('+').append(word).append('*');
+            }
+        }
+        return booleanQuery.toString();
+    }
+    
     // Map ResultSet to Message object
     private Message mapResultSetToMessage(ResultSet rs) throws SQLException {
         Message message = new Message();
@@ -0,0 +1,89 @@
+package org.example.danbainoso.database;
+
+import org.example.danbainoso.shared.models.UnreadCounts;
+import org.example.danbainoso.utils.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.sql.*;
+import java.util.List;
+
+public class UnreadCounterDAO {
+    private static final Logger logger = LoggerUtil.getLogger(UnreadCounterDAO.class);
+
+    public static final String TYPE_USER = "USER";
+
+    /**
+     * One counter row to write. Additive writes add {@code count} to the stored value,
+     * the others replace it.
+     */
+    public static class CounterWrite {
+        private final int userId;
+        private final String conversationType;
+        private final int conversationId;
+        private final int count;
+        private final boolean additive;
+
+        public CounterWrite(int userId, String conversationType, int conversationId, int count, boolean additive) {
+            this.userId = userId;
+            this.conversationType = conversationType;
+            this.conversationId = conversationId;
+            this.count = count;
+            this.additive = additive;
+        }
+    }
+
+    // Get all private conversation counters of a user; group unread counts come from group_read_cursors
+    public UnreadCounts getCounters(int userId) throws SQLException {
+        String sql = "SELECT conversation_id, unread_count FROM unread_counters WHERE user_id = ? AND conversation_type = '" + TYPE_USER + "'";
+
+        UnreadCounts counts = new UnreadCounts();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.getUserCounts().put(rs.getInt("conversation_id"), rs.getInt("unread_count"));
+                }
+            }
+        }
+        return counts;
+    }
+
+    // Upsert counters in one transaction
+    public void saveCounters(List<CounterWrite> writes) throws SQLException {
+        if (writes.isEmpty()) {
+            return;
+        }
+        String setSql = "INSERT INTO unread_counters (user_id, conversation_type, conversation_id, unread_count) VALUES (?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE unread_count = VALUES(unread_count)";
+        String addSql = "INSERT INTO unread_counters (user_id, conversation_type, conversation_id, unread_count) VALUES (?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE unread_count = GREATEST(0, unread_count + VALUES(unread_count))";
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement setStmt = conn.prepareStatement(setSql);
+                 PreparedStatement addStmt = conn.prepareStatement(addSql)) {
+                for (CounterWrite write : writes) {
+                    PreparedStatement pstmt = write.additive ? addStmt : setStmt;
+                    pstmt.setInt(1, write.userId);
+                    pstmt.setString(2, write.conversationType);
+                    pstmt.setInt(3, write.conversationId);
+                    pstmt.setInt(4, write.count);
+                    pstmt.addBatch();
+                }
+                setStmt.executeBatch();
+                addStmt.executeBatch();
+                conn.commit();
+                logger.debug("Unread counters saved: {} rows", writes.size());
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package org.example.danbainoso.database;
 
 import org.example.danbainoso.shared.models.User;
+import org.example.danbainoso.shared.models.UserSummary;
 import org.example.danbainoso.utils.EncryptionUtil;
 import org.example.danbainoso.utils.LoggerUtil;
 import org.slf4j.Logger;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public class UserDAO {
@@ -63,6 +65,31 @@ public class UserDAO {
         return null;
     }
     
+    // Get several users by ID in one query, full rows for server-side use only
+    public List<User> getUsersByIds(Collection<Integer> userIds) throws SQLException {
+        List<User> users = new ArrayList<>();
+        if (userIds.isEmpty()) {
+            return users;
+        }
+        String sql = "SELECT * FROM users WHERE user_id IN (" + placeholders(userIds.size()) + ")";
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            int index = 1;
+            for (int userId : userIds) {
+                pstmt.setInt(index++, userId);
+            }
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    users.add(mapResultSetToUser(rs));
+                }
+            }
+        }
+        return users;
+    }
+    
     // Get user by username
     public User getUserByUsername(String username) throws SQLException {
         String sql = "SELECT * FROM users WHERE username = ?";
@@ -195,6 +222,67 @@ public class UserDAO {
         return users;
     }
     
+    // Search users by username or full name, summary columns only
+    public List<UserSummary> searchUserSummaries(String keyword) throws SQLException {
+        String sql = "SELECT user_id, username, full_name, avatar_url, status FROM users WHERE username LIKE ? OR full_name LIKE ? ORDER BY username";
+        List<UserSummary> users = new ArrayList<>();
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            String searchPattern = "%" + keyword + "%";
+            pstmt.setString(1, searchPattern);
+            pstmt.setString(2, searchPattern);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    users.add(mapResultSetToUserSummary(rs));
+                }
+            }
+        }
+        return users;
+    }
+    
+    // Get every user, summary columns only
+    public List<UserSummary> getAllUserSummaries() throws SQLException {
+        String sql = "SELECT user_id, username, full_name, avatar_url, status FROM users";
+        List<UserSummary> users = new ArrayList<>();
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            
+            while (rs.next()) {
+                users.add(mapResultSetToUserSummary(rs));
+            }
+        }
+        return users;
+    }
+    
+    // Page of users whose username or full name starts with the keyword, summary columns only
+    public List<UserSummary> searchUserSummariesByPrefix(String keyword, int offset, int limit) throws SQLException {
+        String sql = "SELECT user_id, username, full_name, avatar_url, status FROM users " +
+                "WHERE username LIKE ? OR full_name LIKE ? ORDER BY username, user_id LIMIT ? OFFSET ?";
+        List<UserSummary> users = new ArrayList<>();
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            String searchPattern = keyword.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+            pstmt.setString(1, searchPattern);
+            pstmt.setString(2, searchPattern);
+            pstmt.setInt(3, limit);
+            pstmt.setInt(4, offset);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    users.add(mapResultSetToUserSummary(rs));
+                }
+            }
+        }
+        return users;
+    }
+    
     // Delete user
     public boolean deleteUser(int userId) throws SQLException {
         String sql = "DELETE FROM users WHERE user_id = ?";
@@ -209,6 +297,16 @@ public class UserDAO {
         }
     }
     
+    // Map the summary columns (user_id, username, full_name, avatar_url, status) to UserSummary
+    public UserSummary mapResultSetToUserSummary(ResultSet rs) throws SQLException {
+        return new UserSummary(
+                rs.getInt("user_id"),
+                rs.getString("username"),
+                rs.getString("full_name"),
+                rs.getString("avatar_url"),
+                User.UserStatus.valueOf(rs.getString("status")));
+    }
+    
     // Map ResultSet to User object
     public User mapResultSetToUser(ResultSet rs) throws SQLException {
         User user = new User();
@@ -224,4 +322,12 @@ public class UserDAO {
         user.setUpdatedAt(rs.getTimestamp("updated_at"));
         return user;
     }
+    
+    private static String placeholders(int count) {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql.toString();
+    }
 }
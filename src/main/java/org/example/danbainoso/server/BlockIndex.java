@@ -0,0 +1,74 @@
+package org.example.danbainoso.server;
+
+import org.example.danbainoso.database.FriendshipDAO;
+import org.example.danbainoso.shared.models.BlockStatus;
+import org.example.danbainoso.utils.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of every block, stored as packed {@code blocker << 32 | blocked} pairs,
+ * so block checks on the message path are a hash probe instead of a query.
+ * Until {@link #warm()} succeeds every lookup falls back to the database.
+ */
+public class BlockIndex {
+    private static final Logger logger = LoggerUtil.getLogger(BlockIndex.class);
+
+    private final FriendshipDAO friendshipDAO;
+    private final Set<Long> blocks = ConcurrentHashMap.newKeySet();
+    private volatile boolean warmed = false;
+
+    public BlockIndex(FriendshipDAO friendshipDAO) {
+        this.friendshipDAO = friendshipDAO;
+    }
+
+    public void warm() throws SQLException {
+        for (int[] block : friendshipDAO.getAllBlocks()) {
+            blocks.add(pack(block[0], block[1]));
+        }
+        warmed = true;
+        logger.info("Block index warmed with {} blocks", blocks.size());
+    }
+
+    public BlockStatus getBlockStatus(int requesterId, int targetId) throws SQLException {
+        if (!warmed) {
+            return friendshipDAO.getBlockStatus(requesterId, targetId);
+        }
+        if (blocks.contains(pack(requesterId, targetId))) {
+            return BlockStatus.BLOCKED_BY_ME;
+        }
+        if (blocks.contains(pack(targetId, requesterId))) {
+            return BlockStatus.BLOCKED_BY_OTHER;
+        }
+        return BlockStatus.NONE;
+    }
+
+    public boolean isBlocked(int userId1, int userId2) throws SQLException {
+        return getBlockStatus(userId1, userId2) != BlockStatus.NONE;
+    }
+
+    /**
+     * A pair has a single friendship row, so a new block replaces one in the other direction.
+     */
+    public void blocked(int blockerId, int blockedId) {
+        blocks.remove(pack(blockedId, blockerId));
+        blocks.add(pack(blockerId, blockedId));
+    }
+
+    public void unblocked(int userId1, int userId2) {
+        blocks.remove(pack(userId1, userId2));
+        blocks.remove(pack(userId2, userId1));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BlockIndex{warmed=%s, blocks=%d}", warmed, blocks.size());
+    }
+
+    private static long pack(int blockerId, int blockedId) {
+        return ((long) blockerId << 32) | (blockedId & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,175 @@
+package org.example.danbainoso.server;
+
+import org.example.danbainoso.shared.VideoClientCallback;
+import org.example.danbainoso.utils.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.rmi.RemoteException;
+import java.rmi.ServerException;
+import java.rmi.UnmarshalException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Sends call notifications to clients in parallel. Each user is pinned to one of a fixed set of single-thread
+ * lanes, so a user's events (ring, join, leave, end) arrive in order while different users are called at once;
+ * ringing a whole group is one round across all lanes instead of a loop of RMI calls on the caller's thread.
+ * Every callback is bounded by the RMI response timeout, and an event still queued behind a slow client when
+ * the fan-out deadline has passed is skipped rather than delivered late.
+ */
+public class CallFanOut {
+    private static final Logger logger = LoggerUtil.getLogger(CallFanOut.class);
+
+    /**
+     * A single callback invocation to run against a client.
+     */
+    @FunctionalInterface
+    public interface CallNotification {
+        void send(VideoClientCallback callback) throws RemoteException;
+    }
+
+    private final IntFunction<VideoClientCallback> clients;
+    private final ObjIntConsumer<VideoClientCallback> onFailure;
+    private final ExecutorService[] lanes;
+    private final long deadlineNanos;
+
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder roundCount = new LongAdder();
+    private final LatencyRecorder roundLatency = new LatencyRecorder(1024);
+
+    /**
+     * @param clients looks up the callback of a user, or null when they have no call client registered
+     * @param onFailure called with the callback and user ID when a callback fails, e.g. to drop the client
+     */
+    public CallFanOut(IntFunction<VideoClientCallback> clients, ObjIntConsumer<VideoClientCallback> onFailure,
+                      int threads, long deadlineMillis) {
+        this.clients = clients;
+        this.onFailure = onFailure;
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, deadlineMillis));
+        this.lanes = new ExecutorService[Math.max(1, threads)];
+        for (int i = 0; i < lanes.length; i++) {
+            String name = "call-fanout-" + (i + 1);
+            lanes[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void send(int userId, CallNotification notification) {
+        fanOut(new int[]{userId}, -1, notification);
+    }
+
+    /**
+     * Send the same notification to several users at once, skipping {@code excludeUserId} (e.g. whoever caused it).
+     */
+    public void fanOut(int[] userIds, int excludeUserId, CallNotification notification) {
+        Round round = new Round(System.nanoTime());
+        for (int userId : userIds) {
+            if (userId == excludeUserId) {
+                continue;
+            }
+            VideoClientCallback callback = clients.apply(userId);
+            if (callback == null) {
+                continue;
+            }
+            round.add();
+            try {
+                lanes[Math.floorMod(userId, lanes.length)].execute(() -> deliver(round, userId, callback, notification));
+            } catch (RejectedExecutionException e) {
+                round.finish();
+            }
+        }
+        round.finish();
+    }
+
+    public void shutdown() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            try {
+                if (!lane.awaitTermination(2, TimeUnit.SECONDS)) {
+                    lane.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                lane.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        logger.info("Call fan-out stopped: {}", this);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CallFanOut{lanes=%d, sent=%d, failed=%d, expired=%d, rounds=%d, round[p50=%.2fms, p99=%.2fms]}",
+                lanes.length, sentCount.sum(), failedCount.sum(), expiredCount.sum(), roundCount.sum(),
+                roundLatency.percentileMillis(50), roundLatency.percentileMillis(99));
+    }
+
+    private void deliver(Round round, int userId, VideoClientCallback callback, CallNotification notification) {
+        try {
+            if (System.nanoTime() - round.startedAtNanos > deadlineNanos) {
+                expiredCount.increment();
+                logger.debug("Skipped late call notification for user {}", userId);
+                return;
+            }
+            notification.send(callback);
+            sentCount.increment();
+        } catch (ServerException e) {
+            if (e.getCause() instanceof UnmarshalException) {
+                // Client was built before this callback existed; it just misses the event
+                logger.debug("Call client of user {} does not support this notification", userId);
+            } else {
+                failed(userId, callback, e);
+            }
+        } catch (RemoteException e) {
+            failed(userId, callback, e);
+        } catch (RuntimeException e) {
+            failedCount.increment();
+            logger.error("Unexpected error notifying call client of user {}", userId, e);
+        } finally {
+            round.finish();
+        }
+    }
+
+    private void failed(int userId, VideoClientCallback callback, RemoteException e) {
+        failedCount.increment();
+        logger.error("Failed to notify call client of user {}", userId, e);
+        onFailure.accept(callback, userId);
+    }
+
+    /**
+     * Counts outstanding deliveries of one fan-out; starts at one so it cannot complete while still being queued.
+     */
+    private final class Round {
+        private final long startedAtNanos;
+        private final AtomicInteger outstanding = new AtomicInteger(1);
+        private volatile boolean hasRecipients = false;
+
+        private Round(long startedAtNanos) {
+            this.startedAtNanos = startedAtNanos;
+        }
+
+        private void add() {
+            hasRecipients = true;
+            outstanding.incrementAndGet();
+        }
+
+        private void finish() {
+            if (outstanding.decrementAndGet() == 0 && hasRecipients) {
+                roundCount.increment();
+                roundLatency.record(System.nanoTime() - startedAtNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.example.danbainoso.server;
+
+import org.example.danbainoso.database.CallDAO;
+import org.example.danbainoso.shared.models.CallRequest;
+import org.example.danbainoso.utils.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes call state changes to the call history off the signalling path. Callers only copy the call into a
+ * bounded queue and never wait on the database; a single writer thread upserts whatever arrived within the
+ * linger window as one batch. When the queue is full the change is dropped and counted rather than blocking.
+ */
+public class CallHistoryWriter {
+    private static final Logger logger = LoggerUtil.getLogger(CallHistoryWriter.class);
+
+    private final CallDAO callDAO;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final ArrayBlockingQueue<CallRequest> queue;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LatencyRecorder commitLatency = new LatencyRecorder(1024);
+
+    public CallHistoryWriter(CallDAO callDAO, int maxBatchSize, long lingerMillis, int queueCapacity) {
+        this.callDAO = callDAO;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.writerThread = new Thread(this::runWriter, "call-history-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queue the call's current state. Never blocks; returns false if the change was dropped.
+     */
+    public boolean record(CallRequest call) {
+        // Copy now: the live call keeps changing while the change waits in the queue
+        if (running && queue.offer(snapshot(call))) {
+            return true;
+        }
+        droppedCount.increment();
+        return false;
+    }
+
+    /**
+     * Stop accepting changes, write everything already queued and wait for the writer to finish.
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Call history writer stopped: {}", this);
+    }
+
+    @Override
+    public String toString() {
+        long batches = batchCount.sum();
+        long written = writtenCount.sum();
+        return String.format("CallHistoryWriter{written=%d, failed=%d, dropped=%d, queued=%d, batches=%d, avgBatchSize=%.2f, commit[%s]}",
+                written, failedCount.sum(), droppedCount.sum(), queue.size(), batches,
+                batches == 0 ? 0.0 : written / (double) batches, commitLatency);
+    }
+
+    private void runWriter() {
+        List<CallRequest> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                CallRequest first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatchSize && running) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    CallRequest next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                failedCount.add(batch.size());
+                logger.error("Unexpected error in call history writer", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<CallRequest> batch) {
+        long start = System.nanoTime();
+        try {
+            callDAO.saveCalls(batch);
+            commitLatency.record(System.nanoTime() - start);
+            batchCount.increment();
+            writtenCount.add(batch.size());
+        } catch (SQLException e) {
+            if (batch.size() == 1) {
+                failedCount.increment();
+                logger.error("Failed to save call {}", batch.get(0).getCallId(), e);
+                return;
+            }
+            // The whole batch was rolled back; write one by one, in order, so a bad row only loses itself
+            logger.warn("Call history batch of {} failed, retrying individually: {}", batch.size(), e.getMessage());
+            for (CallRequest call : batch) {
+                try {
+                    callDAO.saveCall(call);
+                    batchCount.increment();
+                    writtenCount.increment();
+                } catch (SQLException single) {
+                    failedCount.increment();
+                    logger.error("Failed to save call {}", call.getCallId(), single);
+                }
+            }
+        }
+    }
+
+    private static CallRequest snapshot(CallRequest call) {
+        CallRequest copy = new CallRequest(call.getCallId(), call.getCallerId(), call.getReceiverId(), call.getCallType());
+        copy.setGroupId(call.getGroupId());
+        copy.setStatus(call.getStatus());
+        copy.setCreatedAt(call.getCreatedAt());
+        copy.setAnsweredAt(call.getAnsweredAt());
+        copy.setEndedAt(call.getEndedAt());
+        return copy;
+    }
+}
@@ -0,0 +1,242 @@
+package org.example.danbainoso.server;
+
+import org.example.danbainoso.shared.models.CallRequest;
+import org.example.danbainoso.shared.models.CallRequest.CallStatus;
+import org.example.danbainoso.utils.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Owns the calls the video service knows about and moves them through their states on one scheduler thread:
+ * a ringing call that nobody answers becomes MISSED after the ring timeout, and a finished call (REJECTED, ENDED
+ * or MISSED) stays readable for a short linger before it is dropped.
+ * Transitions are made under the call's lock, so an answer racing the ring timeout has exactly one winner.
+ * Every new call and every state it moves to is reported to a state listener, which must not block.
+ */
+public class CallLifecycleManager {
+    private static final Logger logger = LoggerUtil.getLogger(CallLifecycleManager.class);
+
+    private final long ringTimeoutMillis;
+    private final long lingerMillis;
+    private final Consumer<CallRequest> onExpired;
+    private final Consumer<CallRequest> onStateChange;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private final ConcurrentHashMap<String, CallRequest> calls = new ConcurrentHashMap<>();
+    // user ID -> IDs of the calls they take part in, for cleanup when their client goes away
+    private final ConcurrentHashMap<Integer, Set<String>> callsByUser = new ConcurrentHashMap<>();
+    // Pending ring timeout or linger removal of each call
+    private final ConcurrentHashMap<String, ScheduledFuture<?>> timers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger ringing = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+
+    /**
+     * @param onExpired called on the scheduler thread for each call that rang out, to notify its participants
+     * @param onStateChange called under the call's lock with each new call and each transition, e.g. to record history
+     */
+    public CallLifecycleManager(long ringTimeoutMillis, long lingerMillis,
+                                Consumer<CallRequest> onExpired, Consumer<CallRequest> onStateChange) {
+        this.ringTimeoutMillis = Math.max(1, ringTimeoutMillis);
+        this.lingerMillis = Math.max(0, lingerMillis);
+        this.onExpired = onExpired;
+        this.onStateChange = onStateChange;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "call-lifecycle");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Answered calls cancel their ring timeout; do not keep the cancelled tasks queued until they fire
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Track a new call as ringing and start its ring timeout.
+     */
+    public void ringing(CallRequest call) {
+        synchronized (call) {
+            call.setStatus(CallStatus.PENDING);
+            calls.put(call.getCallId(), call);
+            index(call.getCallerId(), call.getCallId());
+            index(call.getReceiverId(), call.getCallId());
+            ringing.incrementAndGet();
+            stateChanged(call);
+        }
+        schedule(call.getCallId(), () -> expire(call.getCallId()), ringTimeoutMillis);
+    }
+
+    public CallRequest get(String callId) {
+        return calls.get(callId);
+    }
+
+    /**
+     * Move a call to a new state if that is allowed from its current one: PENDING can become anything,
+     * ACCEPTED can only become ENDED, and finished calls do not change.
+     *
+     * @return false when the call is unknown or the transition is not allowed
+     */
+    public boolean transition(String callId, CallStatus target) {
+        CallRequest call = calls.get(callId);
+        if (call == null) {
+            return false;
+        }
+        synchronized (call) {
+            CallStatus current = call.getStatus();
+            boolean allowed = current == CallStatus.PENDING
+                    ? target != CallStatus.PENDING
+                    : current == CallStatus.ACCEPTED && target == CallStatus.ENDED;
+            if (!allowed) {
+                return false;
+            }
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            call.setStatus(target);
+            if (current == CallStatus.PENDING) {
+                ringing.decrementAndGet();
+            } else {
+                active.decrementAndGet();
+            }
+            if (target == CallStatus.ACCEPTED) {
+                call.setAnsweredAt(now);
+                active.incrementAndGet();
+                cancelTimer(callId);
+            } else {
+                call.setEndedAt(now);
+                // Keep the final state readable for late getCallRequest calls, then forget the call
+                schedule(callId, () -> remove(callId), lingerMillis);
+            }
+            stateChanged(call);
+        }
+        return true;
+    }
+
+    /**
+     * Finish every one-to-one call of a user whose client went away: their ringing incoming calls become MISSED,
+     * everything else they take part in ENDED. Group calls go on without them and are left to the caller.
+     *
+     * @return the calls that changed, so the other participants can be told
+     */
+    public List<CallRequest> userGone(int userId) {
+        Set<String> callIds = callsByUser.get(userId);
+        if (callIds == null) {
+            return Collections.emptyList();
+        }
+        List<CallRequest> finished = new ArrayList<>();
+        for (String callId : new ArrayList<>(callIds)) {
+            CallRequest call = calls.get(callId);
+            if (call == null || call.isGroupCall()) {
+                continue;
+            }
+            CallStatus target = call.getStatus() == CallStatus.PENDING && call.getReceiverId() == userId
+                    ? CallStatus.MISSED
+                    : CallStatus.ENDED;
+            if (transition(callId, target)) {
+                abandoned.increment();
+                finished.add(call);
+            }
+        }
+        return finished;
+    }
+
+    /**
+     * Run a task on the lifecycle thread, e.g. cleanup that was noticed while notifying someone else.
+     */
+    public void execute(Runnable task) {
+        if (!scheduler.isShutdown()) {
+            scheduler.execute(task);
+        }
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public int getRingingCount() {
+        return ringing.get();
+    }
+
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        logger.info("Call lifecycle stopped: {}", this);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CallLifecycleManager{tracked=%d, ringing=%d, active=%d, expired=%d, abandoned=%d}",
+                calls.size(), ringing.get(), active.get(), expired.sum(), abandoned.sum());
+    }
+
+    private void expire(String callId) {
+        if (transition(callId, CallStatus.MISSED)) {
+            expired.increment();
+            logger.info("Call {} was not answered and is missed", callId);
+            try {
+                onExpired.accept(calls.get(callId));
+            } catch (RuntimeException e) {
+                logger.error("Failed to handle missed call {}", callId, e);
+            }
+        }
+    }
+
+    private void stateChanged(CallRequest call) {
+        try {
+            onStateChange.accept(call);
+        } catch (RuntimeException e) {
+            logger.error("Failed to report state {} of call {}", call.getStatus(), call.getCallId(), e);
+        }
+    }
+
+    private void remove(String callId) {
+        timers.remove(callId);
+        CallRequest call = calls.remove(callId);
+        if (call != null) {
+            unindex(call.getCallerId(), callId);
+            unindex(call.getReceiverId(), callId);
+        }
+    }
+
+    private void schedule(String callId, Runnable task, long delayMillis) {
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        ScheduledFuture<?> previous = timers.put(callId, scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS));
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    private void cancelTimer(String callId) {
+        ScheduledFuture<?> timer = timers.remove(callId);
+        if (timer != null) {
+            timer.cancel(false);
+        }
+    }
+
+    private void index(int userId, String callId) {
+        callsByUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(callId);
+    }
+
+    private void unindex(int userId, String callId) {
+        callsByUser.computeIfPresent(userId, (id, callIds) -> {
+            callIds.remove(callId);
+            return callIds.isEmpty() ? null : callIds;
+        });
+    }
+}
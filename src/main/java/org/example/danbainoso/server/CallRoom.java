@@ -0,0 +1,116 @@
+package org.example.danbainoso.server;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Roster of a group call. The invited members are fixed when the call starts and kept as a sorted int array;
+ * who is currently in the call is one bit per member, so a large group costs a few longs instead of a set.
+ * Joins and leaves are made under the room's lock by the video service; the roster can be read without it.
+ */
+public class CallRoom {
+    private final String callId;
+    private final int groupId;
+    private final int[] members;
+    private final AtomicLongArray joined;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param members sorted member IDs of the group; the array is kept, not copied
+     */
+    public CallRoom(String callId, int groupId, int[] members) {
+        this.callId = callId;
+        this.groupId = groupId;
+        this.members = members;
+        this.joined = new AtomicLongArray((members.length + 63) >>> 6);
+    }
+
+    public String getCallId() {
+        return callId;
+    }
+
+    public int getGroupId() {
+        return groupId;
+    }
+
+    /**
+     * Everyone invited to the call. The returned array must not be modified.
+     */
+    public int[] getMembers() {
+        return members;
+    }
+
+    public boolean isMember(int userId) {
+        return Arrays.binarySearch(members, userId) >= 0;
+    }
+
+    /**
+     * @return false when the user is not invited or already in the call
+     */
+    public boolean join(int userId) {
+        int index = Arrays.binarySearch(members, userId);
+        if (index < 0) {
+            return false;
+        }
+        long bit = 1L << index;
+        long word = joined.getAndAccumulate(index >>> 6, bit, (current, mask) -> current | mask);
+        if ((word & bit) != 0) {
+            return false;
+        }
+        size.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return false when the user was not in the call
+     */
+    public boolean leave(int userId) {
+        int index = Arrays.binarySearch(members, userId);
+        if (index < 0) {
+            return false;
+        }
+        long bit = 1L << index;
+        long word = joined.getAndAccumulate(index >>> 6, ~bit, (current, mask) -> current & mask);
+        if ((word & bit) == 0) {
+            return false;
+        }
+        size.decrementAndGet();
+        return true;
+    }
+
+    public boolean contains(int userId) {
+        int index = Arrays.binarySearch(members, userId);
+        return index >= 0 && (joined.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Who is in the call right now, in member order.
+     */
+    public int[] getParticipants() {
+        int[] participants = new int[Math.min(size.get(), members.length)];
+        int count = 0;
+        for (int word = 0; word < joined.length(); word++) {
+            long bits = joined.get(word);
+            while (bits != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (count == participants.length) {
+                    participants = Arrays.copyOf(participants, count + 8);
+                }
+                participants[count++] = members[index];
+            }
+        }
+        return count == participants.length ? participants : Arrays.copyOf(participants, count);
+    }
+
+    @Override
+    public String toString() {
+        return "CallRoom{callId=" + callId + ", groupId=" + groupId + ", members=" + members.length +
+                ", participants=" + size.get() + '}';
+    }
+}
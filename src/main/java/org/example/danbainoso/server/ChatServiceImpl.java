@@ -3,14 +3,22 @@ package org.example.danbainoso.server;
 import org.example.danbainoso.database.FriendshipDAO;
 import org.example.danbainoso.database.GroupDAO;
 import org.example.danbainoso.database.MessageDAO;
+import org.example.danbainoso.database.UnreadCounterDAO;
 import org.example.danbainoso.database.UserDAO;
 import org.example.danbainoso.shared.ChatClientCallback;
 import org.example.danbainoso.shared.ChatService;
 import org.example.danbainoso.shared.models.BlockStatus;
+import org.example.danbainoso.shared.models.ChatEvent;
 import org.example.danbainoso.shared.models.Group;
+import org.example.danbainoso.shared.models.GroupReadCursor;
 import org.example.danbainoso.shared.models.Message;
+import org.example.danbainoso.shared.models.MessageSearchScope;
+import org.example.danbainoso.shared.models.UnreadCounts;
 import org.example.danbainoso.shared.models.User;
+import org.example.danbainoso.shared.models.UserSearchPage;
+import org.example.danbainoso.shared.models.UserSummary;
 import org.example.danbainoso.shared.models.Friendship;
+import org.example.danbainoso.utils.Config;
 import org.example.danbainoso.utils.LoggerUtil;
 import org.slf4j.Logger;
 
@@ -20,16 +28,25 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class ChatServiceImpl extends UnicastRemoteObject implements ChatService {
     private static final Logger logger = LoggerUtil.getLogger(ChatServiceImpl.class);
+    private static final int MAX_SEARCH_RESULTS = 50;
     
     private final UserDAO userDAO;
     private final MessageDAO messageDAO;
     private final GroupDAO groupDAO;
     private final FriendshipDAO friendshipDAO;
-    private final ConcurrentHashMap<String, ChatClientCallback> clients;
+    private final DeliveryEngine deliveryEngine;
+    private final GroupMembershipIndex membershipIndex;
+    private final FriendGraph friendGraph;
+    private final BlockIndex blockIndex;
+    private final UserProfileCache userCache;
+    private final UserSearchIndex searchIndex;
+    private final PresenceNotifier presenceNotifier;
+    private final MessageWritePipeline messageWriter;
+    private final ConversationCache messageCache;
+    private final UnreadCounterStore unreadCounters;
     
     public ChatServiceImpl() throws RemoteException {
         super();
@@ -37,7 +54,31 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
         this.messageDAO = new MessageDAO();
         this.groupDAO = new GroupDAO();
         this.friendshipDAO = new FriendshipDAO();
-        this.clients = new ConcurrentHashMap<>();
+        this.membershipIndex = new GroupMembershipIndex(groupDAO);
+        this.userCache = new UserProfileCache(userDAO, Config.getUserCacheSize(), Config.getUserCacheTtlMillis());
+        this.deliveryEngine = new DeliveryEngine(
+                Config.getDeliveryQueueCapacity(),
+                DeliveryEngine.OverflowPolicy.fromString(Config.getDeliveryOverflowPolicy(), DeliveryEngine.OverflowPolicy.DROP_OLDEST),
+                Config.getDeliveryBatchSize(),
+                Config.getDeliveryBatchLingerMillis(),
+                Config.getDeliveryThreads());
+        this.friendGraph = new FriendGraph(friendshipDAO);
+        this.blockIndex = new BlockIndex(friendshipDAO);
+        try {
+            blockIndex.warm();
+        } catch (SQLException e) {
+            logger.error("Failed to warm block index, block checks will query the database", e);
+        }
+        this.searchIndex = new UserSearchIndex(userDAO, friendGraph);
+        try {
+            searchIndex.warm();
+        } catch (SQLException e) {
+            logger.error("Failed to warm user search index, searches will query the database", e);
+        }
+        this.presenceNotifier = new PresenceNotifier(friendGraph, groupDAO, deliveryEngine, Config.getPresenceCoalesceMillis());
+        this.messageWriter = new MessageWritePipeline(messageDAO, Config.getMessageBatchSize(), Config.getMessageBatchLingerMillis());
+        this.unreadCounters = new UnreadCounterStore(new UnreadCounterDAO(), Config.getUnreadFlushMillis());
+        this.messageCache = new ConversationCache(Config.getMessageCacheWindowSize(), Config.getMessageCacheMaxMegabytes() * 1024L * 1024L);
     }
     
     // User operations
@@ -47,6 +88,8 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
             User user = userDAO.authenticate(username, password);
             if (user != null) {
                 userDAO.updateUserStatus(user.getUserId(), User.UserStatus.ONLINE);
+                userCache.invalidate(user.getUserId());
+                searchIndex.statusChanged(user.getUserId(), User.UserStatus.ONLINE);
                 logger.info("User logged in: {}", username);
             }
             return user;
@@ -74,6 +117,8 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
             }
             
             userDAO.createUser(user);
+            userCache.invalidate(user.getUserId());
+            searchIndex.add(UserSummary.of(user));
             logger.info("User registered: {}", user.getUsername());
             return true;
         } catch (SQLException e) {
@@ -91,9 +136,14 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
         try {
             boolean updated = userDAO.updateUserStatus(userId, status);
             if (updated) {
-                // Notify all clients about status change
+                userCache.invalidate(userId);
+                searchIndex.statusChanged(userId, status);
+                // Notify friends, group co-members and viewers about status change
                 notifyUserStatusChanged(userId, status);
             }
+            if (status == User.UserStatus.OFFLINE) {
+                unreadCounters.release(userId);
+            }
             return updated;
         } catch (SQLException e) {
             logger.error("Failed to update user status: {}", userId, e);
@@ -102,6 +152,7 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
     }
     
     @Override
+    @Deprecated
     public List<User> searchUsers(String keyword) throws RemoteException {
         try {
             return userDAO.searchUsers(keyword);
@@ -111,22 +162,63 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
         }
     }
     
+    @Override
+    @Deprecated
+    public List<UserSummary> searchUserSummaries(String keyword) throws RemoteException {
+        try {
+            return userDAO.searchUserSummaries(keyword);
+        } catch (SQLException e) {
+            logger.error("User search failed: {}", keyword, e);
+            throw new RemoteException("Search failed: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public UserSearchPage searchUsers(int requesterId, String query, int cursor, int limit) throws RemoteException {
+        try {
+            return searchIndex.search(requesterId, query, cursor, limit);
+        } catch (SQLException e) {
+            logger.error("User search failed: {}", query, e);
+            throw new RemoteException("Search failed: " + e.getMessage(), e);
+        }
+    }
+    
     @Override
     public User getUserById(int userId) throws RemoteException {
         try {
-            return userDAO.getUserById(userId);
+            return userCache.getUser(userId);
         } catch (SQLException e) {
             logger.error("Failed to get user: {}", userId, e);
             throw new RemoteException("Failed to get user: " + e.getMessage(), e);
         }
     }
     
+    @Override
+    public List<UserSummary> getUsersByIds(List<Integer> userIds) throws RemoteException {
+        try {
+            // Served from the profile cache; only the summary fields leave the server
+            List<UserSummary> summaries = new ArrayList<>();
+            for (User user : userCache.getUsers(userIds).values()) {
+                summaries.add(UserSummary.of(user));
+            }
+            return summaries;
+        } catch (SQLException e) {
+            logger.error("Failed to get users by IDs", e);
+            throw new RemoteException("Failed to get user: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public void setViewedUser(int viewerId, Integer viewedUserId) throws RemoteException {
+        presenceNotifier.setViewedUser(viewerId, viewedUserId);
+    }
+    
     // Message operations
     @Override
     public Message sendMessage(Message message) throws RemoteException {
         try {
             if (message.getReceiverId() != null) {
-                BlockStatus status = friendshipDAO.getBlockStatus(message.getSenderId(), message.getReceiverId());
+                BlockStatus status = blockIndex.getBlockStatus(message.getSenderId(), message.getReceiverId());
                 if (status == BlockStatus.BLOCKED_BY_OTHER) {
                     logger.warn("Sender {} blocked by receiver {}", message.getSenderId(), message.getReceiverId());
                     throw new RemoteException("Bạn đã bị chặn bởi người này.");
@@ -136,8 +228,11 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
                 }
             }
 
-            Message savedMessage = messageDAO.createMessage(message);
+            // Group-committed with other concurrent sends; returns once the row is durable
+            Message savedMessage = messageWriter.write(message);
             enrichSenderMetadata(savedMessage);
+            messageCache.messageAdded(savedMessage);
+            countUnread(savedMessage);
             
             // Notify recipients
             if (message.isGroupMessage()) {
@@ -162,10 +257,13 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
     @Override
     public List<Message> getPrivateMessages(int userId1, int userId2, int limit, int offset) throws RemoteException {
         try {
-            if (friendshipDAO.getBlockStatus(userId1, userId2) != BlockStatus.NONE) {
+            if (blockIndex.isBlocked(userId1, userId2)) {
                 logger.debug("Hide messages between {} and {} due to block", userId1, userId2);
                 return Collections.emptyList();
             }
+            if (offset == 0) {
+                return loadPrivateMessages(userId1, userId2, 0, limit);
+            }
             return messageDAO.getPrivateMessages(userId1, userId2, limit, offset);
         } catch (SQLException e) {
             logger.error("Failed to get private messages", e);
@@ -181,6 +279,9 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
     @Override
     public List<Message> getGroupMessages(int groupId, int limit, int offset) throws RemoteException {
         try {
+            if (offset == 0) {
+                return loadGroupMessages(groupId, 0, limit);
+            }
             return messageDAO.getGroupMessages(groupId, limit, offset);
         } catch (SQLException e) {
             logger.error("Failed to get group messages", e);
@@ -188,11 +289,83 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
         }
     }
     
+    @Override
+    public List<Message> getPrivateMessagesBefore(int userId1, int userId2, int beforeMessageId, int limit) throws RemoteException {
+        try {
+            if (blockIndex.isBlocked(userId1, userId2)) {
+                logger.debug("Hide messages between {} and {} due to block", userId1, userId2);
+                return Collections.emptyList();
+            }
+            return loadPrivateMessages(userId1, userId2, beforeMessageId, limit);
+        } catch (SQLException e) {
+            logger.error("Failed to get private messages", e);
+            throw new RemoteException("Failed to get messages: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public List<Message> getGroupMessagesBefore(int groupId, int beforeMessageId, int limit) throws RemoteException {
+        try {
+            return loadGroupMessages(groupId, beforeMessageId, limit);
+        } catch (SQLException e) {
+            logger.error("Failed to get group messages", e);
+            throw new RemoteException("Failed to get messages: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public List<Message> getPrivateMessagesAfter(int userId1, int userId2, int afterMessageId, int limit) throws RemoteException {
+        try {
+            if (blockIndex.isBlocked(userId1, userId2)) {
+                logger.debug("Hide messages between {} and {} due to block", userId1, userId2);
+                return Collections.emptyList();
+            }
+            return messageDAO.getPrivateMessagesAfter(userId1, userId2, afterMessageId, limit);
+        } catch (SQLException e) {
+            logger.error("Failed to get new private messages", e);
+            throw new RemoteException("Failed to get messages: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public List<Message> getGroupMessagesAfter(int groupId, int afterMessageId, int limit) throws RemoteException {
+        try {
+            return messageDAO.getGroupMessagesAfter(groupId, afterMessageId, limit);
+        } catch (SQLException e) {
+            logger.error("Failed to get new group messages", e);
+            throw new RemoteException("Failed to get messages: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public List<Message> searchMessages(int userId, String query, MessageSearchScope scope, int beforeMessageId, int limit) throws RemoteException {
+        MessageSearchScope searchScope = scope != null ? scope : MessageSearchScope.all();
+        try {
+            if (searchScope.getType() == MessageSearchScope.Type.PRIVATE
+                    && blockIndex.isBlocked(userId, searchScope.getTargetId())) {
+                logger.debug("Hide messages between {} and {} due to block", userId, searchScope.getTargetId());
+                return Collections.emptyList();
+            }
+            if (searchScope.getType() == MessageSearchScope.Type.GROUP
+                    && !membershipIndex.isMember(searchScope.getTargetId(), userId)) {
+                logger.warn("User {} searched group {} without being a member", userId, searchScope.getTargetId());
+                return Collections.emptyList();
+            }
+            int pageSize = Math.max(1, Math.min(limit, MAX_SEARCH_RESULTS));
+            return messageDAO.searchMessages(userId, query, searchScope, beforeMessageId, pageSize);
+        } catch (SQLException e) {
+            logger.error("Message search failed for user {}: {}", userId, query, e);
+            throw new RemoteException("Search failed: " + e.getMessage(), e);
+        }
+    }
+    
     @Override
     public boolean markMessagesAsRead(int receiverId, int senderId) throws RemoteException {
         try {
+            unreadCounters.resetUser(receiverId, senderId);
             boolean updated = messageDAO.markMessagesAsRead(receiverId, senderId) > 0;
             if (updated) {
+                messageCache.messagesRead(receiverId, senderId);
                 notifyMessagesRead(receiverId, senderId);
             }
             return updated;
@@ -205,13 +378,56 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
     @Override
     public int getUnreadCount(int userId) throws RemoteException {
         try {
-            return messageDAO.getUnreadCount(userId);
+            return unreadCounters.getTotalUserCount(userId);
         } catch (SQLException e) {
             logger.error("Failed to get unread count", e);
             throw new RemoteException("Failed to get unread count: " + e.getMessage(), e);
         }
     }
     
+    @Override
+    public UnreadCounts getUnreadCounts(int userId) throws RemoteException {
+        try {
+            UnreadCounts counts = unreadCounters.getCounts(userId);
+            // Group counts come from the same read cursors as getGroupUnreadCount, so the two always agree
+            counts.getGroupCounts().putAll(messageDAO.getGroupUnreadCounts(userId));
+            return counts;
+        } catch (SQLException e) {
+            logger.error("Failed to get unread counts", e);
+            throw new RemoteException("Failed to get unread count: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public boolean markGroupMessagesAsRead(int userId, int groupId) throws RemoteException {
+        try {
+            return messageDAO.markGroupMessagesAsRead(userId, groupId) > 0;
+        } catch (SQLException e) {
+            logger.error("Failed to mark group {} as read for user {}", groupId, userId, e);
+            throw new RemoteException("Failed to mark messages: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public int getGroupUnreadCount(int userId, int groupId) throws RemoteException {
+        try {
+            return messageDAO.getGroupUnreadCount(userId, groupId);
+        } catch (SQLException e) {
+            logger.error("Failed to get unread count of group {} for user {}", groupId, userId, e);
+            throw new RemoteException("Failed to get unread count: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public List<GroupReadCursor> getGroupReadCursors(int groupId) throws RemoteException {
+        try {
+            return messageDAO.getGroupReadCursors(groupId);
+        } catch (SQLException e) {
+            logger.error("Failed to get read cursors of group {}", groupId, e);
+            throw new RemoteException("Failed to get read cursors: " + e.getMessage(), e);
+        }
+    }
+    
     @Override
     public boolean editMessage(int messageId, int editorUserId, String newContent) throws RemoteException {
         try {
@@ -222,6 +438,7 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
             boolean updated = messageDAO.updateMessage(messageId, newContent);
             if (updated) {
                 Message updatedMsg = messageDAO.getMessageById(messageId);
+                messageCache.messageReplaced(updatedMsg);
                 notifyMessageUpdated(updatedMsg);
             }
             return updated;
@@ -240,6 +457,8 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
             }
             boolean deleted = messageDAO.softDeleteMessage(messageId);
             if (deleted) {
+                msg.setDeleted(true);
+                messageCache.messageReplaced(msg);
                 notifyMessageDeleted(messageId, msg);
             }
             return deleted;
@@ -274,7 +493,14 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
     @Override
     public boolean acceptFriendRequest(int friendshipId) throws RemoteException {
         try {
-            return friendshipDAO.acceptFriendRequest(friendshipId);
+            boolean accepted = friendshipDAO.acceptFriendRequest(friendshipId);
+            if (accepted) {
+                Friendship friendship = friendshipDAO.getFriendshipById(friendshipId);
+                if (friendship != null) {
+                    friendshipChanged(friendship.getUser1Id(), friendship.getUser2Id());
+                }
+            }
+            return accepted;
         } catch (SQLException e) {
             logger.error("Failed to accept friend request {}", friendshipId, e);
             throw new RemoteException("Failed to accept friend request: " + e.getMessage(), e);
@@ -294,7 +520,11 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
     @Override
     public boolean removeFriend(int userId1, int userId2) throws RemoteException {
         try {
-            return friendshipDAO.removeFriend(userId1, userId2);
+            boolean removed = friendshipDAO.removeFriend(userId1, userId2);
+            if (removed) {
+                friendshipChanged(userId1, userId2);
+            }
+            return removed;
         } catch (SQLException e) {
             logger.error("Failed to remove friendship between {} and {}", userId1, userId2, e);
             throw new RemoteException("Failed to remove friend: " + e.getMessage(), e);
@@ -304,7 +534,12 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
     @Override
     public boolean blockUser(int userId1, int userId2) throws RemoteException {
         try {
-            return friendshipDAO.blockUser(userId1, userId2);
+            boolean blocked = friendshipDAO.blockUser(userId1, userId2);
+            if (blocked) {
+                blockIndex.blocked(userId1, userId2);
+                friendshipChanged(userId1, userId2);
+            }
+            return blocked;
         } catch (SQLException e) {
             logger.error("Failed to block between {} and {}", userId1, userId2, e);
             throw new RemoteException("Failed to block user: " + e.getMessage(), e);
@@ -314,7 +549,12 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
     @Override
     public boolean unblockUser(int userId1, int userId2) throws RemoteException {
         try {
-            return friendshipDAO.unblockUser(userId1, userId2);
+            boolean unblocked = friendshipDAO.unblockUser(userId1, userId2);
+            if (unblocked) {
+                blockIndex.unblocked(userId1, userId2);
+                friendshipChanged(userId1, userId2);
+            }
+            return unblocked;
         } catch (SQLException e) {
             logger.error("Failed to unblock between {} and {}", userId1, userId2, e);
             throw new RemoteException("Failed to unblock user: " + e.getMessage(), e);
@@ -324,7 +564,7 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
     @Override
     public boolean isBlocked(int userId1, int userId2) throws RemoteException {
         try {
-            return friendshipDAO.isBlocked(userId1, userId2);
+            return blockIndex.isBlocked(userId1, userId2);
         } catch (SQLException e) {
             logger.error("Failed to verify block status between {} and {}", userId1, userId2, e);
             throw new RemoteException("Failed to check block status: " + e.getMessage(), e);
@@ -334,7 +574,7 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
     @Override
     public BlockStatus getBlockStatus(int userId1, int userId2) throws RemoteException {
         try {
-            return friendshipDAO.getBlockStatus(userId1, userId2);
+            return blockIndex.getBlockStatus(userId1, userId2);
         } catch (SQLException e) {
             logger.error("Failed to fetch block status between {} and {}", userId1, userId2, e);
             throw new RemoteException("Failed to get block status: " + e.getMessage(), e);
@@ -352,22 +592,20 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
     }
     
     @Override
+    @Deprecated
     public List<User> getFriends(int userId) throws RemoteException {
         try {
-            List<Friendship> friendships = friendshipDAO.getFriends(userId);
-            List<User> friends = new ArrayList<>();
-            for (Friendship friendship : friendships) {
-                int friendId = friendship.getUser1Id() == userId ? friendship.getUser2Id() : friendship.getUser1Id();
-                try {
-                    User friend = userDAO.getUserById(friendId);
-                    if (friend != null) {
-                        friends.add(friend);
-                    }
-                } catch (SQLException e) {
-                    logger.error("Failed to load friend user {}", friendId, e);
-                }
-            }
-            return friends;
+            return friendshipDAO.getFriendUsers(userId);
+        } catch (SQLException e) {
+            logger.error("Failed to get friends for {}", userId, e);
+            throw new RemoteException("Failed to get friends: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public List<UserSummary> getFriendSummaries(int userId) throws RemoteException {
+        try {
+            return friendshipDAO.getFriendSummaries(userId);
         } catch (SQLException e) {
             logger.error("Failed to get friends for {}", userId, e);
             throw new RemoteException("Failed to get friends: " + e.getMessage(), e);
@@ -456,8 +694,10 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
             }
             boolean added = groupDAO.addMember(groupId, userId, Group.GroupRole.MEMBER.name());
             if (added) {
+                membershipIndex.memberAdded(groupId, userId);
+                groupMembershipChanged(groupId, userId);
                 try {
-                    User user = userDAO.getUserById(userId);
+                    User user = userCache.getUser(userId);
                     notifyUserJoinedGroup(groupId, user);
                 } catch (SQLException e) {
                     logger.error("Failed to get user for notification", e);
@@ -482,6 +722,8 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
             }
             boolean removed = groupDAO.removeMember(groupId, userId);
             if (removed) {
+                membershipIndex.memberRemoved(groupId, userId);
+                groupMembershipChanged(groupId, userId);
                 if (requesterId == userId) {
                     logger.info("User {} left group {}", userId, groupId);
                 } else {
@@ -509,8 +751,14 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
                 logger.warn("Group {} delete blocked because {} members remain", groupId, memberCount);
                 return false;
             }
+            int[] remainingMembers = membershipIndex.getMemberIds(groupId);
             boolean deleted = groupDAO.deleteGroup(groupId);
             if (deleted) {
+                membershipIndex.groupDeleted(groupId);
+                messageCache.invalidate(ConversationCache.groupKey(groupId));
+                for (int memberId : remainingMembers) {
+                    presenceNotifier.invalidate(memberId);
+                }
                 logger.info("Group {} deleted by {}", groupId, requesterId);
             }
             return deleted;
@@ -521,6 +769,7 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
     }
     
     @Override
+    @Deprecated
     public List<User> getGroupMembers(int groupId) throws RemoteException {
         try {
             return groupDAO.getGroupMembers(groupId);
@@ -530,92 +779,131 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
         }
     }
     
+    @Override
+    public List<UserSummary> getGroupMemberSummaries(int groupId) throws RemoteException {
+        try {
+            return groupDAO.getGroupMemberSummaries(groupId);
+        } catch (SQLException e) {
+            logger.error("Failed to get group members", e);
+            throw new RemoteException("Failed to get members: " + e.getMessage(), e);
+        }
+    }
+    
     // Callback registration
     @Override
     public void registerClient(String clientId, ChatClientCallback callback) throws RemoteException {
-        clients.put(clientId, callback);
+        deliveryEngine.register(clientId, callback);
         logger.info("Client registered: {}", clientId);
     }
     
     @Override
     public void unregisterClient(String clientId) throws RemoteException {
-        clients.remove(clientId);
+        deliveryEngine.unregister(clientId);
         logger.info("Client unregistered: {}", clientId);
     }
     
+    public GroupMembershipIndex getMembershipIndex() {
+        return membershipIndex;
+    }
+    
+    public DeliveryEngine.Stats getDeliveryStats() {
+        return deliveryEngine.snapshot();
+    }
+    
+    public void shutdown() {
+        logger.info("Group membership index: {}", membershipIndex);
+        logger.info("Friend graph: {}", friendGraph);
+        logger.info("User profile cache: {}", userCache);
+        logger.info("User search index: {}", searchIndex);
+        logger.info("Conversation cache: {}", messageCache);
+        messageWriter.shutdown();
+        unreadCounters.shutdown();
+        presenceNotifier.shutdown();
+        deliveryEngine.shutdown();
+    }
+    
+    // Group messages need no counting: group unread counts are read from the members' read cursors
+    private void countUnread(Message message) {
+        if (!message.isGroupMessage()) {
+            unreadCounters.incrementUser(message.getReceiverId(), message.getSenderId());
+        }
+    }
+    
+    // Serve from the conversation cache when it covers the requested page; only the newest window is cached
+    private List<Message> loadPrivateMessages(int userId1, int userId2, int beforeMessageId, int limit) throws SQLException {
+        String key = ConversationCache.privateKey(userId1, userId2);
+        List<Message> cached = messageCache.get(key, beforeMessageId, limit);
+        if (cached != null) {
+            return cached;
+        }
+        if (beforeMessageId > 0) {
+            return messageDAO.getPrivateMessagesBefore(userId1, userId2, beforeMessageId, limit);
+        }
+        long stamp = messageCache.loadStamp(key);
+        int fetchLimit = Math.max(limit, messageCache.getWindowSize());
+        List<Message> newest = messageDAO.getPrivateMessagesBefore(userId1, userId2, 0, fetchLimit);
+        messageCache.put(key, newest, newest.size() < fetchLimit, stamp);
+        return new ArrayList<>(newest.subList(Math.max(0, newest.size() - limit), newest.size()));
+    }
+    
+    private List<Message> loadGroupMessages(int groupId, int beforeMessageId, int limit) throws SQLException {
+        String key = ConversationCache.groupKey(groupId);
+        List<Message> cached = messageCache.get(key, beforeMessageId, limit);
+        if (cached != null) {
+            return cached;
+        }
+        if (beforeMessageId > 0) {
+            return messageDAO.getGroupMessagesBefore(groupId, beforeMessageId, limit);
+        }
+        long stamp = messageCache.loadStamp(key);
+        int fetchLimit = Math.max(limit, messageCache.getWindowSize());
+        List<Message> newest = messageDAO.getGroupMessagesBefore(groupId, 0, fetchLimit);
+        messageCache.put(key, newest, newest.size() < fetchLimit, stamp);
+        return new ArrayList<>(newest.subList(Math.max(0, newest.size() - limit), newest.size()));
+    }
+    
     // Notification methods
+    // All callbacks go through the delivery engine so the calling RMI thread returns immediately
     private void notifyPrivateMessage(Message message) {
-        String receiverKey = "user_" + message.getReceiverId();
-        String senderKey = "user_" + message.getSenderId();
-        
-        // Notify receiver
-        ChatClientCallback receiver = clients.get(receiverKey);
-        if (receiver != null) {
-            try {
-                receiver.onMessageReceived(message);
-            } catch (RemoteException e) {
-                logger.error("Failed to notify receiver", e);
-                clients.remove(receiverKey);
-            }
-        }
-        
+        deliveryEngine.enqueue("user_" + message.getReceiverId(), ChatEvent.messageReceived(message));
         // Notify sender (for confirmation)
-        ChatClientCallback sender = clients.get(senderKey);
-        if (sender != null) {
-            try {
-                sender.onMessageReceived(message);
-            } catch (RemoteException e) {
-                logger.error("Failed to notify sender", e);
-                clients.remove(senderKey);
-            }
-        }
+        deliveryEngine.enqueue("user_" + message.getSenderId(), ChatEvent.messageReceived(message));
     }
     
     private void notifyGroupMessage(Message message) {
         try {
-            List<User> members = groupDAO.getGroupMembers(message.getGroupId());
-            for (User member : members) {
-                String memberKey = "user_" + member.getUserId();
-                ChatClientCallback callback = clients.get(memberKey);
-                if (callback != null) {
-                    try {
-                        callback.onMessageReceived(message);
-                    } catch (RemoteException e) {
-                        logger.error("Failed to notify group member", e);
-                        clients.remove(memberKey);
-                    }
-                }
-            }
+            deliveryEngine.fanOut(membershipIndex.getMemberIds(message.getGroupId()), ChatEvent.messageReceived(message));
         } catch (SQLException e) {
             logger.error("Failed to get group members for notification", e);
         }
     }
     
     private void notifyUserStatusChanged(int userId, User.UserStatus status) {
-        for (ChatClientCallback callback : clients.values()) {
-            try {
-                callback.onUserStatusChanged(userId, status);
-            } catch (RemoteException e) {
-                logger.error("Failed to notify status change", e);
+        presenceNotifier.statusChanged(userId, status);
+    }
+    
+    private void friendshipChanged(int userId1, int userId2) {
+        friendGraph.invalidate(userId1, userId2);
+        presenceNotifier.invalidate(userId1);
+        presenceNotifier.invalidate(userId2);
+    }
+    
+    private void groupMembershipChanged(int groupId, int userId) {
+        presenceNotifier.invalidate(userId);
+        try {
+            for (int memberId : membershipIndex.getMemberIds(groupId)) {
+                presenceNotifier.invalidate(memberId);
             }
+        } catch (SQLException e) {
+            logger.error("Failed to refresh presence subscribers for group {}", groupId, e);
         }
     }
     
     private void notifyUserJoinedGroup(int groupId, User user) {
+        // Members only need the summary fields of the new member, never the full row
+        User member = user != null ? UserSummary.of(user).toUser() : null;
         try {
-            List<User> members = groupDAO.getGroupMembers(groupId);
-            for (User member : members) {
-                String memberKey = "user_" + member.getUserId();
-                ChatClientCallback callback = clients.get(memberKey);
-                if (callback != null) {
-                    try {
-                        callback.onUserJoinedGroup(groupId, user);
-                    } catch (RemoteException e) {
-                        logger.error("Failed to notify user joined group", e);
-                        clients.remove(memberKey);
-                    }
-                }
-            }
+            deliveryEngine.fanOut(membershipIndex.getMemberIds(groupId), callback -> callback.onUserJoinedGroup(groupId, member));
         } catch (SQLException e) {
             logger.error("Failed to notify user joined group", e);
         }
@@ -623,46 +911,16 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
     
     private void notifyUserLeftGroup(int groupId, int userId) {
         try {
-            List<User> members = groupDAO.getGroupMembers(groupId);
-            for (User member : members) {
-                String memberKey = "user_" + member.getUserId();
-                ChatClientCallback callback = clients.get(memberKey);
-                if (callback != null) {
-                    try {
-                        callback.onUserLeftGroup(groupId, userId);
-                    } catch (RemoteException e) {
-                        logger.error("Failed to notify user left group", e);
-                        clients.remove(memberKey);
-                    }
-                }
-            }
+            deliveryEngine.fanOut(membershipIndex.getMemberIds(groupId), callback -> callback.onUserLeftGroup(groupId, userId));
             // Also notify the removed user themselves so their UI can update
-            String removedKey = "user_" + userId;
-            ChatClientCallback removedCallback = clients.get(removedKey);
-            if (removedCallback != null) {
-                try {
-                    removedCallback.onUserLeftGroup(groupId, userId);
-                } catch (RemoteException e) {
-                    logger.error("Failed to notify removed user {} left group {}", userId, groupId, e);
-                    clients.remove(removedKey);
-                }
-            }
+            deliveryEngine.enqueue("user_" + userId, callback -> callback.onUserLeftGroup(groupId, userId));
         } catch (SQLException e) {
             logger.error("Failed to notify user left group", e);
         }
     }
     
     private void notifyMessagesRead(int readerId, int senderId) {
-        String senderKey = "user_" + senderId;
-        ChatClientCallback senderCallback = clients.get(senderKey);
-        if (senderCallback != null) {
-            try {
-                senderCallback.onMessagesMarkedAsRead(readerId, senderId);
-            } catch (RemoteException e) {
-                logger.error("Failed to notify messages read", e);
-                clients.remove(senderKey);
-            }
-        }
+        deliveryEngine.enqueue("user_" + senderId, ChatEvent.messagesRead(readerId, senderId));
     }
     
     private void notifyMessageUpdated(Message message) {
@@ -674,45 +932,13 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
     }
     
     private void notifyPrivateMessageUpdate(Message message) {
-        String receiverKey = "user_" + message.getReceiverId();
-        String senderKey = "user_" + message.getSenderId();
-        
-        ChatClientCallback receiver = clients.get(receiverKey);
-        if (receiver != null) {
-            try {
-                receiver.onMessageUpdated(message);
-            } catch (RemoteException e) {
-                logger.error("Failed to notify receiver updated", e);
-                clients.remove(receiverKey);
-            }
-        }
-        
-        ChatClientCallback sender = clients.get(senderKey);
-        if (sender != null) {
-            try {
-                sender.onMessageUpdated(message);
-            } catch (RemoteException e) {
-                logger.error("Failed to notify sender updated", e);
-                clients.remove(senderKey);
-            }
-        }
+        deliveryEngine.enqueue("user_" + message.getReceiverId(), ChatEvent.messageUpdated(message));
+        deliveryEngine.enqueue("user_" + message.getSenderId(), ChatEvent.messageUpdated(message));
     }
     
     private void notifyGroupMessageUpdate(Message message) {
         try {
-            List<User> members = groupDAO.getGroupMembers(message.getGroupId());
-            for (User member : members) {
-                String memberKey = "user_" + member.getUserId();
-                ChatClientCallback callback = clients.get(memberKey);
-                if (callback != null) {
-                    try {
-                        callback.onMessageUpdated(message);
-                    } catch (RemoteException e) {
-                        logger.error("Failed to notify group updated", e);
-                        clients.remove(memberKey);
-                    }
-                }
-            }
+            deliveryEngine.fanOut(membershipIndex.getMemberIds(message.getGroupId()), ChatEvent.messageUpdated(message));
         } catch (SQLException e) {
             logger.error("Failed to notify group message update", e);
         }
@@ -727,61 +953,20 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
     }
     
     private void notifyPrivateMessageDeleted(int messageId, int receiverId, int senderId) {
-        String receiverKey = "user_" + receiverId;
-        String senderKey = "user_" + senderId;
-        
-        ChatClientCallback receiver = clients.get(receiverKey);
-        if (receiver != null) {
-            try {
-                receiver.onMessageDeleted(messageId);
-            } catch (RemoteException e) {
-                logger.error("Failed to notify receiver deleted", e);
-                clients.remove(receiverKey);
-            }
-        }
-        
-        ChatClientCallback sender = clients.get(senderKey);
-        if (sender != null) {
-            try {
-                sender.onMessageDeleted(messageId);
-            } catch (RemoteException e) {
-                logger.error("Failed to notify sender deleted", e);
-                clients.remove(senderKey);
-            }
-        }
+        deliveryEngine.enqueue("user_" + receiverId, ChatEvent.messageDeleted(messageId));
+        deliveryEngine.enqueue("user_" + senderId, ChatEvent.messageDeleted(messageId));
     }
     
     private void notifyGroupMessageDeleted(int messageId, int groupId) {
         try {
-            List<User> members = groupDAO.getGroupMembers(groupId);
-            for (User member : members) {
-                String memberKey = "user_" + member.getUserId();
-                ChatClientCallback callback = clients.get(memberKey);
-                if (callback != null) {
-                    try {
-                        callback.onMessageDeleted(messageId);
-                    } catch (RemoteException e) {
-                        logger.error("Failed to notify group deleted", e);
-                        clients.remove(memberKey);
-                    }
-                }
-            }
+            deliveryEngine.fanOut(membershipIndex.getMemberIds(groupId), ChatEvent.messageDeleted(messageId));
         } catch (SQLException e) {
             logger.error("Failed to notify group message deleted", e);
         }
     }
     
     private void notifyFriendRequestReceived(Friendship friendship) {
-        String receiverKey = "user_" + friendship.getUser2Id();
-        ChatClientCallback callback = clients.get(receiverKey);
-        if (callback != null) {
-            try {
-                callback.onFriendRequestReceived(friendship);
-            } catch (RemoteException e) {
-                logger.error("Failed to notify friend request received", e);
-                clients.remove(receiverKey);
-            }
-        }
+        deliveryEngine.enqueue("user_" + friendship.getUser2Id(), callback -> callback.onFriendRequestReceived(friendship));
     }
 
     private void enrichSenderMetadata(Message message) {
@@ -789,7 +974,7 @@ public class ChatServiceImpl extends UnicastRemoteObject implements ChatService
             return;
         }
         try {
-            User sender = userDAO.getUserById(message.getSenderId());
+            User sender = userCache.getUser(message.getSenderId());
             if (sender != null) {
                 message.setSenderName(sender.getUsername());
                 message.setSenderAvatar(sender.getAvatarUrl());
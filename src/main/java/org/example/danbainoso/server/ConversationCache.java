@@ -0,0 +1,256 @@
+package org.example.danbainoso.server;
+
+import org.example.danbainoso.shared.models.Message;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the newest messages of recently used conversations in memory so the first page of a chat
+ * does not hit MySQL every time a participant opens it.
+ * Conversations are evicted least recently used first once the estimated size exceeds the budget.
+ * Cached {@link Message} objects are never modified in place; changes replace them with a copy,
+ * because the same instances may be serialized to clients at the same time.
+ */
+public class ConversationCache {
+    private static final int STRIPES = 64;
+    private static final int MESSAGE_OVERHEAD_BYTES = 160;
+
+    private final int windowSize;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Window> windows = new LinkedHashMap<>(16, 0.75f, true);
+    // Bumped on every write to a stripe so a load that raced with a write is not cached
+    private final long[] stripeStamps = new long[STRIPES];
+    private long totalBytes = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ConversationCache(int windowSize, long maxBytes) {
+        this.windowSize = Math.max(1, windowSize);
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    public static String privateKey(int userId1, int userId2) {
+        return "p:" + Math.min(userId1, userId2) + ":" + Math.max(userId1, userId2);
+    }
+
+    public static String groupKey(int groupId) {
+        return "g:" + groupId;
+    }
+
+    public static String keyOf(Message message) {
+        if (message.getGroupId() != null) {
+            return groupKey(message.getGroupId());
+        }
+        return privateKey(message.getSenderId(), message.getReceiverId());
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Return up to {@code limit} messages older than {@code beforeMessageId} (0 for the newest), oldest first,
+     * or {@code null} when the cached window cannot answer the request.
+     */
+    public synchronized List<Message> get(String key, int beforeMessageId, int limit) {
+        Window window = windows.get(key);
+        if (window == null) {
+            misses.increment();
+            return null;
+        }
+        int end = window.messages.size();
+        if (beforeMessageId > 0) {
+            while (end > 0 && window.messages.get(end - 1).getMessageId() >= beforeMessageId) {
+                end--;
+            }
+        }
+        if (end < limit && !window.complete) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new ArrayList<>(window.messages.subList(Math.max(0, end - limit), end));
+    }
+
+    /**
+     * Stamp to pass to {@link #put} when loading a conversation from the database.
+     */
+    public synchronized long loadStamp(String key) {
+        return stripeStamps[stripe(key)];
+    }
+
+    /**
+     * Cache the newest messages of a conversation, oldest first.
+     *
+     * @param complete whether {@code messages} holds the whole conversation
+     */
+    public synchronized void put(String key, List<Message> messages, boolean complete, long stamp) {
+        if (stripeStamps[stripe(key)] != stamp || windows.containsKey(key)) {
+            return;
+        }
+        Window window = new Window();
+        int from = Math.max(0, messages.size() - windowSize);
+        window.messages.addAll(messages.subList(from, messages.size()));
+        window.complete = complete && from == 0;
+        for (Message message : window.messages) {
+            window.bytes += estimateSize(message);
+        }
+        windows.put(key, window);
+        totalBytes += window.bytes;
+        evictToBudget(key);
+    }
+
+    public synchronized void messageAdded(Message message) {
+        String key = keyOf(message);
+        touch(key);
+        Window window = windows.get(key);
+        if (window == null) {
+            return;
+        }
+        // Concurrent sends may arrive slightly out of order, and a load may already contain this message
+        int index = window.messages.size();
+        while (index > 0 && window.messages.get(index - 1).getMessageId() >= message.getMessageId()) {
+            if (window.messages.get(index - 1).getMessageId() == message.getMessageId()) {
+                return;
+            }
+            index--;
+        }
+        window.messages.add(index, message);
+        adjust(window, estimateSize(message));
+        while (window.messages.size() > windowSize) {
+            adjust(window, -estimateSize(window.messages.remove(0)));
+            window.complete = false;
+        }
+        evictToBudget(key);
+    }
+
+    /**
+     * Replace a cached message with a newer version of it, e.g. after an edit or delete.
+     */
+    public synchronized void messageReplaced(Message message) {
+        String key = keyOf(message);
+        touch(key);
+        Window window = windows.get(key);
+        if (window == null) {
+            return;
+        }
+        for (int i = window.messages.size() - 1; i >= 0; i--) {
+            if (window.messages.get(i).getMessageId() == message.getMessageId()) {
+                Message previous = window.messages.set(i, message);
+                adjust(window, estimateSize(message) - estimateSize(previous));
+                return;
+            }
+        }
+    }
+
+    public synchronized void messagesRead(int receiverId, int senderId) {
+        String key = privateKey(receiverId, senderId);
+        touch(key);
+        Window window = windows.get(key);
+        if (window == null) {
+            return;
+        }
+        for (int i = 0; i < window.messages.size(); i++) {
+            Message message = window.messages.get(i);
+            if (!message.isRead() && message.getSenderId() == senderId
+                    && message.getReceiverId() != null && message.getReceiverId() == receiverId) {
+                Message read = copyOf(message);
+                read.setRead(true);
+                window.messages.set(i, read);
+            }
+        }
+    }
+
+    public synchronized void invalidate(String key) {
+        touch(key);
+        Window window = windows.remove(key);
+        if (window != null) {
+            totalBytes -= window.bytes;
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        return String.format("ConversationCache{conversations=%d, bytes=%d, maxBytes=%d, hits=%d, misses=%d, hitRatio=%.2f, evictions=%d}",
+                windows.size(), totalBytes, maxBytes, hitCount, missCount,
+                total == 0 ? 0.0 : hitCount / (double) total, evictions.sum());
+    }
+
+    private void evictToBudget(String keep) {
+        Iterator<Map.Entry<String, Window>> iterator = windows.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Window> eldest = iterator.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            totalBytes -= eldest.getValue().bytes;
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private void adjust(Window window, long delta) {
+        window.bytes += delta;
+        totalBytes += delta;
+    }
+
+    private void touch(String key) {
+        stripeStamps[stripe(key)]++;
+    }
+
+    private static int stripe(String key) {
+        return key.hashCode() & (STRIPES - 1);
+    }
+
+    private static long estimateSize(Message message) {
+        return MESSAGE_OVERHEAD_BYTES
+                + 2L * (length(message.getContent()) + length(message.getFileUrl())
+                + length(message.getSenderName()) + length(message.getSenderAvatar()));
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    private static Message copyOf(Message message) {
+        Message copy = new Message(message.getSenderId(), message.getReceiverId(), message.getGroupId(), message.getContent());
+        copy.setMessageId(message.getMessageId());
+        copy.setMessageType(message.getMessageType());
+        copy.setFileUrl(message.getFileUrl());
+        copy.setRead(message.isRead());
+        copy.setEdited(message.isEdited());
+        copy.setDeleted(message.isDeleted());
+        copy.setCreatedAt(message.getCreatedAt());
+        copy.setSenderName(message.getSenderName());
+        copy.setSenderAvatar(message.getSenderAvatar());
+        return copy;
+    }
+
+    private static final class Window {
+        private final List<Message> messages = new ArrayList<>();
+        private boolean complete;
+        private long bytes;
+    }
+}
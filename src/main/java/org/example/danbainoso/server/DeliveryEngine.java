@@ -0,0 +1,607 @@
+package org.example.danbainoso.server;
+
+import org.example.danbainoso.shared.ChatClientCallback;
+import org.example.danbainoso.shared.models.ChatEvent;
+import org.example.danbainoso.utils.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.rmi.RemoteException;
+import java.rmi.ServerException;
+import java.rmi.UnmarshalException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers callbacks to registered clients asynchronously.
+ * Every client gets its own bounded outbound queue which is drained by at most one worker at a time,
+ * so events for one client stay ordered while a slow client never blocks the sender or other clients.
+ * Consecutive {@link ChatEvent}s waiting in a queue are coalesced into one {@code onEvents} call;
+ * a short linger before draining lets bursts accumulate into a single batch.
+ * Drains run on a bounded pool, so a group fan-out reaches all members in parallel
+ * up to that concurrency cap; the time until the last member has its event is recorded per fan-out.
+ */
+public class DeliveryEngine {
+    private static final Logger logger = LoggerUtil.getLogger(DeliveryEngine.class);
+
+    /**
+     * What to do when a client's outbound queue is full.
+     */
+    public enum OverflowPolicy {
+        DROP_NEWEST, DROP_OLDEST, DISCONNECT;
+
+        public static OverflowPolicy fromString(String value, OverflowPolicy defaultValue) {
+            if (value == null) {
+                return defaultValue;
+            }
+            try {
+                return OverflowPolicy.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException ex) {
+                return defaultValue;
+            }
+        }
+    }
+
+    /**
+     * A single callback invocation to run against a client.
+     */
+    @FunctionalInterface
+    public interface ClientEvent {
+        void deliver(ChatClientCallback callback) throws RemoteException;
+    }
+
+    private final ConcurrentHashMap<String, ClientOutbox> outboxes = new ConcurrentHashMap<>();
+    private final ExecutorService drainExecutor;
+    private final ScheduledExecutorService lingerScheduler;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final int maxBatchSize;
+    private final long lingerMillis;
+
+    private final LongAdder enqueuedCount = new LongAdder();
+    private final LongAdder deliveredCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder disconnectedCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder batchedEventCount = new LongAdder();
+    private final LongAdder latencyTotalNanos = new LongAdder();
+    private final AtomicLong latencyMaxNanos = new AtomicLong();
+    private final LatencyRecorder fanOutLatency = new LatencyRecorder(2048);
+
+    public DeliveryEngine(int queueCapacity, OverflowPolicy overflowPolicy) {
+        this(queueCapacity, overflowPolicy, 1, 0, 0);
+    }
+
+    /**
+     * @param threads maximum number of clients being delivered to at once, or 0 for no limit
+     */
+    public DeliveryEngine(int queueCapacity, OverflowPolicy overflowPolicy, int maxBatchSize, long lingerMillis, int threads) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.overflowPolicy = overflowPolicy != null ? overflowPolicy : OverflowPolicy.DROP_OLDEST;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerMillis = Math.max(0, lingerMillis);
+        this.drainExecutor = threads > 0
+                ? Executors.newFixedThreadPool(threads, new DeliveryThreadFactory("delivery-"))
+                : Executors.newCachedThreadPool(new DeliveryThreadFactory("delivery-"));
+        this.lingerScheduler = Executors.newSingleThreadScheduledExecutor(new DeliveryThreadFactory("delivery-linger-"));
+    }
+
+    public void register(String clientId, ChatClientCallback callback) {
+        ClientOutbox previous = outboxes.put(clientId, new ClientOutbox(clientId, callback));
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    public void unregister(String clientId) {
+        ClientOutbox outbox = outboxes.remove(clientId);
+        if (outbox != null) {
+            outbox.close();
+        }
+    }
+
+    public boolean isRegistered(String clientId) {
+        return outboxes.containsKey(clientId);
+    }
+
+    public List<String> getClientIds() {
+        return new ArrayList<>(outboxes.keySet());
+    }
+
+    /**
+     * Queue an event for a client. Does nothing when the client is not registered.
+     */
+    public void enqueue(String clientId, ClientEvent event) {
+        ClientOutbox outbox = outboxes.get(clientId);
+        if (outbox != null) {
+            outbox.offer(new PendingEvent(event, null, null));
+        }
+    }
+
+    /**
+     * Queue a chat event for a client. Chat events may be coalesced with neighbouring ones into a batch.
+     */
+    public void enqueue(String clientId, ChatEvent event) {
+        ClientOutbox outbox = outboxes.get(clientId);
+        if (outbox != null) {
+            outbox.offer(new PendingEvent(null, event, null));
+        }
+    }
+
+    /**
+     * Queue the same chat event for several users and track when the last of them has received it.
+     */
+    public void fanOut(int[] userIds, ChatEvent event) {
+        fanOut(userIds, null, event);
+    }
+
+    public void fanOut(int[] userIds, ClientEvent event) {
+        fanOut(userIds, event, null);
+    }
+
+    private void fanOut(int[] userIds, ClientEvent event, ChatEvent chatEvent) {
+        FanOutTracker tracker = new FanOutTracker();
+        for (int userId : userIds) {
+            ClientOutbox outbox = outboxes.get("user_" + userId);
+            if (outbox != null) {
+                tracker.add();
+                outbox.offer(new PendingEvent(event, chatEvent, tracker));
+            }
+        }
+        tracker.seal();
+    }
+
+    public void broadcast(ClientEvent event) {
+        for (ClientOutbox outbox : outboxes.values()) {
+            outbox.offer(new PendingEvent(event, null, null));
+        }
+    }
+
+    public Stats snapshot() {
+        int totalDepth = 0;
+        int maxDepth = 0;
+        for (ClientOutbox outbox : outboxes.values()) {
+            int depth = outbox.queue.size();
+            totalDepth += depth;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        return new Stats(
+                outboxes.size(),
+                totalDepth,
+                maxDepth,
+                enqueuedCount.sum(),
+                deliveredCount.sum(),
+                droppedCount.sum(),
+                failedCount.sum(),
+                disconnectedCount.sum(),
+                batchCount.sum(),
+                batchedEventCount.sum(),
+                latencyTotalNanos.sum(),
+                latencyMaxNanos.get(),
+                fanOutLatency.getCount(),
+                fanOutLatency.percentileMillis(50),
+                fanOutLatency.percentileMillis(99)
+        );
+    }
+
+    public void shutdown() {
+        for (ClientOutbox outbox : outboxes.values()) {
+            outbox.close();
+        }
+        outboxes.clear();
+        lingerScheduler.shutdownNow();
+        drainExecutor.shutdown();
+        try {
+            if (!drainExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                drainExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            drainExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Delivery engine stopped: {}", snapshot());
+    }
+
+    private void disconnect(ClientOutbox outbox, String reason) {
+        if (outboxes.remove(outbox.clientId, outbox)) {
+            disconnectedCount.increment();
+            logger.warn("Client {} disconnected: {}", outbox.clientId, reason);
+        }
+        outbox.close();
+    }
+
+    private void recordLatency(long nanos) {
+        latencyTotalNanos.add(nanos);
+        long currentMax = latencyMaxNanos.get();
+        while (nanos > currentMax && !latencyMaxNanos.compareAndSet(currentMax, nanos)) {
+            currentMax = latencyMaxNanos.get();
+        }
+    }
+
+    /**
+     * Counts outstanding deliveries of one fan-out; the extra initial count is released by {@link #seal()}
+     * so the fan-out cannot complete while recipients are still being queued.
+     */
+    private final class FanOutTracker {
+        private final long startedAtNanos = System.nanoTime();
+        private final AtomicInteger outstanding = new AtomicInteger(1);
+        private volatile boolean hasRecipients = false;
+
+        private void add() {
+            hasRecipients = true;
+            outstanding.incrementAndGet();
+        }
+
+        private void seal() {
+            complete();
+        }
+
+        private void complete() {
+            if (outstanding.decrementAndGet() == 0 && hasRecipients) {
+                fanOutLatency.record(System.nanoTime() - startedAtNanos);
+            }
+        }
+    }
+
+    private static final class PendingEvent {
+        private final ClientEvent event;
+        private final ChatEvent chatEvent;
+        private final FanOutTracker tracker;
+        private final long enqueuedAtNanos;
+
+        private PendingEvent(ClientEvent event, ChatEvent chatEvent, FanOutTracker tracker) {
+            this.event = event;
+            this.chatEvent = chatEvent;
+            this.tracker = tracker;
+            this.enqueuedAtNanos = System.nanoTime();
+        }
+
+        /**
+         * Called exactly once when the event was delivered, failed or dropped.
+         */
+        private void finish() {
+            if (tracker != null) {
+                tracker.complete();
+            }
+        }
+
+        private void deliver(ChatClientCallback callback) throws RemoteException {
+            if (chatEvent != null) {
+                chatEvent.dispatch(callback);
+            } else {
+                event.deliver(callback);
+            }
+        }
+    }
+
+    private final class ClientOutbox {
+        private final String clientId;
+        private final ChatClientCallback callback;
+        private final ArrayBlockingQueue<PendingEvent> queue;
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private volatile boolean closed = false;
+        // Cleared when the client runs an older build without onEvents
+        private volatile boolean batchingSupported = true;
+
+        private ClientOutbox(String clientId, ChatClientCallback callback) {
+            this.clientId = clientId;
+            this.callback = callback;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        private void offer(PendingEvent pending) {
+            if (closed) {
+                pending.finish();
+                return;
+            }
+            if (!queue.offer(pending)) {
+                switch (overflowPolicy) {
+                    case DISCONNECT:
+                        droppedCount.add(queue.size() + 1L);
+                        pending.finish();
+                        disconnect(this, "outbound queue full (" + queueCapacity + " events)");
+                        return;
+                    case DROP_OLDEST:
+                        while (!queue.offer(pending)) {
+                            PendingEvent oldest = queue.poll();
+                            if (oldest != null) {
+                                droppedCount.increment();
+                                oldest.finish();
+                            }
+                        }
+                        break;
+                    case DROP_NEWEST:
+                    default:
+                        droppedCount.increment();
+                        pending.finish();
+                        logger.debug("Dropped event for slow client {}", clientId);
+                        return;
+                }
+            }
+            enqueuedCount.increment();
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (closed || !draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                if (lingerMillis > 0 && maxBatchSize > 1 && batchingSupported && queue.size() < maxBatchSize) {
+                    lingerScheduler.schedule(() -> startDrain(), lingerMillis, TimeUnit.MILLISECONDS);
+                } else {
+                    drainExecutor.execute(this::drain);
+                }
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                logger.debug("Delivery executor rejected drain for client {}", clientId);
+            }
+        }
+
+        private void startDrain() {
+            try {
+                drainExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+            }
+        }
+
+        private void drain() {
+            try {
+                List<PendingEvent> batch = new ArrayList<>();
+                PendingEvent pending;
+                while (!closed && (pending = queue.poll()) != null) {
+                    if (pending.chatEvent != null && batchingSupported && maxBatchSize > 1) {
+                        batch.add(pending);
+                        if (batch.size() >= maxBatchSize) {
+                            deliverBatch(batch);
+                        }
+                        continue;
+                    }
+                    // Keep ordering: flush what was collected before a non-batchable event
+                    deliverBatch(batch);
+                    deliverSingle(pending);
+                }
+                deliverBatch(batch);
+            } finally {
+                draining.set(false);
+            }
+            if (!closed && !queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        private void deliverSingle(PendingEvent pending) {
+            if (closed) {
+                pending.finish();
+                return;
+            }
+            try {
+                pending.deliver(callback);
+                deliveredCount.increment();
+                recordLatency(System.nanoTime() - pending.enqueuedAtNanos);
+            } catch (RemoteException e) {
+                failedCount.increment();
+                logger.error("Failed to deliver event to client {}", clientId, e);
+                disconnect(this, "callback failed");
+            } catch (RuntimeException e) {
+                failedCount.increment();
+                logger.error("Unexpected error delivering event to client {}", clientId, e);
+            } finally {
+                pending.finish();
+            }
+        }
+
+        private void deliverBatch(List<PendingEvent> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (closed) {
+                finishAll(batch);
+                return;
+            }
+            if (batch.size() == 1) {
+                deliverSingle(batch.get(0));
+                batch.clear();
+                return;
+            }
+            List<ChatEvent> events = new ArrayList<>(batch.size());
+            for (PendingEvent pending : batch) {
+                events.add(pending.chatEvent);
+            }
+            try {
+                callback.onEvents(events);
+                long now = System.nanoTime();
+                for (PendingEvent pending : batch) {
+                    deliveredCount.increment();
+                    recordLatency(now - pending.enqueuedAtNanos);
+                }
+                batchCount.increment();
+                batchedEventCount.add(events.size());
+                finishAll(batch);
+            } catch (ServerException e) {
+                if (e.getCause() instanceof UnmarshalException) {
+                    // Client was built before onEvents existed, fall back to single-event callbacks
+                    logger.info("Client {} does not support batched events, using single callbacks", clientId);
+                    batchingSupported = false;
+                    for (PendingEvent pending : batch) {
+                        deliverSingle(pending);
+                    }
+                    batch.clear();
+                } else {
+                    failedCount.add(batch.size());
+                    logger.error("Failed to deliver event batch to client {}", clientId, e);
+                    finishAll(batch);
+                    disconnect(this, "callback failed");
+                }
+            } catch (RemoteException e) {
+                failedCount.add(batch.size());
+                logger.error("Failed to deliver event batch to client {}", clientId, e);
+                finishAll(batch);
+                disconnect(this, "callback failed");
+            } catch (RuntimeException e) {
+                failedCount.add(batch.size());
+                logger.error("Unexpected error delivering event batch to client {}", clientId, e);
+                finishAll(batch);
+            }
+        }
+
+        private void finishAll(List<PendingEvent> batch) {
+            for (PendingEvent pending : batch) {
+                pending.finish();
+            }
+            batch.clear();
+        }
+
+        private void close() {
+            closed = true;
+            PendingEvent pending;
+            while ((pending = queue.poll()) != null) {
+                pending.finish();
+            }
+        }
+    }
+
+    private static final class DeliveryThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+        private final String prefix;
+
+        private DeliveryThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Point-in-time delivery metrics.
+     */
+    public static final class Stats {
+        private final int clientCount;
+        private final int totalQueueDepth;
+        private final int maxQueueDepth;
+        private final long enqueued;
+        private final long delivered;
+        private final long dropped;
+        private final long failed;
+        private final long disconnected;
+        private final long batches;
+        private final long batchedEvents;
+        private final long latencyTotalNanos;
+        private final long latencyMaxNanos;
+        private final long fanOuts;
+        private final double fanOutP50Millis;
+        private final double fanOutP99Millis;
+
+        private Stats(int clientCount, int totalQueueDepth, int maxQueueDepth, long enqueued, long delivered,
+                      long dropped, long failed, long disconnected, long batches, long batchedEvents,
+                      long latencyTotalNanos, long latencyMaxNanos,
+                      long fanOuts, double fanOutP50Millis, double fanOutP99Millis) {
+            this.clientCount = clientCount;
+            this.totalQueueDepth = totalQueueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.enqueued = enqueued;
+            this.delivered = delivered;
+            this.dropped = dropped;
+            this.failed = failed;
+            this.disconnected = disconnected;
+            this.batches = batches;
+            this.batchedEvents = batchedEvents;
+            this.latencyTotalNanos = latencyTotalNanos;
+            this.latencyMaxNanos = latencyMaxNanos;
+            this.fanOuts = fanOuts;
+            this.fanOutP50Millis = fanOutP50Millis;
+            this.fanOutP99Millis = fanOutP99Millis;
+        }
+
+        public int getClientCount() {
+            return clientCount;
+        }
+
+        public int getTotalQueueDepth() {
+            return totalQueueDepth;
+        }
+
+        public int getMaxQueueDepth() {
+            return maxQueueDepth;
+        }
+
+        public long getEnqueued() {
+            return enqueued;
+        }
+
+        public long getDelivered() {
+            return delivered;
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getDisconnected() {
+            return disconnected;
+        }
+
+        public long getBatches() {
+            return batches;
+        }
+
+        public double getAverageBatchSize() {
+            return batches == 0 ? 0.0 : batchedEvents / (double) batches;
+        }
+
+        public double getAverageLatencyMillis() {
+            return delivered == 0 ? 0.0 : latencyTotalNanos / (double) delivered / 1_000_000.0;
+        }
+
+        public double getMaxLatencyMillis() {
+            return latencyMaxNanos / 1_000_000.0;
+        }
+
+        public long getFanOuts() {
+            return fanOuts;
+        }
+
+        /**
+         * Median time from the start of a fan-out until its last recipient got the event.
+         */
+        public double getFanOutP50Millis() {
+            return fanOutP50Millis;
+        }
+
+        public double getFanOutP99Millis() {
+            return fanOutP99Millis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Stats{clients=%d, queueDepth=%d, maxQueueDepth=%d, enqueued=%d, delivered=%d, " +
+                            "dropped=%d, failed=%d, disconnected=%d, batches=%d, avgBatchSize=%.1f, " +
+                            "avgLatencyMs=%.2f, maxLatencyMs=%.2f, fanOuts=%d, fanOutP50Ms=%.2f, fanOutP99Ms=%.2f}",
+                    clientCount, totalQueueDepth, maxQueueDepth, enqueued, delivered,
+                    dropped, failed, disconnected, batches, getAverageBatchSize(),
+                    getAverageLatencyMillis(), getMaxLatencyMillis(), fanOuts, fanOutP50Millis, fanOutP99Millis);
+        }
+    }
+}
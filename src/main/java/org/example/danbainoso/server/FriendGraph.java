@@ -0,0 +1,70 @@
+package org.example.danbainoso.server;
+
+import org.example.danbainoso.database.FriendshipDAO;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory adjacency index from user ID to the IDs of accepted friends.
+ * Each user's list is loaded lazily and kept as an immutable sorted int array;
+ * any friendship change between two users drops both of their lists.
+ */
+public class FriendGraph {
+    private final FriendshipDAO friendshipDAO;
+    private final ConcurrentHashMap<Integer, int[]> friendsByUser = new ConcurrentHashMap<>();
+    // Bumped on every invalidation so a load racing with a change is not cached
+    private final AtomicLong modificationCount = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public FriendGraph(FriendshipDAO friendshipDAO) {
+        this.friendshipDAO = friendshipDAO;
+    }
+
+    /**
+     * Get the friend IDs of a user. The returned array must not be modified.
+     */
+    public int[] getFriendIds(int userId) throws SQLException {
+        int[] cached = friendsByUser.get(userId);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        long stamp = modificationCount.get();
+        int[] loaded = friendshipDAO.getFriendIds(userId).stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+        int[] result = friendsByUser.compute(userId, (id, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            return modificationCount.get() == stamp ? loaded : null;
+        });
+        return result != null ? result : loaded;
+    }
+
+    public boolean areFriends(int userId1, int userId2) throws SQLException {
+        return Arrays.binarySearch(getFriendIds(userId1), userId2) >= 0;
+    }
+
+    /**
+     * Forget both users' lists after a request is accepted, a friend is removed, or a block changes.
+     */
+    public void invalidate(int userId1, int userId2) {
+        modificationCount.incrementAndGet();
+        friendsByUser.remove(userId1);
+        friendsByUser.remove(userId2);
+    }
+
+    @Override
+    public String toString() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        return String.format("FriendGraph{users=%d, hits=%d, misses=%d, hitRatio=%.2f}",
+                friendsByUser.size(), hitCount, missCount, total == 0 ? 0.0 : hitCount / (double) total);
+    }
+}
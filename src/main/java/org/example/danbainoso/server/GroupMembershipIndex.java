@@ -0,0 +1,113 @@
+package org.example.danbainoso.server;
+
+import org.example.danbainoso.database.GroupDAO;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-side index from group ID to the IDs of its members, used for notification fan-out.
+ * Each group is loaded lazily on first use and kept as an immutable sorted int array,
+ * replaced on every membership change so readers never need a lock.
+ */
+public class GroupMembershipIndex {
+    private static final int[] EMPTY = new int[0];
+
+    private final GroupDAO groupDAO;
+    private final ConcurrentHashMap<Integer, int[]> membersByGroup = new ConcurrentHashMap<>();
+    // Bumped on every membership write so a load racing with a write is not cached
+    private final AtomicLong modificationCount = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public GroupMembershipIndex(GroupDAO groupDAO) {
+        this.groupDAO = groupDAO;
+    }
+
+    /**
+     * Get the member IDs of a group. The returned array must not be modified.
+     */
+    public int[] getMemberIds(int groupId) throws SQLException {
+        int[] cached = membersByGroup.get(groupId);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        long stamp = modificationCount.get();
+        int[] loaded = groupDAO.getGroupMemberIds(groupId).stream().mapToInt(Integer::intValue).sorted().toArray();
+        int[] result = membersByGroup.compute(groupId, (id, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            return modificationCount.get() == stamp ? loaded : null;
+        });
+        return result != null ? result : loaded;
+    }
+
+    public boolean isMember(int groupId, int userId) throws SQLException {
+        return Arrays.binarySearch(getMemberIds(groupId), userId) >= 0;
+    }
+
+    public void memberAdded(int groupId, int userId) {
+        modificationCount.incrementAndGet();
+        membersByGroup.computeIfPresent(groupId, (id, members) -> add(members, userId));
+    }
+
+    public void memberRemoved(int groupId, int userId) {
+        modificationCount.incrementAndGet();
+        membersByGroup.computeIfPresent(groupId, (id, members) -> remove(members, userId));
+    }
+
+    public void groupDeleted(int groupId) {
+        modificationCount.incrementAndGet();
+        membersByGroup.remove(groupId);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        return String.format("GroupMembershipIndex{groups=%d, hits=%d, misses=%d, hitRatio=%.2f}",
+                membersByGroup.size(), hitCount, missCount, total == 0 ? 0.0 : hitCount / (double) total);
+    }
+
+    private static int[] add(int[] members, int userId) {
+        int index = Arrays.binarySearch(members, userId);
+        if (index >= 0) {
+            return members;
+        }
+        int insertAt = -index - 1;
+        int[] updated = new int[members.length + 1];
+        System.arraycopy(members, 0, updated, 0, insertAt);
+        updated[insertAt] = userId;
+        System.arraycopy(members, insertAt, updated, insertAt + 1, members.length - insertAt);
+        return updated;
+    }
+
+    private static int[] remove(int[] members, int userId) {
+        int index = Arrays.binarySearch(members, userId);
+        if (index < 0) {
+            return members;
+        }
+        if (members.length == 1) {
+            return EMPTY;
+        }
+        int[] updated = new int[members.length - 1];
+        System.arraycopy(members, 0, updated, 0, index);
+        System.arraycopy(members, index + 1, updated, index, members.length - index - 1);
+        return updated;
+    }
+}
@@ -0,0 +1,50 @@
+package org.example.danbainoso.server;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent latency samples in a fixed ring buffer and reports percentiles over them.
+ */
+public class LatencyRecorder {
+    private final long[] samples;
+    private int next = 0;
+    private long count = 0;
+
+    public LatencyRecorder(int capacity) {
+        this.samples = new long[Math.max(1, capacity)];
+    }
+
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count++;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @param percentile value between 0 and 100
+     * @return latency in milliseconds, or 0 when nothing was recorded yet
+     */
+    public double percentileMillis(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            int size = (int) Math.min(count, samples.length);
+            if (size == 0) {
+                return 0.0;
+            }
+            sorted = Arrays.copyOf(samples, size);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        index = Math.max(0, Math.min(sorted.length - 1, index));
+        return sorted[index] / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, p50Ms=%.2f, p99Ms=%.2f", getCount(), percentileMillis(50), percentileMillis(99));
+    }
+}
@@ -0,0 +1,375 @@
+package org.example.danbainoso.server;
+
+import org.example.danbainoso.shared.MediaPacket;
+import org.example.danbainoso.utils.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Forwards call media between participants over UDP, SFU-style: every media or report datagram a participant sends
+ * is passed on unchanged to everyone else in the same call. One thread owns a non-blocking
+ * {@link DatagramChannel}; datagrams are received into a single direct buffer and sent on from that same
+ * buffer to each destination, so the payload is never copied onto the Java heap.
+ * A participant's token only forwards from the address that said HELLO with it, and every stream keeps
+ * loss and jitter statistics. Packet rates are measured once a second.
+ */
+public class MediaRelay {
+    private static final Logger logger = LoggerUtil.getLogger(MediaRelay.class);
+
+    // Another address may take over a token (e.g. after a NAT rebinding) only once the old one has gone quiet
+    private static final long REBIND_IDLE_MILLIS = 5000;
+
+    private final int port;
+    private final int socketBufferBytes;
+    private final SecureRandom random = new SecureRandom();
+    private final ConcurrentHashMap<Integer, Participant> participantsByToken = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Room> rooms = new ConcurrentHashMap<>();
+
+    private DatagramChannel channel;
+    private Selector selector;
+    private Thread relayThread;
+    private volatile boolean running;
+
+    private final LongAdder receivedCount = new LongAdder();
+    private final LongAdder forwardedCount = new LongAdder();
+    private final LongAdder forwardedBytes = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    // Rates over the last full second, written by the relay thread
+    private volatile double receivedPps;
+    private volatile double forwardedPps;
+    private volatile double peakForwardedPps;
+
+    public MediaRelay(int port, int socketBufferBytes) {
+        this.port = port;
+        this.socketBufferBytes = socketBufferBytes;
+    }
+
+    /**
+     * Bind the UDP port and start forwarding.
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        channel = DatagramChannel.open();
+        channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, socketBufferBytes);
+        channel.setOption(StandardSocketOptions.SO_SNDBUF, socketBufferBytes);
+        channel.bind(new InetSocketAddress(port));
+        channel.configureBlocking(false);
+        selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+        running = true;
+        relayThread = new Thread(this::runRelay, "media-relay");
+        relayThread.setDaemon(true);
+        relayThread.start();
+        logger.info("Media relay listening on UDP port {}", getPort());
+    }
+
+    /**
+     * The bound port, which differs from the configured one when that was 0.
+     */
+    public int getPort() {
+        try {
+            return channel != null ? ((InetSocketAddress) channel.getLocalAddress()).getPort() : port;
+        } catch (IOException e) {
+            return port;
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Admit a user to a call's media and return their token; asking again returns the same token.
+     */
+    public int open(String callId, int userId) {
+        while (true) {
+            Room room = rooms.computeIfAbsent(callId, Room::new);
+            synchronized (room) {
+                // The room may have been closed between looking it up and locking it
+                if (rooms.get(callId) != room) {
+                    continue;
+                }
+                for (Participant participant : room.participants) {
+                    if (participant.userId == userId) {
+                        return participant.token;
+                    }
+                }
+                Participant participant = new Participant(newToken(), userId, room);
+                participantsByToken.put(participant.token, participant);
+                room.add(participant);
+                return participant.token;
+            }
+        }
+    }
+
+    /**
+     * Remove a user from a call's media, e.g. when they leave a group call.
+     */
+    public void close(String callId, int userId) {
+        Room room = rooms.get(callId);
+        if (room == null) {
+            return;
+        }
+        synchronized (room) {
+            for (Participant participant : room.participants) {
+                if (participant.userId == userId) {
+                    room.remove(participant);
+                    release(participant);
+                }
+            }
+            if (room.participants.length == 0) {
+                rooms.remove(callId, room);
+            }
+        }
+    }
+
+    /**
+     * Drop all media of a call that is over.
+     */
+    public void closeCall(String callId) {
+        Room room = rooms.remove(callId);
+        if (room == null) {
+            return;
+        }
+        synchronized (room) {
+            for (Participant participant : room.participants) {
+                release(participant);
+            }
+            room.participants = new Participant[0];
+        }
+    }
+
+    public int getCallCount() {
+        return rooms.size();
+    }
+
+    public double getReceivedPps() {
+        return receivedPps;
+    }
+
+    public double getForwardedPps() {
+        return forwardedPps;
+    }
+
+    public void shutdown() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        if (relayThread != null) {
+            try {
+                relayThread.join(TimeUnit.SECONDS.toMillis(2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        logger.info("Media relay stopped: {}", this);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MediaRelay{calls=%d, streams=%d, received=%d, forwarded=%d, forwardedMb=%.1f, " +
+                        "dropped=%d, rejected=%d, receivedPps=%.0f, forwardedPps=%.0f, peakForwardedPps=%.0f}",
+                rooms.size(), participantsByToken.size(), receivedCount.sum(), forwardedCount.sum(),
+                forwardedBytes.sum() / (1024.0 * 1024.0), droppedCount.sum(), rejectedCount.sum(),
+                receivedPps, forwardedPps, peakForwardedPps);
+    }
+
+    private void runRelay() {
+        // Large enough for any datagram, so nothing is silently truncated
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        long windowStart = System.nanoTime();
+        long windowReceived = 0;
+        long windowForwarded = 0;
+        try {
+            while (running) {
+                selector.select(1000);
+                selector.selectedKeys().clear();
+                SocketAddress source;
+                buffer.clear();
+                while (running && (source = channel.receive(buffer)) != null) {
+                    windowReceived++;
+                    windowForwarded += handle(buffer, buffer.position(), source);
+                    buffer.clear();
+                }
+                long now = System.nanoTime();
+                long elapsed = now - windowStart;
+                if (elapsed >= TimeUnit.SECONDS.toNanos(1)) {
+                    double seconds = elapsed / 1e9;
+                    receivedPps = windowReceived / seconds;
+                    forwardedPps = windowForwarded / seconds;
+                    peakForwardedPps = Math.max(peakForwardedPps, forwardedPps);
+                    windowStart = now;
+                    windowReceived = 0;
+                    windowForwarded = 0;
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                logger.error("Media relay failed", e);
+            }
+        } finally {
+            running = false;
+            try {
+                selector.close();
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Error closing media relay channel", e);
+            }
+        }
+    }
+
+    /**
+     * @return number of destinations the datagram was forwarded to
+     */
+    private int handle(ByteBuffer buffer, int length, SocketAddress source) {
+        receivedCount.increment();
+        if (!MediaPacket.isValid(buffer, length)) {
+            rejectedCount.increment();
+            return 0;
+        }
+        Participant sender = participantsByToken.get(MediaPacket.token(buffer));
+        if (sender == null) {
+            rejectedCount.increment();
+            return 0;
+        }
+        long nowMillis = System.currentTimeMillis();
+        byte type = MediaPacket.type(buffer);
+        if (type == MediaPacket.TYPE_HELLO) {
+            bind(sender, source, nowMillis);
+            return 0;
+        }
+        if (!source.equals(sender.address)) {
+            rejectedCount.increment();
+            return 0;
+        }
+        sender.lastSeenMillis = nowMillis;
+        if (type == MediaPacket.TYPE_BYE) {
+            close(sender.room.callId, sender.userId);
+            return 0;
+        }
+        if (type != MediaPacket.TYPE_REPORT) {
+            StreamStats stats = type == MediaPacket.TYPE_AUDIO ? sender.audio : sender.video;
+            stats.record(MediaPacket.sequence(buffer), MediaPacket.timestamp(buffer), length, nowMillis);
+        }
+
+        int forwarded = 0;
+        for (Participant receiver : sender.room.participants) {
+            SocketAddress destination = receiver.address;
+            if (receiver == sender || destination == null) {
+                continue;
+            }
+            buffer.limit(length).position(0);
+            try {
+                if (channel.send(buffer, destination) > 0) {
+                    forwarded++;
+                    forwardedBytes.add(length);
+                } else {
+                    // Socket send buffer is full; media is better late than queued, so drop it
+                    droppedCount.increment();
+                }
+            } catch (IOException e) {
+                // One unreachable destination must not stop media for every other call
+                droppedCount.increment();
+                logger.debug("Failed to forward media of call {} to {}: {}", sender.room.callId, destination, e.getMessage());
+            }
+        }
+        forwardedCount.add(forwarded);
+        return forwarded;
+    }
+
+    private void bind(Participant participant, SocketAddress source, long nowMillis) {
+        if (source.equals(participant.address)) {
+            participant.lastSeenMillis = nowMillis;
+            return;
+        }
+        if (participant.address != null && nowMillis - participant.lastSeenMillis < REBIND_IDLE_MILLIS) {
+            rejectedCount.increment();
+            return;
+        }
+        participant.address = source;
+        participant.lastSeenMillis = nowMillis;
+        logger.debug("Media of user {} in call {} bound to {}", participant.userId, participant.room.callId, source);
+    }
+
+    private void release(Participant participant) {
+        participantsByToken.remove(participant.token, participant);
+        if (participant.audio.getPackets() > 0 || participant.video.getPackets() > 0) {
+            logger.info("Media of user {} in call {} closed: audio {}, video {}",
+                    participant.userId, participant.room.callId, participant.audio, participant.video);
+        }
+    }
+
+    private int newToken() {
+        int token;
+        do {
+            token = random.nextInt();
+        } while (token == 0 || participantsByToken.containsKey(token));
+        return token;
+    }
+
+    private static final class Participant {
+        private final int token;
+        private final int userId;
+        private final Room room;
+        private volatile SocketAddress address;
+        private volatile long lastSeenMillis;
+        private final StreamStats audio = new StreamStats();
+        private final StreamStats video = new StreamStats();
+
+        private Participant(int token, int userId, Room room) {
+            this.token = token;
+            this.userId = userId;
+            this.room = room;
+        }
+    }
+
+    /**
+     * Participants of one call. The array is replaced on every change, so the relay thread
+     * iterates it without locking or allocating.
+     */
+    private static final class Room {
+        private final String callId;
+        private volatile Participant[] participants = new Participant[0];
+
+        private Room(String callId) {
+            this.callId = callId;
+        }
+
+        private void add(Participant participant) {
+            Participant[] current = participants;
+            Participant[] updated = new Participant[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = participant;
+            participants = updated;
+        }
+
+        private void remove(Participant participant) {
+            List<Participant> remaining = new ArrayList<>(participants.length);
+            for (Participant current : participants) {
+                if (current != participant) {
+                    remaining.add(current);
+                }
+            }
+            participants = remaining.toArray(new Participant[0]);
+        }
+    }
+}
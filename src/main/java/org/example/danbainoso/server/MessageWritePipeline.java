@@ -0,0 +1,196 @@
+package org.example.danbainoso.server;
+
+import org.example.danbainoso.database.MessageDAO;
+import org.example.danbainoso.shared.models.Message;
+import org.example.danbainoso.utils.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Group-commit pipeline for new messages. Concurrent senders hand their message to a single writer
+ * thread, which inserts everything that arrived within the linger window as one JDBC batch in one
+ * transaction. Each sender's future completes only after the batch holding its message has committed.
+ */
+public class MessageWritePipeline {
+    private static final Logger logger = LoggerUtil.getLogger(MessageWritePipeline.class);
+
+    // Upper bound for a sender waiting on its commit, so a stuck writer cannot hold RMI threads forever
+    private static final long WRITE_TIMEOUT_SECONDS = 10;
+
+    private final MessageDAO messageDAO;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final LinkedBlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LatencyRecorder commitLatency = new LatencyRecorder(2048);
+
+    public MessageWritePipeline(MessageDAO messageDAO, int maxBatchSize, long lingerMillis) {
+        this.messageDAO = messageDAO;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+        this.writerThread = new Thread(this::runWriter, "message-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public CompletableFuture<Message> submit(Message message) {
+        CompletableFuture<Message> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new SQLException("Message writer is shut down"));
+            return future;
+        }
+        PendingWrite pending = new PendingWrite(message, future);
+        queue.add(pending);
+        // Shut down after the check above: if the writer has already drained the queue, nobody will take this entry
+        if (!running && queue.remove(pending)) {
+            future.completeExceptionally(new SQLException("Message writer is shut down"));
+        }
+        return future;
+    }
+
+    /**
+     * Submit a message and wait until it has been committed.
+     */
+    public Message write(Message message) throws SQLException {
+        try {
+            return submit(message).get(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for message to be saved", e);
+        } catch (TimeoutException e) {
+            throw new SQLException("Timed out waiting for message to be saved", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Failed to save message", cause);
+        }
+    }
+
+    /**
+     * Stop accepting messages, write everything already queued and wait for the writer to finish.
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Message writer stopped: {}", this);
+    }
+
+    @Override
+    public String toString() {
+        long batches = batchCount.sum();
+        long written = writtenCount.sum();
+        return String.format("MessageWritePipeline{written=%d, failed=%d, batches=%d, avgBatchSize=%.2f, commit[%s]}",
+                written, failedCount.sum(), batches, batches == 0 ? 0.0 : written / (double) batches, commitLatency);
+    }
+
+    private void runWriter() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatchSize && running) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (PendingWrite pending : batch) {
+                    pending.future.completeExceptionally(new SQLException("Message writer is shut down"));
+                }
+                break;
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error in message writer", e);
+                for (PendingWrite pending : batch) {
+                    pending.future.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+        // Anything left after an interrupt cannot be written any more
+        PendingWrite pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(new SQLException("Message writer is shut down"));
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingWrite pending : batch) {
+            messages.add(pending.message);
+        }
+        long start = System.nanoTime();
+        try {
+            messageDAO.createMessages(messages);
+            commitLatency.record(System.nanoTime() - start);
+            batchCount.increment();
+            writtenCount.add(batch.size());
+            for (PendingWrite pending : batch) {
+                pending.future.complete(pending.message);
+            }
+        } catch (SQLException e) {
+            if (batch.size() == 1) {
+                failedCount.increment();
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            // The whole batch was rolled back; write one by one so a single bad row only fails its own sender
+            logger.warn("Message batch of {} failed, retrying individually: {}", batch.size(), e.getMessage());
+            for (PendingWrite pending : batch) {
+                try {
+                    pending.future.complete(messageDAO.createMessage(pending.message));
+                    batchCount.increment();
+                    writtenCount.increment();
+                } catch (SQLException single) {
+                    failedCount.increment();
+                    pending.future.completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    private static final class PendingWrite {
+        private final Message message;
+        private final CompletableFuture<Message> future;
+
+        private PendingWrite(Message message, CompletableFuture<Message> future) {
+            this.message = message;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.example.danbainoso.server;
+
+import org.example.danbainoso.database.GroupDAO;
+import org.example.danbainoso.shared.models.User;
+import org.example.danbainoso.utils.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends presence changes only to the users who care about them: friends, users sharing a group,
+ * and users who currently have the conversation open.
+ * Status changes are held for a short window so rapid ONLINE/OFFLINE flapping results in at most one event.
+ */
+public class PresenceNotifier {
+    private static final Logger logger = LoggerUtil.getLogger(PresenceNotifier.class);
+
+    private final FriendGraph friendGraph;
+    private final GroupDAO groupDAO;
+    private final DeliveryEngine deliveryEngine;
+    private final long coalesceMillis;
+    private final ScheduledExecutorService scheduler;
+
+    // user ID -> sorted IDs of friends and group co-members
+    private final ConcurrentHashMap<Integer, int[]> subscribersByUser = new ConcurrentHashMap<>();
+    // Bumped on every invalidation so a load racing with a change is not cached
+    private final AtomicLong modificationCount = new AtomicLong();
+    private final ConcurrentHashMap<Integer, Integer> viewedUserByViewer = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Set<Integer>> viewersByUser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, User.UserStatus> pendingStatus = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, User.UserStatus> publishedStatus = new ConcurrentHashMap<>();
+
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder notificationCount = new LongAdder();
+
+    public PresenceNotifier(FriendGraph friendGraph, GroupDAO groupDAO, DeliveryEngine deliveryEngine, long coalesceMillis) {
+        this.friendGraph = friendGraph;
+        this.groupDAO = groupDAO;
+        this.deliveryEngine = deliveryEngine;
+        this.coalesceMillis = Math.max(0, coalesceMillis);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "presence-notifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void statusChanged(int userId, User.UserStatus status) {
+        if (status == User.UserStatus.OFFLINE) {
+            setViewedUser(userId, null);
+        }
+        User.UserStatus previous = pendingStatus.put(userId, status);
+        if (previous != null) {
+            // A flush is already scheduled and will pick up the latest status
+            coalescedCount.increment();
+            return;
+        }
+        if (coalesceMillis == 0) {
+            flush(userId);
+        } else {
+            scheduler.schedule(() -> flush(userId), coalesceMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Record which user a viewer currently has open, or clear it with {@code null}.
+     */
+    public void setViewedUser(int viewerId, Integer viewedUserId) {
+        Integer previous = viewedUserId != null
+                ? viewedUserByViewer.put(viewerId, viewedUserId)
+                : viewedUserByViewer.remove(viewerId);
+        if (previous != null && !previous.equals(viewedUserId)) {
+            viewersByUser.computeIfPresent(previous, (id, viewers) -> {
+                viewers.remove(viewerId);
+                return viewers.isEmpty() ? null : viewers;
+            });
+        }
+        if (viewedUserId != null) {
+            viewersByUser.computeIfAbsent(viewedUserId, id -> ConcurrentHashMap.newKeySet()).add(viewerId);
+        }
+    }
+
+    /**
+     * Drop the cached subscriber list of a user after their friends or groups change.
+     */
+    public void invalidate(int userId) {
+        modificationCount.incrementAndGet();
+        subscribersByUser.remove(userId);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        logger.info("Presence notifier stopped: {}", this);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PresenceNotifier{cachedUsers=%d, published=%d, coalesced=%d, notifications=%d}",
+                subscribersByUser.size(), publishedCount.sum(), coalescedCount.sum(), notificationCount.sum());
+    }
+
+    private void flush(int userId) {
+        User.UserStatus status = pendingStatus.remove(userId);
+        if (status == null) {
+            return;
+        }
+        User.UserStatus lastPublished = publishedStatus.put(userId, status);
+        if (lastPublished == status) {
+            // Flapped back to the status everyone already has
+            coalescedCount.increment();
+            return;
+        }
+        publishedCount.increment();
+
+        Set<Integer> recipients = new TreeSet<>();
+        try {
+            for (int subscriberId : getSubscribers(userId)) {
+                recipients.add(subscriberId);
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to load presence subscribers for user {}", userId, e);
+        }
+        Set<Integer> viewers = viewersByUser.get(userId);
+        if (viewers != null) {
+            recipients.addAll(viewers);
+        }
+        recipients.remove(userId);
+
+        for (int recipientId : recipients) {
+            String clientKey = "user_" + recipientId;
+            if (deliveryEngine.isRegistered(clientKey)) {
+                deliveryEngine.enqueue(clientKey, callback -> callback.onUserStatusChanged(userId, status));
+                notificationCount.increment();
+            }
+        }
+    }
+
+    private int[] getSubscribers(int userId) throws SQLException {
+        int[] cached = subscribersByUser.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = modificationCount.get();
+        Set<Integer> ids = new TreeSet<>();
+        for (int friendId : friendGraph.getFriendIds(userId)) {
+            ids.add(friendId);
+        }
+        ids.addAll(groupDAO.getCoMemberIds(userId));
+        int[] loaded = ids.stream().mapToInt(Integer::intValue).toArray();
+        int[] result = subscribersByUser.compute(userId, (id, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            return modificationCount.get() == stamp ? loaded : null;
+        });
+        return result != null ? result : loaded;
+    }
+}
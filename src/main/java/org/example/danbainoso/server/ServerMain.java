@@ -1,8 +1,6 @@
 package org.example.danbainoso.server;
 
 import org.example.danbainoso.database.DatabaseConnection;
-import org.example.danbainoso.shared.ChatService;
-import org.example.danbainoso.shared.VideoService;
 import org.example.danbainoso.utils.Config;
 import org.example.danbainoso.utils.LoggerUtil;
 import org.example.danbainoso.utils.NetworkUtil;
@@ -16,6 +14,13 @@ public class ServerMain {
     
     public static void main(String[] args) {
         try {
+            // Bound every outgoing RMI call (client callbacks) so a hung client cannot hold a delivery thread forever.
+            // Must be set before the RMI transport is first used.
+            if (System.getProperty("sun.rmi.transport.tcp.responseTimeout") == null) {
+                System.setProperty("sun.rmi.transport.tcp.responseTimeout",
+                        String.valueOf(Config.getDeliveryCallTimeoutMillis()));
+            }
+            
             // Initialize database connection
             logger.info("Initializing database connection...");
             if (!DatabaseConnection.isHealthy()) {
@@ -54,8 +59,8 @@ public class ServerMain {
             // Note: ChatServiceImpl and VideoServiceImpl extend UnicastRemoteObject
             // which automatically exports them in the constructor, so we don't need to export again
             logger.info("Creating service implementations...");
-            ChatService chatService = new ChatServiceImpl();
-            VideoService videoService = new VideoServiceImpl();
+            ChatServiceImpl chatService = new ChatServiceImpl();
+            VideoServiceImpl videoService = new VideoServiceImpl(chatService.getMembershipIndex());
             
             // Create or get RMI registry
             Registry registry;
@@ -87,6 +92,8 @@ public class ServerMain {
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 logger.info("Shutting down server...");
                 try {
+                    chatService.shutdown();
+                    videoService.shutdown();
                     DatabaseConnection.close();
                     logger.info("Server shutdown complete");
                 } catch (Exception e) {
@@ -0,0 +1,78 @@
+package org.example.danbainoso.server;
+
+/**
+ * Receive statistics of one media stream, computed the way RTP receivers do (RFC 3550):
+ * loss from the extended sequence numbers seen against the ones expected, and interarrival jitter
+ * as a running average of how much the spacing of arrivals differs from the spacing of the sender's timestamps.
+ * Updated only by the relay thread.
+ */
+public class StreamStats {
+    private static final int SEQUENCE_MOD = 1 << 16;
+
+    private long packets;
+    private long bytes;
+    private long duplicatesOrLate;
+    private boolean started;
+    private int baseSequence;
+    // Highest sequence number seen, extended with the number of 16-bit wrap-arounds
+    private long maxExtendedSequence;
+    private long lastArrivalMillis;
+    private long lastTimestamp;
+    private double jitterMillis;
+
+    public void record(int sequence, int timestamp, int length, long arrivalMillis) {
+        packets++;
+        bytes += length;
+        if (!started) {
+            started = true;
+            baseSequence = sequence;
+            maxExtendedSequence = sequence;
+            lastArrivalMillis = arrivalMillis;
+            lastTimestamp = timestamp;
+            return;
+        }
+        int maxSequence = (int) (maxExtendedSequence % SEQUENCE_MOD);
+        int delta = (sequence - maxSequence) & (SEQUENCE_MOD - 1);
+        if (delta != 0 && delta < SEQUENCE_MOD / 2) {
+            maxExtendedSequence += delta;
+        } else {
+            // Repeated or out of order: counted as received but it does not move the window
+            duplicatesOrLate++;
+        }
+        long transitChange = (arrivalMillis - lastArrivalMillis) - ((long) timestamp - lastTimestamp);
+        jitterMillis += (Math.abs(transitChange) - jitterMillis) / 16.0;
+        lastArrivalMillis = arrivalMillis;
+        lastTimestamp = timestamp;
+    }
+
+    public long getPackets() {
+        return packets;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getExpected() {
+        return started ? maxExtendedSequence - baseSequence + 1 : 0;
+    }
+
+    public long getLost() {
+        return Math.max(0, getExpected() - packets);
+    }
+
+    public double getLossRatio() {
+        long expected = getExpected();
+        return expected == 0 ? 0.0 : getLost() / (double) expected;
+    }
+
+    public double getJitterMillis() {
+        return jitterMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StreamStats{packets=%d, bytes=%d, lost=%d (%.1f%%), late=%d, jitterMs=%.1f}",
+                packets, bytes, getLost(), getLossRatio() * 100, duplicatesOrLate, jitterMillis);
+    }
+}
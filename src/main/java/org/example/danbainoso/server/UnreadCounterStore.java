@@ -0,0 +1,269 @@
+package org.example.danbainoso.server;
+
+import org.example.danbainoso.database.UnreadCounterDAO;
+import org.example.danbainoso.shared.models.UnreadCounts;
+import org.example.danbainoso.utils.LoggerUtil;
+import org.slf4j.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory unread counters per (user, conversation partner), persisted to the
+ * {@code unread_counters} table by a periodic flush.
+ * Increments for users whose counters have not been read yet are kept as deltas and added to the
+ * stored value on flush, so sending a message never has to load the receiver's counters first.
+ * Group unread counts are not kept here; they are counted from the members' read cursors.
+ */
+public class UnreadCounterStore {
+    private static final Logger logger = LoggerUtil.getLogger(UnreadCounterStore.class);
+
+    private final UnreadCounterDAO unreadCounterDAO;
+    private final ConcurrentHashMap<Integer, Counters> countersByUser = new ConcurrentHashMap<>();
+    // Serializes loads against flushes so a load never sees a half-flushed delta
+    private final ReentrantLock storageLock = new ReentrantLock();
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    public UnreadCounterStore(UnreadCounterDAO unreadCounterDAO, long flushIntervalMillis) {
+        this.unreadCounterDAO = unreadCounterDAO;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "unread-counter-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(100, flushIntervalMillis);
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void incrementUser(int userId, int peerId) {
+        update(userId, counters -> counters.add(peerId));
+    }
+
+    public void resetUser(int userId, int peerId) {
+        update(userId, counters -> counters.reset(peerId));
+    }
+
+    public UnreadCounts getCounts(int userId) throws SQLException {
+        Counters counters = countersByUser.get(userId);
+        if (counters == null || !counters.loaded) {
+            storageLock.lock();
+            try {
+                counters = countersByUser.computeIfAbsent(userId, id -> new Counters());
+                if (!counters.loaded) {
+                    counters.applyStored(unreadCounterDAO.getCounters(userId));
+                    loads.increment();
+                }
+            } finally {
+                storageLock.unlock();
+            }
+        }
+        return counters.snapshot();
+    }
+
+    public int getTotalUserCount(int userId) throws SQLException {
+        return getCounts(userId).getTotalUserCount();
+    }
+
+    /**
+     * Drop the counters of a user who went offline; unsaved changes are kept until the next flush.
+     */
+    public void release(int userId) {
+        storageLock.lock();
+        try {
+            countersByUser.computeIfPresent(userId, (id, counters) -> {
+                counters.unload();
+                return counters.isIdle() ? null : counters;
+            });
+        } finally {
+            storageLock.unlock();
+        }
+    }
+
+    /**
+     * Write all pending changes to the database in one transaction.
+     */
+    public void flush() throws SQLException {
+        storageLock.lock();
+        try {
+            List<UnreadCounterDAO.CounterWrite> writes = new ArrayList<>();
+            Map<Integer, List<Drained>> drainedByUser = new HashMap<>();
+            for (Map.Entry<Integer, Counters> entry : countersByUser.entrySet()) {
+                List<Drained> drained = entry.getValue().drain();
+                if (!drained.isEmpty()) {
+                    drainedByUser.put(entry.getKey(), drained);
+                    for (Drained item : drained) {
+                        writes.add(new UnreadCounterDAO.CounterWrite(entry.getKey(), UnreadCounterDAO.TYPE_USER, item.peerId,
+                                item.value, item.additive));
+                    }
+                }
+            }
+            try {
+                unreadCounterDAO.saveCounters(writes);
+                flushedRows.add(writes.size());
+            } catch (SQLException e) {
+                for (Map.Entry<Integer, List<Drained>> entry : drainedByUser.entrySet()) {
+                    update(entry.getKey(), counters -> counters.restore(entry.getValue()));
+                }
+                throw e;
+            }
+            // Unloaded users whose deltas are now stored need no memory
+            for (Integer userId : drainedByUser.keySet()) {
+                countersByUser.computeIfPresent(userId, (id, counters) -> counters.isIdle() ? null : counters);
+            }
+        } finally {
+            storageLock.unlock();
+        }
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        try {
+            flush();
+        } catch (SQLException e) {
+            logger.error("Failed to flush unread counters on shutdown", e);
+        }
+        logger.info("Unread counter store stopped: {}", this);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("UnreadCounterStore{users=%d, loads=%d, flushedRows=%d}",
+                countersByUser.size(), loads.sum(), flushedRows.sum());
+    }
+
+    // Mutate inside compute so a concurrent idle-entry removal cannot drop the change
+    private void update(int userId, Consumer<Counters> change) {
+        countersByUser.compute(userId, (id, counters) -> {
+            Counters target = counters != null ? counters : new Counters();
+            change.accept(target);
+            return target;
+        });
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            logger.error("Failed to flush unread counters", e);
+        } catch (RuntimeException e) {
+            logger.error("Unexpected error while flushing unread counters", e);
+        }
+    }
+
+    private static final class Drained {
+        private final int peerId;
+        private final int value;
+        private final boolean additive;
+
+        private Drained(int peerId, int value, boolean additive) {
+            this.peerId = peerId;
+            this.value = value;
+            this.additive = additive;
+        }
+    }
+
+    /**
+     * Counters of one user. Until {@link #loaded} is set, values not marked absolute are deltas
+     * on top of whatever the database holds.
+     */
+    private static final class Counters {
+        private final Map<Integer, Integer> values = new HashMap<>();
+        private final Set<Integer> dirty = new HashSet<>();
+        private final Set<Integer> absolute = new HashSet<>();
+        private volatile boolean loaded;
+
+        synchronized void add(int key) {
+            values.merge(key, 1, Integer::sum);
+            dirty.add(key);
+        }
+
+        synchronized void reset(int key) {
+            values.put(key, 0);
+            dirty.add(key);
+            if (!loaded) {
+                absolute.add(key);
+            }
+        }
+
+        synchronized void applyStored(UnreadCounts stored) {
+            merge(stored.getUserCounts());
+            // Every in-memory value is now the full count, so later flushes replace the stored value
+            absolute.clear();
+            loaded = true;
+        }
+
+        synchronized UnreadCounts snapshot() {
+            UnreadCounts counts = new UnreadCounts();
+            for (Map.Entry<Integer, Integer> entry : values.entrySet()) {
+                if (entry.getValue() > 0) {
+                    counts.getUserCounts().put(entry.getKey(), entry.getValue());
+                }
+            }
+            return counts;
+        }
+
+        synchronized List<Drained> drain() {
+            List<Drained> drained = new ArrayList<>(dirty.size());
+            for (int key : dirty) {
+                int value = values.getOrDefault(key, 0);
+                boolean additive = !loaded && !absolute.contains(key);
+                drained.add(new Drained(key, value, additive));
+                if (!loaded) {
+                    // Once written, the database holds this value; keep only what arrives afterwards
+                    values.remove(key);
+                }
+            }
+            dirty.clear();
+            absolute.clear();
+            return drained;
+        }
+
+        synchronized void restore(List<Drained> drained) {
+            for (Drained item : drained) {
+                dirty.add(item.peerId);
+                if (loaded || absolute.contains(item.peerId)) {
+                    // Loaded values never left memory, and a reset since the drain supersedes the old value
+                    continue;
+                }
+                values.merge(item.peerId, item.value, Integer::sum);
+                if (!item.additive) {
+                    absolute.add(item.peerId);
+                }
+            }
+        }
+
+        synchronized void unload() {
+            // Unsaved values become absolute writes; everything else is read again on next use
+            values.keySet().retainAll(dirty);
+            absolute.addAll(dirty);
+            loaded = false;
+        }
+
+        synchronized boolean isIdle() {
+            return !loaded && values.isEmpty() && dirty.isEmpty();
+        }
+
+        private void merge(Map<Integer, Integer> stored) {
+            for (Map.Entry<Integer, Integer> entry : stored.entrySet()) {
+                if (!absolute.contains(entry.getKey())) {
+                    values.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                }
+            }
+        }
+    }
+}
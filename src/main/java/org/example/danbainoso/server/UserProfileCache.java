@@ -0,0 +1,164 @@
+package org.example.danbainoso.server;
+
+import org.example.danbainoso.database.UserDAO;
+import org.example.danbainoso.shared.models.User;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of user rows keyed by user ID, with a time-to-live and explicit invalidation.
+ * IDs that do not exist are cached too, so repeated lookups of a missing user do not reach the database.
+ * Cached {@link User} objects are shared and must not be modified by callers.
+ */
+public class UserProfileCache {
+    private static final int STRIPES = 64;
+
+    private final UserDAO userDAO;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Bumped on every invalidation so a load that raced with a change is not cached
+    private final long[] stripeStamps = new long[STRIPES];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public UserProfileCache(UserDAO userDAO, int maxEntries, long ttlMillis) {
+        this.userDAO = userDAO;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+    }
+
+    /**
+     * @return the user, or {@code null} if no user has this ID
+     */
+    public User getUser(int userId) throws SQLException {
+        long stamp;
+        synchronized (this) {
+            Entry entry = lookup(userId);
+            if (entry != null) {
+                hits.increment();
+                return entry.user;
+            }
+            misses.increment();
+            stamp = stripeStamps[stripe(userId)];
+        }
+        User user = userDAO.getUserById(userId);
+        synchronized (this) {
+            store(userId, user, stamp);
+        }
+        return user;
+    }
+
+    /**
+     * Look up several users at once; all misses are loaded with a single query.
+     * IDs that do not exist are absent from the result.
+     */
+    public Map<Integer, User> getUsers(Collection<Integer> userIds) throws SQLException {
+        Map<Integer, User> result = new HashMap<>();
+        Set<Integer> missing = new LinkedHashSet<>();
+        long[] stamps;
+        synchronized (this) {
+            for (Integer userId : userIds) {
+                if (userId == null || result.containsKey(userId) || missing.contains(userId)) {
+                    continue;
+                }
+                Entry entry = lookup(userId);
+                if (entry != null) {
+                    hits.increment();
+                    if (entry.user != null) {
+                        result.put(userId, entry.user);
+                    }
+                } else {
+                    misses.increment();
+                    missing.add(userId);
+                }
+            }
+            if (missing.isEmpty()) {
+                return result;
+            }
+            stamps = stripeStamps.clone();
+        }
+        Map<Integer, User> loaded = new HashMap<>();
+        for (User user : userDAO.getUsersByIds(missing)) {
+            loaded.put(user.getUserId(), user);
+        }
+        synchronized (this) {
+            for (Integer userId : missing) {
+                User user = loaded.get(userId);
+                store(userId, user, stamps[stripe(userId)]);
+                if (user != null) {
+                    result.put(userId, user);
+                }
+            }
+        }
+        return result;
+    }
+
+    public synchronized void invalidate(int userId) {
+        stripeStamps[stripe(userId)]++;
+        entries.remove(userId);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        return String.format("UserProfileCache{entries=%d, hits=%d, misses=%d, hitRatio=%.2f, evictions=%d}",
+                entries.size(), hitCount, missCount, total == 0 ? 0.0 : hitCount / (double) total, evictions.sum());
+    }
+
+    private Entry lookup(int userId) {
+        Entry entry = entries.get(userId);
+        if (entry != null && System.nanoTime() - entry.loadedAt > ttlNanos) {
+            entries.remove(userId);
+            return null;
+        }
+        return entry;
+    }
+
+    private void store(int userId, User user, long stamp) {
+        if (stripeStamps[stripe(userId)] != stamp) {
+            return;
+        }
+        entries.put(userId, new Entry(user, System.nanoTime()));
+        while (entries.size() > maxEntries) {
+            Integer eldest = entries.keySet().iterator().next();
+            entries.remove(eldest);
+            evictions.increment();
+        }
+    }
+
+    private static int stripe(int userId) {
+        return userId & (STRIPES - 1);
+    }
+
+    private static final class Entry {
+        // null for an ID that does not exist
+        private final User user;
+        private final long loadedAt;
+
+        private Entry(User user, long loadedAt) {
+            this.user = user;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.example.danbainoso.server;
+
+import org.example.danbainoso.database.UserDAO;
+import org.example.danbainoso.shared.models.User;
+import org.example.danbainoso.shared.models.UserSearchPage;
+import org.example.danbainoso.shared.models.UserSummary;
+import org.example.danbainoso.utils.LoggerUtil;
+import org.example.danbainoso.utils.TextNormalizer;
+import org.slf4j.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prefix index over usernames and full names, folded with {@link TextNormalizer} so "nguyen" finds "Nguyễn".
+ * Each user is indexed under the folded username, the folded full name and every word of the full name,
+ * in a sorted map so a prefix lookup is a range scan.
+ * Results list the searcher's friends first, then everyone else in index order; the cursor is the position
+ * in that ranking, and a page only walks as far into the index as it needs.
+ * Until {@link #warm()} succeeds searches fall back to a prefix query without friend ranking.
+ */
+public class UserSearchIndex {
+    private static final Logger logger = LoggerUtil.getLogger(UserSearchIndex.class);
+    public static final int MAX_PAGE_SIZE = 50;
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final UserDAO userDAO;
+    private final FriendGraph friendGraph;
+    private final ConcurrentHashMap<Integer, UserSummary> usersById = new ConcurrentHashMap<>();
+    // "folded term \0 userId" -> userId
+    private final ConcurrentSkipListMap<String, Integer> terms = new ConcurrentSkipListMap<>();
+    private volatile boolean warmed = false;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public UserSearchIndex(UserDAO userDAO, FriendGraph friendGraph) {
+        this.userDAO = userDAO;
+        this.friendGraph = friendGraph;
+    }
+
+    public void warm() throws SQLException {
+        for (UserSummary user : userDAO.getAllUserSummaries()) {
+            put(user);
+        }
+        warmed = true;
+        logger.info("User search index warmed with {} users and {} terms", usersById.size(), terms.size());
+    }
+
+    /**
+     * Search users whose username, full name or any word of the full name starts with the query.
+     * The searcher is never part of the result, and a blank query matches nobody.
+     */
+    public UserSearchPage search(int requesterId, String query, int cursor, int limit) throws SQLException {
+        String prefix = TextNormalizer.fold(query);
+        int offset = Math.max(0, cursor);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        if (prefix.isEmpty()) {
+            return new UserSearchPage();
+        }
+        searches.increment();
+        if (!warmed) {
+            fallbacks.increment();
+            return searchDatabase(requesterId, query, offset, pageSize);
+        }
+
+        List<UserSummary> friends = matchingFriends(requesterId, prefix);
+        List<UserSummary> page = new ArrayList<>(pageSize);
+        int friendCount = 0;
+        for (int i = offset; i < friends.size() && page.size() < pageSize; i++) {
+            page.add(friends.get(i));
+            friendCount++;
+        }
+
+        // Everyone else, in index order; only walk as far as this page plus one to know if there is more
+        Set<Integer> skip = new HashSet<>();
+        skip.add(requesterId);
+        for (UserSummary friend : friends) {
+            skip.add(friend.getUserId());
+        }
+        int othersToSkip = Math.max(0, offset - friends.size());
+        int wanted = pageSize - page.size() + 1;
+        Set<Integer> others = new LinkedHashSet<>();
+        for (Integer userId : terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            if (skip.contains(userId) || others.contains(userId)) {
+                continue;
+            }
+            others.add(userId);
+            if (others.size() >= othersToSkip + wanted) {
+                break;
+            }
+        }
+
+        boolean hasMore = offset + page.size() < friends.size();
+        int position = 0;
+        for (Integer userId : others) {
+            if (position++ < othersToSkip) {
+                continue;
+            }
+            if (page.size() >= pageSize) {
+                hasMore = true;
+                break;
+            }
+            UserSummary user = usersById.get(userId);
+            if (user != null) {
+                page.add(user);
+            }
+        }
+        return new UserSearchPage(page, friendCount, hasMore ? offset + page.size() : -1);
+    }
+
+    /**
+     * Index a newly registered user, or re-index one whose name changed.
+     */
+    public synchronized void add(UserSummary user) {
+        UserSummary previous = usersById.get(user.getUserId());
+        if (previous != null) {
+            for (String term : termsOf(previous)) {
+                terms.remove(key(term, previous.getUserId()));
+            }
+        }
+        put(user);
+    }
+
+    public void statusChanged(int userId, User.UserStatus status) {
+        usersById.computeIfPresent(userId, (id, user) ->
+                new UserSummary(user.getUserId(), user.getUsername(), user.getFullName(), user.getAvatarUrl(), status));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("UserSearchIndex{warmed=%s, users=%d, terms=%d, searches=%d, fallbacks=%d}",
+                warmed, usersById.size(), terms.size(), searches.sum(), fallbacks.sum());
+    }
+
+    private void put(UserSummary user) {
+        usersById.put(user.getUserId(), user);
+        for (String term : termsOf(user)) {
+            terms.put(key(term, user.getUserId()), user.getUserId());
+        }
+    }
+
+    private List<UserSummary> matchingFriends(int requesterId, String prefix) throws SQLException {
+        List<UserSummary> friends = new ArrayList<>();
+        for (int friendId : friendGraph.getFriendIds(requesterId)) {
+            UserSummary friend = usersById.get(friendId);
+            if (friend != null && matches(friend, prefix)) {
+                friends.add(friend);
+            }
+        }
+        friends.sort(Comparator.comparing((UserSummary user) -> TextNormalizer.fold(user.getDisplayName()))
+                .thenComparingInt(UserSummary::getUserId));
+        return friends;
+    }
+
+    private UserSearchPage searchDatabase(int requesterId, String query, int offset, int pageSize) throws SQLException {
+        List<UserSummary> rows = userDAO.searchUserSummariesByPrefix(query.trim(), offset, pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        List<UserSummary> page = new ArrayList<>(pageSize);
+        for (UserSummary row : rows.subList(0, Math.min(rows.size(), pageSize))) {
+            // The searcher still takes a slot in the database ordering, so the cursor counts it
+            if (row.getUserId() != requesterId) {
+                page.add(row);
+            }
+        }
+        return new UserSearchPage(page, 0, hasMore ? offset + pageSize : -1);
+    }
+
+    private static boolean matches(UserSummary user, String prefix) {
+        for (String term : termsOf(user)) {
+            if (term.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> termsOf(UserSummary user) {
+        Set<String> result = new LinkedHashSet<>();
+        String username = TextNormalizer.fold(user.getUsername());
+        if (!username.isEmpty()) {
+            result.add(username);
+        }
+        String fullName = TextNormalizer.fold(user.getFullName());
+        if (!fullName.isEmpty()) {
+            result.add(fullName);
+            result.addAll(TextNormalizer.words(fullName));
+        }
+        return result;
+    }
+
+    private static String key(String term, int userId) {
+        return term + KEY_SEPARATOR + userId;
+    }
+}
@@ -1,66 +1,105 @@
 package org.example.danbainoso.server;
 
+import org.example.danbainoso.database.CallDAO;
 import org.example.danbainoso.shared.VideoClientCallback;
 import org.example.danbainoso.shared.VideoService;
+import org.example.danbainoso.shared.models.CallHistoryPage;
 import org.example.danbainoso.shared.models.CallRequest;
+import org.example.danbainoso.shared.models.MediaSession;
+import org.example.danbainoso.utils.Config;
 import org.example.danbainoso.utils.LoggerUtil;
 import org.slf4j.Logger;
 
+import java.io.IOException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class VideoServiceImpl extends UnicastRemoteObject implements VideoService {
     private static final Logger logger = LoggerUtil.getLogger(VideoServiceImpl.class);
     
-    private final ConcurrentHashMap<String, CallRequest> activeCalls;
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+    
+    private final CallDAO callDAO;
+    private final CallHistoryWriter historyWriter;
+    private final CallLifecycleManager calls;
     private final ConcurrentHashMap<String, VideoClientCallback> clients;
+    private final GroupMembershipIndex membershipIndex;
+    // Roster of each running group call
+    private final ConcurrentHashMap<String, CallRoom> rooms = new ConcurrentHashMap<>();
+    private final CallFanOut fanOut;
+    private final MediaRelay mediaRelay;
     
-    public VideoServiceImpl() throws RemoteException {
+    public VideoServiceImpl(GroupMembershipIndex membershipIndex) throws RemoteException {
         super();
-        this.activeCalls = new ConcurrentHashMap<>();
         this.clients = new ConcurrentHashMap<>();
+        this.membershipIndex = membershipIndex;
+        this.fanOut = new CallFanOut(userId -> clients.get(clientKey(userId)), this::clientFailed,
+                Config.getCallFanOutThreads(), Config.getCallFanOutTimeoutMillis());
+        this.callDAO = new CallDAO();
+        // Signalling only queues history changes; the writer thread does the database work
+        this.historyWriter = new CallHistoryWriter(callDAO, Config.getCallHistoryBatchSize(),
+                Config.getCallHistoryLingerMillis(), Config.getCallHistoryQueueCapacity());
+        this.calls = new CallLifecycleManager(Config.getCallRingTimeoutMillis(), Config.getCallLingerMillis(),
+                call -> notifyCallEnded(call.getCallId(), call), this::callStateChanged);
+        this.mediaRelay = new MediaRelay(Config.getServerVideoPort(), Config.getMediaSocketBufferKb() * 1024);
+        try {
+            mediaRelay.start();
+        } catch (IOException e) {
+            logger.error("Failed to start media relay on UDP port {}, calls will carry no media",
+                    Config.getServerVideoPort(), e);
+        }
     }
     
     @Override
     public CallRequest initiateCall(CallRequest callRequest) throws RemoteException {
-        activeCalls.put(callRequest.getCallId(), callRequest);
+        if (callRequest.getCallId() == null || callRequest.getCallId().isEmpty()) {
+            callRequest.setCallId(UUID.randomUUID().toString());
+        }
+        // History order and the group membership filters rely on created_at, so it comes from the server clock
+        callRequest.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+        if (callRequest.isGroupCall()) {
+            return initiateGroupCall(callRequest);
+        }
+        calls.ringing(callRequest);
         logger.info("Call initiated: {} from {} to {}", 
                 callRequest.getCallId(), 
                 callRequest.getCallerId(), 
                 callRequest.getReceiverId());
         
         // Notify receiver
-        String receiverKey = "user_" + callRequest.getReceiverId();
-        VideoClientCallback receiver = clients.get(receiverKey);
-        if (receiver != null) {
-            try {
-                receiver.onIncomingCall(callRequest);
-            } catch (RemoteException e) {
-                logger.error("Failed to notify receiver of incoming call", e);
-                clients.remove(receiverKey);
-            }
-        }
+        notifyUser(callRequest.getReceiverId(), callback -> callback.onIncomingCall(callRequest));
         
         return callRequest;
     }
     
     @Override
     public boolean acceptCall(String callId, int userId) throws RemoteException {
-        CallRequest callRequest = activeCalls.get(callId);
+        CallRequest callRequest = calls.get(callId);
         if (callRequest == null) {
             logger.warn("Call not found: {}", callId);
             return false;
         }
         
+        if (callRequest.isGroupCall()) {
+            return joinGroupCall(callRequest, userId);
+        }
+        
         if (callRequest.getReceiverId() != userId && callRequest.getCallerId() != userId) {
             logger.warn("User {} is not authorized to accept call {}", userId, callId);
             return false;
         }
         
-        callRequest.setStatus(CallRequest.CallStatus.ACCEPTED);
-        callRequest.setAnsweredAt(new java.sql.Timestamp(System.currentTimeMillis()));
-        activeCalls.put(callId, callRequest);
+        if (!calls.transition(callId, CallRequest.CallStatus.ACCEPTED)) {
+            logger.warn("Call {} can no longer be accepted, status {}", callId, callRequest.getStatus());
+            return false;
+        }
         
         logger.info("Call accepted: {} by user {}", callId, userId);
         
@@ -72,68 +111,133 @@ public class VideoServiceImpl extends UnicastRemoteObject implements VideoServic
     
     @Override
     public boolean rejectCall(String callId, int userId) throws RemoteException {
-        CallRequest callRequest = activeCalls.get(callId);
+        CallRequest callRequest = calls.get(callId);
         if (callRequest == null) {
             logger.warn("Call not found: {}", callId);
             return false;
         }
         
+        if (callRequest.isGroupCall()) {
+            // Declining a group call only concerns the one member; the others keep ringing
+            CallRoom room = rooms.get(callId);
+            boolean invited = room != null && room.isMember(userId);
+            if (invited) {
+                logger.info("Group call {} declined by user {}", callId, userId);
+            }
+            return invited;
+        }
+        
         if (callRequest.getReceiverId() != userId && callRequest.getCallerId() != userId) {
             logger.warn("User {} is not authorized to reject call {}", userId, callId);
             return false;
         }
         
-        callRequest.setStatus(CallRequest.CallStatus.REJECTED);
-        activeCalls.put(callId, callRequest);
+        // The call stays readable as REJECTED for a short linger, then the lifecycle manager drops it
+        if (!calls.transition(callId, CallRequest.CallStatus.REJECTED)) {
+            logger.warn("Call {} can no longer be rejected, status {}", callId, callRequest.getStatus());
+            return false;
+        }
         
         logger.info("Call rejected: {} by user {}", callId, userId);
         
         // Notify both parties
         notifyCallRejected(callId, callRequest);
         
-        // Remove from active calls after a delay
-        new Thread(() -> {
-            try {
-                Thread.sleep(5000);
-                activeCalls.remove(callId);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }).start();
-        
         return true;
     }
     
     @Override
     public boolean endCall(String callId, int userId) throws RemoteException {
-        CallRequest callRequest = activeCalls.get(callId);
+        CallRequest callRequest = calls.get(callId);
         if (callRequest == null) {
             logger.warn("Call not found: {}", callId);
             return false;
         }
         
+        if (callRequest.isGroupCall()) {
+            return leaveGroupCall(callRequest, userId);
+        }
+        
         if (callRequest.getCallerId() != userId && callRequest.getReceiverId() != userId) {
             logger.warn("User {} is not authorized to end call {}", userId, callId);
             return false;
         }
         
-        callRequest.setStatus(CallRequest.CallStatus.ENDED);
-        callRequest.setEndedAt(new java.sql.Timestamp(System.currentTimeMillis()));
+        if (!calls.transition(callId, CallRequest.CallStatus.ENDED)) {
+            logger.warn("Call {} is already finished, status {}", callId, callRequest.getStatus());
+            return false;
+        }
         
         logger.info("Call ended: {} by user {}", callId, userId);
         
         // Notify both parties
         notifyCallEnded(callId, callRequest);
         
-        // Remove from active calls
-        activeCalls.remove(callId);
-        
         return true;
     }
     
     @Override
     public CallRequest getCallRequest(String callId) throws RemoteException {
-        return activeCalls.get(callId);
+        return calls.get(callId);
+    }
+    
+    @Override
+    public List<Integer> getCallParticipants(String callId) throws RemoteException {
+        CallRoom room = rooms.get(callId);
+        if (room != null) {
+            return toList(room.getParticipants());
+        }
+        CallRequest callRequest = calls.get(callId);
+        if (callRequest == null || callRequest.getStatus() != CallRequest.CallStatus.ACCEPTED) {
+            return new ArrayList<>();
+        }
+        return toList(new int[]{callRequest.getCallerId(), callRequest.getReceiverId()});
+    }
+    
+    @Override
+    public MediaSession getMediaSession(String callId, int userId) throws RemoteException {
+        CallRequest callRequest = calls.get(callId);
+        if (callRequest == null || callRequest.getStatus() != CallRequest.CallStatus.ACCEPTED) {
+            logger.warn("Call {} has no media, it is not running", callId);
+            return null;
+        }
+        if (!mediaRelay.isRunning()) {
+            throw new RemoteException("Media relay is not available");
+        }
+        // Check and admit under the lock that ending the call (or leaving a group call) holds,
+        // so a call that ends in between cannot get its media reopened after it was closed
+        CallRoom room = rooms.get(callId);
+        Object lock = room != null ? room : callRequest;
+        synchronized (lock) {
+            boolean participant = room != null
+                    ? room.contains(userId)
+                    : callRequest.getCallerId() == userId || callRequest.getReceiverId() == userId;
+            if (callRequest.getStatus() != CallRequest.CallStatus.ACCEPTED || !participant) {
+                logger.warn("User {} cannot join media of call {}, status {}", userId, callId, callRequest.getStatus());
+                return null;
+            }
+            return new MediaSession(callId, mediaRelay.open(callId, userId), mediaRelay.getPort());
+        }
+    }
+    
+    @Override
+    public CallHistoryPage getCallHistory(int userId, long cursor, int limit) throws RemoteException {
+        try {
+            return callDAO.getCallHistory(userId, cursor, Math.max(1, Math.min(limit, MAX_HISTORY_PAGE_SIZE)));
+        } catch (SQLException e) {
+            logger.error("Error getting call history", e);
+            throw new RemoteException("Failed to get call history", e);
+        }
+    }
+    
+    @Override
+    public int getMissedCallCount(int userId) throws RemoteException {
+        try {
+            return callDAO.getMissedCallCount(userId);
+        } catch (SQLException e) {
+            logger.error("Error getting missed call count", e);
+            throw new RemoteException("Failed to get missed call count", e);
+        }
     }
     
     @Override
@@ -146,81 +250,196 @@ public class VideoServiceImpl extends UnicastRemoteObject implements VideoServic
     public void unregisterCallClient(String clientId) throws RemoteException {
         clients.remove(clientId);
         logger.info("Call client unregistered: {}", clientId);
+        Integer userId = userIdOf(clientId);
+        if (userId != null) {
+            finishCallsOf(userId);
+        }
     }
     
-    // Notification methods
-    private void notifyCallAccepted(String callId, CallRequest callRequest) {
-        String callerKey = "user_" + callRequest.getCallerId();
-        String receiverKey = "user_" + callRequest.getReceiverId();
-        
-        VideoClientCallback caller = clients.get(callerKey);
-        if (caller != null) {
-            try {
-                caller.onCallAccepted(callId);
-            } catch (RemoteException e) {
-                logger.error("Failed to notify caller", e);
-                clients.remove(callerKey);
-            }
+    public int getActiveCallCount() {
+        return calls.getActiveCount();
+    }
+    
+    public int getRingingCallCount() {
+        return calls.getRingingCount();
+    }
+    
+    public long getExpiredCallCount() {
+        return calls.getExpiredCount();
+    }
+    
+    public int getGroupCallCount() {
+        return rooms.size();
+    }
+    
+    public MediaRelay getMediaRelay() {
+        return mediaRelay;
+    }
+    
+    public void shutdown() {
+        mediaRelay.shutdown();
+        calls.shutdown();
+        fanOut.shutdown();
+        historyWriter.shutdown();
+    }
+    
+    private CallRequest initiateGroupCall(CallRequest callRequest) throws RemoteException {
+        int groupId = callRequest.getGroupId();
+        int[] members;
+        try {
+            members = membershipIndex.getMemberIds(groupId);
+        } catch (SQLException e) {
+            logger.error("Error loading members of group {}", groupId, e);
+            throw new RemoteException("Failed to start group call: " + e.getMessage(), e);
         }
+        if (Arrays.binarySearch(members, callRequest.getCallerId()) < 0) {
+            throw new RemoteException("Bạn không phải thành viên của nhóm này.");
+        }
+        // A group call has no single receiver; the caller stands in so the history row stays valid.
+        // CallDAO finds group calls for the other members through group_members instead
+        callRequest.setReceiverId(callRequest.getCallerId());
+        CallRoom room = new CallRoom(callRequest.getCallId(), groupId, members);
+        room.join(callRequest.getCallerId());
+        rooms.put(callRequest.getCallId(), room);
+        calls.ringing(callRequest);
+        logger.info("Group call initiated: {} by {} in group {} ({} members)",
+                callRequest.getCallId(), callRequest.getCallerId(), groupId, members.length);
         
-        VideoClientCallback receiver = clients.get(receiverKey);
-        if (receiver != null) {
-            try {
-                receiver.onCallAccepted(callId);
-            } catch (RemoteException e) {
-                logger.error("Failed to notify receiver", e);
-                clients.remove(receiverKey);
+        // Ring every other member in one round
+        fanOut.fanOut(members, callRequest.getCallerId(), callback -> callback.onIncomingCall(callRequest));
+        return callRequest;
+    }
+    
+    private boolean joinGroupCall(CallRequest callRequest, int userId) {
+        String callId = callRequest.getCallId();
+        CallRoom room = rooms.get(callId);
+        if (room == null || !room.isMember(userId)) {
+            logger.warn("User {} is not authorized to join call {}", userId, callId);
+            return false;
+        }
+        synchronized (room) {
+            // The first member to answer turns the ringing call into a running one
+            if (callRequest.getStatus() == CallRequest.CallStatus.PENDING) {
+                calls.transition(callId, CallRequest.CallStatus.ACCEPTED);
+            }
+            if (callRequest.getStatus() != CallRequest.CallStatus.ACCEPTED) {
+                logger.warn("Call {} can no longer be joined, status {}", callId, callRequest.getStatus());
+                return false;
+            }
+            if (!room.join(userId)) {
+                return true;
             }
         }
+        logger.info("User {} joined group call {} ({} in call)", userId, callId, room.size());
+        fanOut.fanOut(room.getMembers(), userId, callback -> callback.onParticipantJoined(callId, userId));
+        return true;
     }
     
-    private void notifyCallRejected(String callId, CallRequest callRequest) {
-        String callerKey = "user_" + callRequest.getCallerId();
-        String receiverKey = "user_" + callRequest.getReceiverId();
-        
-        VideoClientCallback caller = clients.get(callerKey);
-        if (caller != null) {
-            try {
-                caller.onCallRejected(callId);
-            } catch (RemoteException e) {
-                logger.error("Failed to notify caller", e);
-                clients.remove(callerKey);
+    private boolean leaveGroupCall(CallRequest callRequest, int userId) {
+        String callId = callRequest.getCallId();
+        CallRoom room = rooms.get(callId);
+        if (room == null) {
+            logger.warn("Call {} is already finished, status {}", callId, callRequest.getStatus());
+            return false;
+        }
+        boolean ended;
+        synchronized (room) {
+            if (!room.leave(userId)) {
+                logger.warn("User {} is not in call {}", userId, callId);
+                return false;
             }
+            // The call is over when the last participant leaves
+            ended = room.size() == 0 && calls.transition(callId, CallRequest.CallStatus.ENDED);
+            mediaRelay.close(callId, userId);
         }
-        
-        VideoClientCallback receiver = clients.get(receiverKey);
-        if (receiver != null) {
-            try {
-                receiver.onCallRejected(callId);
-            } catch (RemoteException e) {
-                logger.error("Failed to notify receiver", e);
-                clients.remove(receiverKey);
+        logger.info("User {} left group call {} ({} in call)", userId, callId, room.size());
+        if (ended) {
+            logger.info("Call ended: {} by user {}", callId, userId);
+            notifyCallEnded(callId, callRequest);
+        } else {
+            fanOut.fanOut(room.getMembers(), userId, callback -> callback.onParticipantLeft(callId, userId));
+        }
+        return true;
+    }
+    
+    // Called under the call's lock for every new call and transition; must not block
+    private void callStateChanged(CallRequest call) {
+        historyWriter.record(call);
+        CallRequest.CallStatus status = call.getStatus();
+        if (status != CallRequest.CallStatus.PENDING && status != CallRequest.CallStatus.ACCEPTED) {
+            mediaRelay.closeCall(call.getCallId());
+        }
+    }
+    
+    // End the calls of a user who is gone and tell whoever was on the other side
+    private void finishCallsOf(int userId) {
+        for (CallRequest call : calls.userGone(userId)) {
+            int otherId = call.getCallerId() == userId ? call.getReceiverId() : call.getCallerId();
+            logger.info("Call {} finished as {} because user {} disconnected", call.getCallId(), call.getStatus(), userId);
+            notifyUser(otherId, callback -> callback.onCallEnded(call.getCallId()));
+        }
+        for (CallRoom room : rooms.values()) {
+            if (room.contains(userId)) {
+                CallRequest call = calls.get(room.getCallId());
+                if (call != null) {
+                    leaveGroupCall(call, userId);
+                }
             }
         }
     }
     
+    // Notification methods
+    private void notifyCallAccepted(String callId, CallRequest callRequest) {
+        notifyUser(callRequest.getCallerId(), callback -> callback.onCallAccepted(callId));
+        notifyUser(callRequest.getReceiverId(), callback -> callback.onCallAccepted(callId));
+    }
+    
+    private void notifyCallRejected(String callId, CallRequest callRequest) {
+        notifyUser(callRequest.getCallerId(), callback -> callback.onCallRejected(callId));
+        notifyUser(callRequest.getReceiverId(), callback -> callback.onCallRejected(callId));
+    }
+    
     private void notifyCallEnded(String callId, CallRequest callRequest) {
-        String callerKey = "user_" + callRequest.getCallerId();
-        String receiverKey = "user_" + callRequest.getReceiverId();
-        
-        VideoClientCallback caller = clients.get(callerKey);
-        if (caller != null) {
-            try {
-                caller.onCallEnded(callId);
-            } catch (RemoteException e) {
-                logger.error("Failed to notify caller", e);
-                clients.remove(callerKey);
-            }
+        CallRoom room = rooms.remove(callId);
+        if (room != null) {
+            fanOut.fanOut(room.getMembers(), -1, callback -> callback.onCallEnded(callId));
+            return;
         }
-        
-        VideoClientCallback receiver = clients.get(receiverKey);
-        if (receiver != null) {
-            try {
-                receiver.onCallEnded(callId);
-            } catch (RemoteException e) {
-                logger.error("Failed to notify receiver", e);
-                clients.remove(receiverKey);
-            }
+        notifyUser(callRequest.getCallerId(), callback -> callback.onCallEnded(callId));
+        notifyUser(callRequest.getReceiverId(), callback -> callback.onCallEnded(callId));
+    }
+    
+    private void notifyUser(int userId, CallFanOut.CallNotification notification) {
+        fanOut.send(userId, notification);
+    }
+    
+    // A callback failed: the client is gone, so finish its calls off the fan-out thread
+    private void clientFailed(VideoClientCallback callback, int userId) {
+        if (clients.remove(clientKey(userId), callback)) {
+            calls.execute(() -> finishCallsOf(userId));
+        }
+    }
+    
+    private static String clientKey(int userId) {
+        return "user_" + userId;
+    }
+    
+    private static List<Integer> toList(int[] userIds) {
+        List<Integer> list = new ArrayList<>(userIds.length);
+        for (int userId : userIds) {
+            list.add(userId);
+        }
+        return list;
+    }
+    
+    private static Integer userIdOf(String clientId) {
+        if (clientId == null || !clientId.startsWith("user_")) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(clientId.substring("user_".length()));
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
 }
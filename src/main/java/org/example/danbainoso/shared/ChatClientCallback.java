@@ -1,11 +1,13 @@
 package org.example.danbainoso.shared;
 
+import org.example.danbainoso.shared.models.ChatEvent;
 import org.example.danbainoso.shared.models.Message;
 import org.example.danbainoso.shared.models.User;
 import org.example.danbainoso.shared.models.Friendship;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 public interface ChatClientCallback extends Remote {
     void onMessageReceived(Message message) throws RemoteException;
@@ -16,5 +18,14 @@ public interface ChatClientCallback extends Remote {
     void onMessageUpdated(Message message) throws RemoteException;
     void onMessageDeleted(int messageId) throws RemoteException;
     void onFriendRequestReceived(Friendship friendship) throws RemoteException;
-}
 
+    /**
+     * Receive a burst of events in a single remote call.
+     * The default implementation runs on the client and replays each event through the single-event methods.
+     */
+    default void onEvents(List<ChatEvent> events) throws RemoteException {
+        for (ChatEvent event : events) {
+            event.dispatch(this);
+        }
+    }
+}
@@ -2,8 +2,13 @@ package org.example.danbainoso.shared;
 
 import org.example.danbainoso.shared.models.BlockStatus;
 import org.example.danbainoso.shared.models.Group;
+import org.example.danbainoso.shared.models.GroupReadCursor;
 import org.example.danbainoso.shared.models.Message;
+import org.example.danbainoso.shared.models.MessageSearchScope;
+import org.example.danbainoso.shared.models.UnreadCounts;
 import org.example.danbainoso.shared.models.User;
+import org.example.danbainoso.shared.models.UserSearchPage;
+import org.example.danbainoso.shared.models.UserSummary;
 import org.example.danbainoso.shared.models.Friendship;
 
 import java.rmi.Remote;
@@ -16,8 +21,16 @@ public interface ChatService extends Remote {
     User login(String username, String password) throws RemoteException;
     boolean register(User user) throws RemoteException;
     boolean updateUserStatus(int userId, User.UserStatus status) throws RemoteException;
+    // Unbounded substring scans; use the paged searchUsers below
+    @Deprecated
     List<User> searchUsers(String keyword) throws RemoteException;
+    @Deprecated
+    List<UserSummary> searchUserSummaries(String keyword) throws RemoteException;
+    // Prefix search, friends first; pass the page's next cursor (0 for the first page)
+    UserSearchPage searchUsers(int requesterId, String query, int cursor, int limit) throws RemoteException;
     User getUserById(int userId) throws RemoteException;
+    List<UserSummary> getUsersByIds(List<Integer> userIds) throws RemoteException;
+    void setViewedUser(int viewerId, Integer viewedUserId) throws RemoteException;
     
     // Message operations
     Message sendMessage(Message message) throws RemoteException;
@@ -25,8 +38,21 @@ public interface ChatService extends Remote {
     List<Message> getPrivateMessages(int userId1, int userId2, int limit, int offset) throws RemoteException;
     List<Message> getGroupMessages(int groupId, int limit) throws RemoteException;
     List<Message> getGroupMessages(int groupId, int limit, int offset) throws RemoteException;
+    // Cursor-based history: messages older than beforeMessageId (0 for the newest page), oldest first
+    List<Message> getPrivateMessagesBefore(int userId1, int userId2, int beforeMessageId, int limit) throws RemoteException;
+    List<Message> getGroupMessagesBefore(int groupId, int beforeMessageId, int limit) throws RemoteException;
+    // Delta sync: messages newer than afterMessageId, oldest first; a full page means there may be more
+    List<Message> getPrivateMessagesAfter(int userId1, int userId2, int afterMessageId, int limit) throws RemoteException;
+    List<Message> getGroupMessagesAfter(int groupId, int afterMessageId, int limit) throws RemoteException;
+    // Full-text search, newest first; pass the last result's message ID as the cursor (0 for the first page)
+    List<Message> searchMessages(int userId, String query, MessageSearchScope scope, int beforeMessageId, int limit) throws RemoteException;
     boolean markMessagesAsRead(int receiverId, int senderId) throws RemoteException;
     int getUnreadCount(int userId) throws RemoteException;
+    UnreadCounts getUnreadCounts(int userId) throws RemoteException;
+    boolean markGroupMessagesAsRead(int userId, int groupId) throws RemoteException;
+    int getGroupUnreadCount(int userId, int groupId) throws RemoteException;
+    // Per-member read positions, for rendering "seen by" in a group
+    List<GroupReadCursor> getGroupReadCursors(int groupId) throws RemoteException;
     boolean editMessage(int messageId, int editorUserId, String newContent) throws RemoteException;
     boolean deleteMessage(int messageId, int requesterUserId) throws RemoteException;
 
@@ -40,7 +66,9 @@ public interface ChatService extends Remote {
     boolean isBlocked(int userId1, int userId2) throws RemoteException;
     BlockStatus getBlockStatus(int userId1, int userId2) throws RemoteException;
     List<Friendship> getFriendRequests(int userId) throws RemoteException;
+    @Deprecated
     List<User> getFriends(int userId) throws RemoteException;
+    List<UserSummary> getFriendSummaries(int userId) throws RemoteException;
     
     // Group operations
     Group createGroup(Group group) throws RemoteException;
@@ -51,7 +79,9 @@ public interface ChatService extends Remote {
     boolean addMemberToGroup(int groupId, int userId, int requesterId) throws RemoteException;
     boolean removeMemberFromGroup(int groupId, int userId, int requesterId) throws RemoteException;
     boolean deleteGroup(int groupId, int requesterId) throws RemoteException;
+    @Deprecated
     List<User> getGroupMembers(int groupId) throws RemoteException;
+    List<UserSummary> getGroupMemberSummaries(int groupId) throws RemoteException;
     
     // Callback registration for real-time updates
     void registerClient(String clientId, ChatClientCallback callback) throws RemoteException;
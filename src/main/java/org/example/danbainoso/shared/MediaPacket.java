@@ -0,0 +1,71 @@
+package org.example.danbainoso.shared;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format of the UDP media path between clients and the server's media relay.
+ * Every datagram starts with a fixed 12-byte header followed by the payload:
+ * <pre>
+ *  0      version
+ *  1      type (HELLO, AUDIO, VIDEO, BYE, REPORT)
+ *  2..3   sequence number, per sender and type, wraps at 65536
+ *  4..7   sender's media clock in milliseconds
+ *  8..11  sender's media token from {@link VideoService#getMediaSession}
+ * </pre>
+ * The relay forwards media and report datagrams unchanged, so receivers tell streams apart by token and type.
+ * Accessors use absolute positions and never move the buffer's position.
+ */
+public final class MediaPacket {
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 12;
+    // Payload per datagram that stays under a typical 1500-byte MTU
+    public static final int MAX_PAYLOAD = 1200;
+    public static final int MAX_PACKET_SIZE = HEADER_SIZE + MAX_PAYLOAD;
+
+    // Binds the token to the address the datagram came from; sent on start and periodically as keepalive
+    public static final byte TYPE_HELLO = 0;
+    public static final byte TYPE_AUDIO = 1;
+    public static final byte TYPE_VIDEO = 2;
+    // Sender is leaving the call
+    public static final byte TYPE_BYE = 3;
+    // Receiver's view of another participant's stream, so that sender can adapt its rate
+    public static final byte TYPE_REPORT = 4;
+
+    private MediaPacket() {
+    }
+
+    /**
+     * Write a header at the buffer's position and advance past it; the payload goes next.
+     */
+    public static void writeHeader(ByteBuffer buffer, byte type, int sequence, int timestamp, int token) {
+        buffer.put((byte) VERSION);
+        buffer.put(type);
+        buffer.putShort((short) sequence);
+        buffer.putInt(timestamp);
+        buffer.putInt(token);
+    }
+
+    /**
+     * @param length number of bytes received into the buffer, starting at index 0
+     */
+    public static boolean isValid(ByteBuffer buffer, int length) {
+        return length >= HEADER_SIZE && buffer.get(0) == VERSION
+                && buffer.get(1) >= TYPE_HELLO && buffer.get(1) <= TYPE_REPORT;
+    }
+
+    public static byte type(ByteBuffer buffer) {
+        return buffer.get(1);
+    }
+
+    public static int sequence(ByteBuffer buffer) {
+        return buffer.getShort(2) & 0xFFFF;
+    }
+
+    public static int timestamp(ByteBuffer buffer) {
+        return buffer.getInt(4);
+    }
+
+    public static int token(ByteBuffer buffer) {
+        return buffer.getInt(8);
+    }
+}
@@ -10,5 +10,9 @@ public interface VideoClientCallback extends Remote {
     void onCallAccepted(String callId) throws RemoteException;
     void onCallRejected(String callId) throws RemoteException;
     void onCallEnded(String callId) throws RemoteException;
+    
+    // Group calls: someone joined or left a call that is still running
+    void onParticipantJoined(String callId, int userId) throws RemoteException;
+    void onParticipantLeft(String callId, int userId) throws RemoteException;
 }
 
@@ -1,9 +1,12 @@
 package org.example.danbainoso.shared;
 
+import org.example.danbainoso.shared.models.CallHistoryPage;
 import org.example.danbainoso.shared.models.CallRequest;
+import org.example.danbainoso.shared.models.MediaSession;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 public interface VideoService extends Remote {
     
@@ -13,6 +16,14 @@ public interface VideoService extends Remote {
     boolean rejectCall(String callId, int userId) throws RemoteException;
     boolean endCall(String callId, int userId) throws RemoteException;
     CallRequest getCallRequest(String callId) throws RemoteException;
+    // IDs of the users currently in a call
+    List<Integer> getCallParticipants(String callId) throws RemoteException;
+    // Token and UDP port for sending and receiving media of a running call; null if the user is not in it
+    MediaSession getMediaSession(String callId, int userId) throws RemoteException;
+    
+    // Call history, newest first; pass 0 as cursor for the first page, then the page's next cursor
+    CallHistoryPage getCallHistory(int userId, long cursor, int limit) throws RemoteException;
+    int getMissedCallCount(int userId) throws RemoteException;
     
     // Callback registration for real-time call updates
     void registerCallClient(String clientId, VideoClientCallback callback) throws RemoteException;
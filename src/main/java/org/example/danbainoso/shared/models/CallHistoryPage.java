@@ -0,0 +1,52 @@
+package org.example.danbainoso.shared.models;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of a user's call history, newest first. Pass {@link #getNextCursor()} back to fetch older calls.
+ */
+public class CallHistoryPage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private List<CallRequest> calls = new ArrayList<>();
+    // -1 when there are no older calls
+    private long nextCursor = -1;
+
+    public CallHistoryPage() {
+    }
+
+    public CallHistoryPage(List<CallRequest> calls, long nextCursor) {
+        this.calls = calls;
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor >= 0;
+    }
+
+    public List<CallRequest> getCalls() {
+        return calls;
+    }
+
+    public void setCalls(List<CallRequest> calls) {
+        this.calls = calls;
+    }
+
+    public long getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public String toString() {
+        return "CallHistoryPage{" +
+                "calls=" + calls.size() +
+                ", nextCursor=" + nextCursor +
+                '}';
+    }
+}
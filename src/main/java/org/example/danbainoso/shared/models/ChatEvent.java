@@ -0,0 +1,127 @@
+package org.example.danbainoso.shared.models;
+
+import org.example.danbainoso.shared.ChatClientCallback;
+
+import java.io.Serializable;
+import java.rmi.RemoteException;
+
+public class ChatEvent implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private EventType type;
+    private Message message;
+    private int messageId;
+    private int readerId;
+    private int senderId;
+
+    public enum EventType {
+        MESSAGE_RECEIVED, MESSAGE_UPDATED, MESSAGE_DELETED, MESSAGES_READ
+    }
+
+    public ChatEvent() {
+    }
+
+    public static ChatEvent messageReceived(Message message) {
+        ChatEvent event = new ChatEvent();
+        event.type = EventType.MESSAGE_RECEIVED;
+        event.message = message;
+        event.messageId = message.getMessageId();
+        return event;
+    }
+
+    public static ChatEvent messageUpdated(Message message) {
+        ChatEvent event = new ChatEvent();
+        event.type = EventType.MESSAGE_UPDATED;
+        event.message = message;
+        event.messageId = message.getMessageId();
+        return event;
+    }
+
+    public static ChatEvent messageDeleted(int messageId) {
+        ChatEvent event = new ChatEvent();
+        event.type = EventType.MESSAGE_DELETED;
+        event.messageId = messageId;
+        return event;
+    }
+
+    public static ChatEvent messagesRead(int readerId, int senderId) {
+        ChatEvent event = new ChatEvent();
+        event.type = EventType.MESSAGES_READ;
+        event.readerId = readerId;
+        event.senderId = senderId;
+        return event;
+    }
+
+    /**
+     * Invoke the single-event callback method matching this event.
+     */
+    public void dispatch(ChatClientCallback callback) throws RemoteException {
+        switch (type) {
+            case MESSAGE_RECEIVED:
+                callback.onMessageReceived(message);
+                break;
+            case MESSAGE_UPDATED:
+                callback.onMessageUpdated(message);
+                break;
+            case MESSAGE_DELETED:
+                callback.onMessageDeleted(messageId);
+                break;
+            case MESSAGES_READ:
+                callback.onMessagesMarkedAsRead(readerId, senderId);
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Getters and Setters
+    public EventType getType() {
+        return type;
+    }
+
+    public void setType(EventType type) {
+        this.type = type;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public void setMessage(Message message) {
+        this.message = message;
+    }
+
+    public int getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(int messageId) {
+        this.messageId = messageId;
+    }
+
+    public int getReaderId() {
+        return readerId;
+    }
+
+    public void setReaderId(int readerId) {
+        this.readerId = readerId;
+    }
+
+    public int getSenderId() {
+        return senderId;
+    }
+
+    public void setSenderId(int senderId) {
+        this.senderId = senderId;
+    }
+
+    @Override
+    public String toString() {
+        return "ChatEvent{" +
+                "type=" + type +
+                ", messageId=" + messageId +
+                ", readerId=" + readerId +
+                ", senderId=" + senderId +
+                '}';
+    }
+}
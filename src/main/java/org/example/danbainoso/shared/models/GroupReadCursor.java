@@ -0,0 +1,61 @@
+package org.example.danbainoso.shared.models;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+/**
+ * How far a member has read in a group: every message with an ID up to lastReadMessageId is read.
+ */
+public class GroupReadCursor implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int groupId;
+    private int userId;
+    private int lastReadMessageId;
+    private Timestamp updatedAt;
+
+    public boolean hasRead(int messageId) {
+        return messageId <= lastReadMessageId;
+    }
+
+    public int getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(int groupId) {
+        this.groupId = groupId;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public int getLastReadMessageId() {
+        return lastReadMessageId;
+    }
+
+    public void setLastReadMessageId(int lastReadMessageId) {
+        this.lastReadMessageId = lastReadMessageId;
+    }
+
+    public Timestamp getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Timestamp updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "GroupReadCursor{" +
+                "groupId=" + groupId +
+                ", userId=" + userId +
+                ", lastReadMessageId=" + lastReadMessageId +
+                '}';
+    }
+}
@@ -0,0 +1,56 @@
+package org.example.danbainoso.shared.models;
+
+import java.io.Serializable;
+
+/**
+ * A participant's ticket to the media relay for one call: the token to put in every media packet
+ * and the UDP port the relay listens on (on the same host as the RMI server).
+ */
+public class MediaSession implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String callId;
+    private int token;
+    private int port;
+
+    public MediaSession() {
+    }
+
+    public MediaSession(String callId, int token, int port) {
+        this.callId = callId;
+        this.token = token;
+        this.port = port;
+    }
+
+    public String getCallId() {
+        return callId;
+    }
+
+    public void setCallId(String callId) {
+        this.callId = callId;
+    }
+
+    public int getToken() {
+        return token;
+    }
+
+    public void setToken(int token) {
+        this.token = token;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    @Override
+    public String toString() {
+        return "MediaSession{" +
+                "callId='" + callId + '\'' +
+                ", port=" + port +
+                '}';
+    }
+}
@@ -0,0 +1,51 @@
+package org.example.danbainoso.shared.models;
+
+import java.io.Serializable;
+
+/**
+ * Which conversations a message search covers: everything the user can read, one private chat, or one group.
+ */
+public class MessageSearchScope implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {
+        ALL, PRIVATE, GROUP
+    }
+
+    private final Type type;
+    // Peer user ID for PRIVATE, group ID for GROUP, unused for ALL
+    private final int targetId;
+
+    private MessageSearchScope(Type type, int targetId) {
+        this.type = type;
+        this.targetId = targetId;
+    }
+
+    public static MessageSearchScope all() {
+        return new MessageSearchScope(Type.ALL, 0);
+    }
+
+    public static MessageSearchScope withUser(int userId) {
+        return new MessageSearchScope(Type.PRIVATE, userId);
+    }
+
+    public static MessageSearchScope inGroup(int groupId) {
+        return new MessageSearchScope(Type.GROUP, groupId);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getTargetId() {
+        return targetId;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageSearchScope{" +
+                "type=" + type +
+                ", targetId=" + targetId +
+                '}';
+    }
+}
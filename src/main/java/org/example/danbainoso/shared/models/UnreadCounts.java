@@ -0,0 +1,74 @@
+package org.example.danbainoso.shared.models;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Unread message counts of one user, per private conversation partner and per group.
+ */
+public class UnreadCounts implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Map<Integer, Integer> userCounts;
+    private Map<Integer, Integer> groupCounts;
+
+    public UnreadCounts() {
+        this.userCounts = new HashMap<>();
+        this.groupCounts = new HashMap<>();
+    }
+
+    public UnreadCounts(Map<Integer, Integer> userCounts, Map<Integer, Integer> groupCounts) {
+        this.userCounts = userCounts;
+        this.groupCounts = groupCounts;
+    }
+
+    public int getUserCount(int peerId) {
+        return userCounts.getOrDefault(peerId, 0);
+    }
+
+    public int getGroupCount(int groupId) {
+        return groupCounts.getOrDefault(groupId, 0);
+    }
+
+    public int getTotalUserCount() {
+        int total = 0;
+        for (int count : userCounts.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    public int getTotalGroupCount() {
+        int total = 0;
+        for (int count : groupCounts.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    // Getters and Setters
+    public Map<Integer, Integer> getUserCounts() {
+        return userCounts;
+    }
+
+    public void setUserCounts(Map<Integer, Integer> userCounts) {
+        this.userCounts = userCounts;
+    }
+
+    public Map<Integer, Integer> getGroupCounts() {
+        return groupCounts;
+    }
+
+    public void setGroupCounts(Map<Integer, Integer> groupCounts) {
+        this.groupCounts = groupCounts;
+    }
+
+    @Override
+    public String toString() {
+        return "UnreadCounts{" +
+                "userCounts=" + userCounts +
+                ", groupCounts=" + groupCounts +
+                '}';
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.danbainoso.shared.models;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of user search results. Pass {@link #getNextCursor()} back to fetch the following page.
+ */
+public class UserSearchPage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private List<UserSummary> users = new ArrayList<>();
+    // How many leading entries of users are friends of the searcher
+    private int friendCount;
+    // -1 when there are no more results
+    private int nextCursor = -1;
+
+    public UserSearchPage() {
+    }
+
+    public UserSearchPage(List<UserSummary> users, int friendCount, int nextCursor) {
+        this.users = users;
+        this.friendCount = friendCount;
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor >= 0;
+    }
+
+    public List<UserSummary> getUsers() {
+        return users;
+    }
+
+    public void setUsers(List<UserSummary> users) {
+        this.users = users;
+    }
+
+    public int getFriendCount() {
+        return friendCount;
+    }
+
+    public void setFriendCount(int friendCount) {
+        this.friendCount = friendCount;
+    }
+
+    public int getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(int nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public String toString() {
+        return "UserSearchPage{" +
+                "users=" + users.size() +
+                ", friendCount=" + friendCount +
+                ", nextCursor=" + nextCursor +
+                '}';
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.danbainoso.shared.models;
+
+import java.io.Serializable;
+
+/**
+ * The few user fields needed to render a contact or member list.
+ * List endpoints return this instead of {@link User} so e-mail, timestamps and the password hash never cross RMI.
+ */
+public class UserSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int userId;
+    private String username;
+    private String fullName;
+    private String avatarUrl;
+    private User.UserStatus status;
+
+    public UserSummary() {
+    }
+
+    public UserSummary(int userId, String username, String fullName, String avatarUrl, User.UserStatus status) {
+        this.userId = userId;
+        this.username = username;
+        this.fullName = fullName;
+        this.avatarUrl = avatarUrl;
+        this.status = status;
+    }
+
+    public static UserSummary of(User user) {
+        return new UserSummary(user.getUserId(), user.getUsername(), user.getFullName(), user.getAvatarUrl(), user.getStatus());
+    }
+
+    /**
+     * Build a {@link User} holding only the summary fields, for UI code written against User.
+     */
+    public User toUser() {
+        User user = new User();
+        user.setUserId(userId);
+        user.setUsername(username);
+        user.setFullName(fullName);
+        user.setAvatarUrl(avatarUrl);
+        user.setStatus(status);
+        return user;
+    }
+
+    public String getDisplayName() {
+        return fullName != null && !fullName.isBlank() ? fullName : username;
+    }
+
+    // Getters and Setters
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public void setFullName(String fullName) {
+        this.fullName = fullName;
+    }
+
+    public String getAvatarUrl() {
+        return avatarUrl;
+    }
+
+    public void setAvatarUrl(String avatarUrl) {
+        this.avatarUrl = avatarUrl;
+    }
+
+    public User.UserStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(User.UserStatus status) {
+        this.status = status;
+    }
+
+    @Override
+    public String toString() {
+        return "UserSummary{" +
+                "userId=" + userId +
+                ", username='" + username + '\'' +
+                ", status=" + status +
+                '}';
+    }
+}
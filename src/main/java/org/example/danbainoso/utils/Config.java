@@ -102,6 +102,94 @@ public class Config {
         return getIntProperty("server.video.port", 9999);
     }
     
+    public static int getDeliveryQueueCapacity() {
+        return getIntProperty("server.delivery.queue.capacity", 1000);
+    }
+    
+    public static String getDeliveryOverflowPolicy() {
+        return getProperty("server.delivery.overflow.policy", "DROP_OLDEST");
+    }
+    
+    public static int getDeliveryBatchSize() {
+        return getIntProperty("server.delivery.batch.size", 32);
+    }
+    
+    public static int getDeliveryBatchLingerMillis() {
+        return getIntProperty("server.delivery.batch.linger.ms", 5);
+    }
+    
+    public static int getDeliveryThreads() {
+        return getIntProperty("server.delivery.threads", 32);
+    }
+    
+    public static int getDeliveryCallTimeoutMillis() {
+        return getIntProperty("server.delivery.call.timeout.ms", 5000);
+    }
+    
+    public static int getPresenceCoalesceMillis() {
+        return getIntProperty("server.presence.coalesce.ms", 300);
+    }
+    
+    public static int getMessageBatchSize() {
+        return getIntProperty("server.message.batch.size", 64);
+    }
+    
+    public static int getMessageBatchLingerMillis() {
+        return getIntProperty("server.message.batch.linger.ms", 2);
+    }
+    
+    public static int getMessageCacheWindowSize() {
+        return getIntProperty("server.message.cache.window", 50);
+    }
+    
+    public static int getMessageCacheMaxMegabytes() {
+        return getIntProperty("server.message.cache.max.mb", 32);
+    }
+    
+    public static int getUnreadFlushMillis() {
+        return getIntProperty("server.unread.flush.ms", 2000);
+    }
+    
+    public static int getUserCacheSize() {
+        return getIntProperty("server.user.cache.size", 10000);
+    }
+    
+    public static int getUserCacheTtlMillis() {
+        return getIntProperty("server.user.cache.ttl.ms", 60000);
+    }
+    
+    public static int getCallRingTimeoutMillis() {
+        return getIntProperty("server.call.ring.timeout.ms", 30000);
+    }
+    
+    public static int getCallLingerMillis() {
+        return getIntProperty("server.call.linger.ms", 5000);
+    }
+    
+    public static int getCallFanOutThreads() {
+        return getIntProperty("server.call.fanout.threads", 16);
+    }
+    
+    public static int getCallFanOutTimeoutMillis() {
+        return getIntProperty("server.call.fanout.timeout.ms", 10000);
+    }
+    
+    public static int getMediaSocketBufferKb() {
+        return getIntProperty("server.media.socket.buffer.kb", 1024);
+    }
+    
+    public static int getCallHistoryBatchSize() {
+        return getIntProperty("server.call.history.batch.size", 100);
+    }
+    
+    public static int getCallHistoryLingerMillis() {
+        return getIntProperty("server.call.history.linger.ms", 50);
+    }
+    
+    public static int getCallHistoryQueueCapacity() {
+        return getIntProperty("server.call.history.queue.capacity", 10000);
+    }
+    
     // Client getters
     public static String getClientRmiRegistry() {
         return getProperty("client.rmi.registry", "localhost");
@@ -110,4 +198,40 @@ public class Config {
     public static int getClientRmiPort() {
         return getIntProperty("client.rmi.port", 1099);
     }
+    
+    public static int getClientRmiThreads() {
+        return getIntProperty("client.rmi.threads", 4);
+    }
+    
+    public static String getClientCacheDir() {
+        return getProperty("client.cache.dir", System.getProperty("user.home") + "/.danbainoso/messages");
+    }
+    
+    public static int getClientCacheMaxMessages() {
+        return getIntProperty("client.cache.max.messages", 500);
+    }
+    
+    public static int getClientCacheMaxMegabytes() {
+        return getIntProperty("client.cache.max.mb", 64);
+    }
+    
+    public static int getClientVideoWidth() {
+        return getIntProperty("client.media.video.width", 320);
+    }
+    
+    public static int getClientVideoHeight() {
+        return getIntProperty("client.media.video.height", 240);
+    }
+    
+    public static int getClientVideoMaxFps() {
+        return getIntProperty("client.media.video.max.fps", 15);
+    }
+    
+    public static int getClientVideoMaxKbps() {
+        return getIntProperty("client.media.video.max.kbps", 800);
+    }
+    
+    public static int getClientJitterMaxMillis() {
+        return getIntProperty("client.media.jitter.max.ms", 200);
+    }
 }
@@ -1,5 +1,8 @@
 -- Database schema for Real-time Chat Application
 -- Drop tables if they exist (for development)
+DROP TABLE IF EXISTS calls;
+DROP TABLE IF EXISTS group_read_cursors;
+DROP TABLE IF EXISTS unread_counters;
 DROP TABLE IF EXISTS group_members;
 DROP TABLE IF EXISTS messages;
 DROP TABLE IF EXISTS friendships;
@@ -19,6 +22,7 @@ CREATE TABLE users (
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     INDEX idx_username (username),
+    INDEX idx_full_name (full_name),
     INDEX idx_email (email)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
@@ -64,10 +68,13 @@ CREATE TABLE messages (
     FOREIGN KEY (sender_id) REFERENCES users(user_id) ON DELETE CASCADE,
     FOREIGN KEY (receiver_id) REFERENCES users(user_id) ON DELETE CASCADE,
     FOREIGN KEY (group_id) REFERENCES groups(group_id) ON DELETE CASCADE,
-    INDEX idx_sender (sender_id),
+    -- Keyset pagination: conversation first, then message_id for "older than" scans
+    INDEX idx_sender_receiver_message (sender_id, receiver_id, message_id),
     INDEX idx_receiver (receiver_id),
-    INDEX idx_group (group_id),
-    INDEX idx_created_at (created_at)
+    INDEX idx_group_message (group_id, message_id),
+    INDEX idx_created_at (created_at),
+    -- Message content search
+    FULLTEXT INDEX ft_content (content)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 -- Friendships table
@@ -86,6 +93,61 @@ CREATE TABLE friendships (
     INDEX idx_status (status)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+-- Unread counters per private conversation (conversation_id is the sender user_id).
+-- GROUP rows are no longer written: group unread counts are counted from group_read_cursors
+CREATE TABLE unread_counters (
+    user_id INT NOT NULL,
+    conversation_type ENUM('USER', 'GROUP') NOT NULL,
+    conversation_id INT NOT NULL,
+    unread_count INT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, conversation_type, conversation_id),
+    FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Per-member read position in a group (every message with message_id <= last_read_message_id is read)
+CREATE TABLE group_read_cursors (
+    group_id INT NOT NULL,
+    user_id INT NOT NULL,
+    last_read_message_id INT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (group_id, user_id),
+    FOREIGN KEY (group_id) REFERENCES groups(group_id) ON DELETE CASCADE,
+    FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Members get a cursor at the group's newest message when they are added. When adding this table to an
+-- existing database, give every current member one too, or their whole group history counts as unread:
+-- INSERT INTO group_read_cursors (group_id, user_id, last_read_message_id)
+-- SELECT gm.group_id, gm.user_id, COALESCE((SELECT MAX(m.message_id) FROM messages m WHERE m.group_id = gm.group_id), 0)
+-- FROM group_members gm
+-- ON DUPLICATE KEY UPDATE last_read_message_id = last_read_message_id;
+
+-- Call history, one row per call updated as it changes state (id orders the history)
+CREATE TABLE calls (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    call_id VARCHAR(64) NOT NULL,
+    caller_id INT NOT NULL,
+    receiver_id INT NOT NULL,
+    group_id INT,
+    call_type ENUM('VOICE', 'VIDEO') NOT NULL DEFAULT 'VOICE',
+    status ENUM('PENDING', 'ACCEPTED', 'REJECTED', 'ENDED', 'MISSED') NOT NULL DEFAULT 'PENDING',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    answered_at TIMESTAMP NULL,
+    ended_at TIMESTAMP NULL,
+    UNIQUE KEY uk_call_id (call_id),
+    FOREIGN KEY (caller_id) REFERENCES users(user_id) ON DELETE CASCADE,
+    FOREIGN KEY (receiver_id) REFERENCES users(user_id) ON DELETE CASCADE,
+    FOREIGN KEY (group_id) REFERENCES groups(group_id) ON DELETE SET NULL,
+    -- History pages scan each side of the call by id; missed calls are counted per receiver.
+    -- Group calls reach the other members through group_members, so they are also scanned per group
+    INDEX idx_caller_call (caller_id, id),
+    INDEX idx_receiver_call (receiver_id, id),
+    INDEX idx_receiver_status (receiver_id, status),
+    INDEX idx_group_call (group_id, id),
+    INDEX idx_group_status (group_id, status)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
 -- Insert sample data for testing
 INSERT INTO users (username, password, email, full_name, status) VALUES
 ('admin', '$2a$10$N9qo8uLOickgx2ZMRZoMyeIjZAgcfl7p92ldGxad68LJZdL17lhWy', 'admin@example.com', 'Administrator', 'ONLINE'),